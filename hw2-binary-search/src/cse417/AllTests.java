@@ -6,7 +6,13 @@ import org.junit.runners.Suite.SuiteClasses;
 
 /** Suite that includes all the tests for this homework assignment. */
 @RunWith(Suite.class)
-@SuiteClasses({ OptimizerTest.class, ArgParserTest.class, CsvParserTest.class })
+@SuiteClasses({ OptimizerTest.class, ArgParserTest.class,
+    CsvDictionaryTest.class, CsvParserTest.class, CsvSnapshotTest.class,
+    CsvTableTest.class, CsvTailerTest.class, DriveStoreTest.class,
+    EpochDayParserTest.class, FistaSolverTest.class, LassoHomotopyTest.class,
+    LassoSolverTest.class, LossEvaluatorTest.class, LossKernelTest.class,
+    MappedCsvParserTest.class, MatchupStatsTest.class, NumberScannerTest.class,
+    ParallelCsvParserTest.class, ReadAheadReaderTest.class })
 public final class AllTests {
   // nothing needed here
 }
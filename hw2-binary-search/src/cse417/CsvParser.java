@@ -1,6 +1,7 @@
 package cse417;
 
 import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
@@ -8,19 +9,37 @@ import java.io.Reader;
 import java.text.DateFormat;
 import java.text.ParseException;
 
+import java.time.format.DateTimeParseException;
+
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Parses CSV (text) file into a sequence of rows. Each row is returned as an
  * array of strings. However, the parser can optionaly check that particular
  * columns have an expected format: integer, floating-point, or regex.
+ * <p>
+ * Callers that read each row once can instead use {@code nextRow}, which
+ * reuses a single {@code Row} object (and its buffers) for every row.
+ * <p>
+ * To read a file on another thread while parsing it, use
+ * {@code openReadAhead}, and close the parser when done.
  */
 // TODO(future): support java.util.Pattern as well
-public class CsvParser implements Iterator<String[]> {
+public class CsvParser implements Iterator<String[]>, Closeable {
+
+  /** Number of lines added to each successive batch handed out in splits. */
+  private static final int BATCH_UNIT = 1 << 10;
+
+  /** Largest number of lines handed out in one split. */
+  private static final int MAX_BATCH = 1 << 25;
 
   /** Reader of the input text file. */
   private final BufferedReader input;
@@ -28,9 +47,30 @@ public class CsvParser implements Iterator<String[]> {
   /** The next line of text from the file or null if none. */
   private String nextLine;
 
+  /** Number of nextLine in the file, counting from 1 (including header). */
+  private int lineNum;
+
+  // Once nextRow is called, lines are read into lineChars rather than
+  // nextLine, and hasLine records whether there is a next line. The read
+  // buffer and the row are allocated once and reused from then on.
+  private boolean reuseRows;
+  private boolean hasLine;
+  private char[] lineChars;
+  private int lineLen;
+  private char[] readBuf;
+  private int readPos, readLimit;
+  private boolean skipLF;  // whether to skip a '\n' following a '\r'
+  private Row row;
+
+  /** Scanner used to check numeric columns in {@code next}. */
+  private final NumberScanner scanner = new NumberScanner();
+
   /**
    * Null or an array of the types of the columns, which can be String.class,
-   * Integer.class, Float.class, or DateFormat. Null means no constraints.
+   * Integer.class, Float.class, DateFormat, EpochDayParser (which replaces
+   * any DateTimeFormatter passed in), or CsvDictionary. Null means no
+   * constraints, and a null entry means that column is skipped (see the
+   * constructor).
    */
   private final Object[] colTypes;
 
@@ -42,16 +82,21 @@ public class CsvParser implements Iterator<String[]> {
    * @param colTypes If non-null, an array of entries indicating the allowed
    *   values in each column. Each entry can be String.class (arbitrary),
    *   Integer.class (parsable by Integer.parseInt), Float.class (parsable by
-   *   Float.parseFloat), or DateFormat (parsable by DateFormat.parse).
+   *   Float.parseFloat), DateFormat (parsable by DateFormat.parse),
+   *   DateTimeFormatter or EpochDayParser (parsable as a LocalDate), or a
+   *   CsvDictionary (arbitrary, but encoded by {@code CsvTable}). An
+   *   entry can also be null to skip the column: its text is not copied or
+   *   checked, and it is returned as null (or empty in a {@code Row}).
    */
   public CsvParser(
       Reader reader, boolean hasHeader, Object[] colTypes) throws IOException {
     this.input = new BufferedReader(reader);
-    if (hasHeader)
-      this.input.readLine();
+    if (hasHeader && this.input.readLine() != null)
+      this.lineNum++;
     this.nextLine = this.input.readLine();
+    this.lineNum++;
 
-    this.colTypes = (colTypes != null) ? colTypes.clone() : null;
+    this.colTypes = EpochDayParser.wrapFormatters(colTypes);
   }
 
   /** As above, but only fixes the number of columns not their types. */
@@ -93,62 +138,616 @@ public class CsvParser implements Iterator<String[]> {
     this(fileName, false, null);
   }
 
+  /**
+   * Returns a parser of the given file, with arguments as in the constructor,
+   * whose text is read (and decompressed, if its name ends with ".gz") on
+   * another thread by a {@code ReadAheadReader}. The caller must close the
+   * parser, which stops that thread, so this should be used in a
+   * try-with-resources statement.
+   */
+  public static CsvParser openReadAhead(String fileName, boolean hasHeader,
+      Object[] colTypes) throws IOException {
+    ReadAheadReader reader = ReadAheadReader.open(fileName);
+    try {
+      return new CsvParser(reader, hasHeader, colTypes);
+    } catch (IOException | RuntimeException ex) {
+      reader.close();
+      throw ex;
+    }
+  }
+
+  /** Closes the input (stopping the thread reading ahead, if any). */
+  @Override
+  public void close() throws IOException {
+    input.close();
+  }
+
   @Override
   public boolean hasNext() {
-    return nextLine != null;
+    return reuseRows ? hasLine : (nextLine != null);
   }
 
   @Override
   public String[] next() {
-    if (nextLine == null)
+    if (!hasNext())
+      throw new NoSuchElementException();
+    String[] cols =
+        parseAndCheckRow(currentLine(), lineNum, colTypes, scanner);
+    advance();
+    return cols;
+  }
+
+  /**
+   * Returns the next row, checked exactly as in {@code next}, in a
+   * {@code Row} object that is reused for every call. Hence, the returned row
+   * (and any cell views from it) are only valid until the next call to this
+   * or {@code next}. Apart from the cells of date columns, which are turned
+   * into strings to check them, reading rows this way does not allocate.
+   */
+  public Row nextRow() {
+    if (!reuseRows)
+      startReusingRows();
+    if (!hasLine)
       throw new NoSuchElementException();
-    String[] cols = parseRow(nextLine);
+
+    row.parse(lineChars, lineLen, lineNum, colTypes);
+    if (colTypes != null)
+      checkRow(row);
+    advance();
+    return row;
+  }
+
+  @Override
+  public void remove() { throw new UnsupportedOperationException("remove"); }
+
+  /**
+   * Returns a stream of the remaining rows. The rows are checked against the
+   * column types exactly as in {@code next}. If the stream is made parallel,
+   * the lines of the file are still read in order, but they are handed out in
+   * batches that are split into columns and checked on other threads.
+   * <p>
+   * Once this is called, the parser should only be used through the stream.
+   */
+  public Stream<String[]> stream() {
+    return StreamSupport.stream(new RowSpliterator(), false);
+  }
+
+  /**
+   * Moves on to the next line of input to maintain the invariant of nextLine.
+   * We need to wrap any IO exception in a runtime exception to fit the
+   * interface of Iterator, unfortunately.
+   */
+  private void advance() {
+    try {
+      if (reuseRows)
+        this.hasLine = readLineChars();
+      else
+        this.nextLine = this.input.readLine();
+    } catch (IOException ex) {
+      throw new RuntimeException(ex);
+    }
+    this.lineNum++;
+  }
+
+  /** Returns the next line as a string. This requires hasNext(). */
+  private String currentLine() {
+    return reuseRows ? new String(lineChars, 0, lineLen) : nextLine;
+  }
+
+  /** Switches from reading lines into nextLine to reading into lineChars. */
+  private void startReusingRows() {
+    reuseRows = true;
+    readBuf = new char[1 << 13];
+    lineChars = new char[128];
+    row = new Row();
+
+    hasLine = (nextLine != null);
+    if (hasLine) {
+      appendLineChars(nextLine.toCharArray(), 0, nextLine.length());
+      nextLine = null;
+    }
+  }
+
+  /**
+   * Reads the next line of input into lineChars, excluding its terminator,
+   * which can be '\n', '\r', or "\r\n" as in {@code BufferedReader}.
+   * Returns false if there is no next line.
+   */
+  private boolean readLineChars() throws IOException {
+    lineLen = 0;
+    boolean found = false;
+    while (true) {
+      if (readPos == readLimit) {
+        int n = input.read(readBuf, 0, readBuf.length);
+        if (n < 0)
+          return found;  // last line has no terminator
+        readPos = 0;
+        readLimit = n;
+      }
+
+      if (skipLF) {
+        skipLF = false;
+        if (readBuf[readPos] == '\n') {
+          readPos++;
+          continue;
+        }
+      }
+
+      found = true;
+      int start = readPos;
+      while (readPos < readLimit &&
+             readBuf[readPos] != '\n' && readBuf[readPos] != '\r')
+        readPos++;
+      appendLineChars(readBuf, start, readPos - start);
+
+      if (readPos < readLimit) {
+        skipLF = (readBuf[readPos++] == '\r');
+        return true;
+      }
+    }
+  }
+
+  /** Appends the given characters to the end of lineChars. */
+  private void appendLineChars(char[] chars, int start, int len) {
+    if (lineLen + len > lineChars.length)
+      lineChars = Arrays.copyOf(lineChars,
+          Math.max(2 * lineChars.length, lineLen + len));
+    System.arraycopy(chars, start, lineChars, lineLen, len);
+    lineLen += len;
+  }
+
+  /**
+   * Returns the columns in the given row, which is on the given line, after
+   * checking that they have the given types (if non-null).
+   */
+  private static String[] parseAndCheckRow(String row, int lineNum,
+      Object[] colTypes, NumberScanner scanner) {
+    String[] cols = parseRow(row, lineNum, colTypes);
 
     if (colTypes != null) {
       if (cols.length != colTypes.length) {
-        throw new RuntimeException(String.format("CSV: expected %d columns: %s",
-            colTypes.length, nextLine));
+        throw new RuntimeException(String.format(
+            "CSV: line %d: expected %d columns: %s", lineNum, colTypes.length,
+            row));
       }
       for (int i = 0; i < cols.length; i++) {
-        if (colTypes[i] == String.class) {
-          // anything allowed
-        } else if (colTypes[i] == Integer.class) {
-          try { Integer.parseInt(cols[i]); }
-          catch (NumberFormatException ex) {
-            throw new RuntimeException(String.format(
-                "CSV: expecting an integer in column %d: %s", i+1, nextLine));
+        if (!isValid(colTypes[i], cols[i], scanner))
+          throw badColumn(lineNum, colTypes[i], i, row);
+      }
+    }
+
+    return cols;
+  }
+
+  /**
+   * Checks that the columns in the given row have the types in colTypes. Like
+   * the rest of nextRow, this avoids allocation except for date columns. The
+   * values of numeric columns are kept in the row for its getters.
+   */
+  private void checkRow(Row row) {
+    if (row.size() != colTypes.length) {
+      throw new RuntimeException(String.format(
+          "CSV: line %d: expected %d columns: %s", row.getLineNumber(),
+          colTypes.length, row.getLine()));
+    }
+    for (int i = 0; i < colTypes.length; i++) {
+      boolean valid;
+      if (colTypes[i] == null || colTypes[i] == String.class ||
+          colTypes[i] instanceof CsvDictionary) {
+        valid = true;
+      } else if (colTypes[i] == Integer.class) {
+        valid = row.checkNumber(i, false);
+      } else if (colTypes[i] == Float.class) {
+        valid = row.checkNumber(i, true);
+      } else {
+        valid = isValid(colTypes[i], row.getString(i), row.scanner);
+      }
+      if (!valid)
+        throw badColumn(row.getLineNumber(), colTypes[i], i, row.getLine());
+    }
+  }
+
+  /**
+   * Determines whether the given value is allowed in the given column type.
+   * Numbers are checked with the given scanner, which avoids the cost of
+   * throwing an exception for each bad value.
+   */
+  private static boolean isValid(
+      Object colType, CharSequence value, NumberScanner scanner) {
+    try {
+      if (colType == null || colType == String.class ||
+          colType instanceof CsvDictionary) {
+        // anything allowed (or skipped)
+      } else if (colType == Integer.class) {
+        return scanner.scanInt(value);
+      } else if (colType == Float.class) {
+        return scanner.scanFloat(value);
+      } else if (colType instanceof DateFormat) {
+        ((DateFormat) colType).parse(value.toString());
+      } else if (colType instanceof EpochDayParser) {
+        ((EpochDayParser) colType).parse(value.toString());
+      } else {
+        throw new AssertionError(
+            "Unsupported column type: " + colType.getClass().getName());
+      }
+      return true;
+    } catch (ParseException | DateTimeParseException ex) {
+      return false;
+    }
+  }
+
+  /**
+   * Returns the exception to throw when column {@code col} (from zero) of the
+   * given row does not have the given type.
+   */
+  private static RuntimeException badColumn(
+      int lineNum, Object colType, int col, String row) {
+    String expected;
+    if (colType == Integer.class) {
+      expected = "an integer";
+    } else if (colType == Float.class) {
+      expected = "a float";
+    } else {
+      expected = "a date (" + colType + ")";
+    }
+    return new RuntimeException(String.format(
+        "CSV: line %d: expecting %s in column %d: %s",
+        lineNum, expected, col+1, row));
+  }
+
+  /**
+   * Spliterator over the remaining rows of the parser. Splitting reads the
+   * next batch of lines (of increasing size) and returns a spliterator that
+   * parses and checks those lines itself, so that work can happen in parallel
+   * with reading more lines here.
+   */
+  private final class RowSpliterator implements Spliterator<String[]> {
+
+    /** Number of lines in the next batch handed out by trySplit. */
+    private int batchSize = BATCH_UNIT;
+
+    @Override
+    public boolean tryAdvance(Consumer<? super String[]> action) {
+      if (!hasNext())
+        return false;
+      action.accept(next());
+      return true;
+    }
+
+    @Override
+    public Spliterator<String[]> trySplit() {
+      if (!hasNext())
+        return null;
+
+      int firstLineNum = lineNum;
+      String[] lines = new String[batchSize];
+      int count = 0;
+      while (count < lines.length && hasNext()) {
+        lines[count++] = currentLine();
+        advance();
+      }
+      batchSize = Math.min(batchSize + BATCH_UNIT, MAX_BATCH);
+
+      return new BatchSpliterator(
+          lines, count, firstLineNum, ParallelCsvParser.copyColTypes(colTypes));
+    }
+
+    @Override
+    public long estimateSize() { return Long.MAX_VALUE; }
+
+    @Override
+    public int characteristics() { return ORDERED | NONNULL; }
+  }
+
+  /** Spliterator over a batch of lines already read from the input. */
+  private static final class BatchSpliterator implements Spliterator<String[]> {
+
+    private final String[] lines;
+    private final int end;
+    private final int firstLineNum;
+    private final Object[] colTypes;
+    private final NumberScanner scanner = new NumberScanner();
+    private int index;
+
+    /**
+     * Creates a spliterator over lines[0..end-1], where lines[0] is on line
+     * {@code firstLineNum}, checking columns against the given types. This
+     * must be given its own copy of any DateFormat used in the types.
+     */
+    BatchSpliterator(
+        String[] lines, int end, int firstLineNum, Object[] colTypes) {
+      this(lines, 0, end, firstLineNum, colTypes);
+    }
+
+    private BatchSpliterator(String[] lines, int start, int end,
+        int firstLineNum, Object[] colTypes) {
+      this.lines = lines;
+      this.index = start;
+      this.end = end;
+      this.firstLineNum = firstLineNum;
+      this.colTypes = colTypes;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super String[]> action) {
+      if (index >= end)
+        return false;
+      action.accept(parseAndCheckRow(
+          lines[index], firstLineNum + index, colTypes, scanner));
+      lines[index++] = null;  // allow it to be garbage collected
+      return true;
+    }
+
+    @Override
+    public Spliterator<String[]> trySplit() {
+      int mid = (index + end) >>> 1;
+      if (mid <= index)
+        return null;
+      BatchSpliterator prefix = new BatchSpliterator(lines, index, mid,
+          firstLineNum, ParallelCsvParser.copyColTypes(colTypes));
+      index = mid;
+      return prefix;
+    }
+
+    @Override
+    public long estimateSize() { return end - index; }
+
+    @Override
+    public int characteristics() {
+      return ORDERED | NONNULL | SIZED | SUBSIZED;
+    }
+  }
+
+  /**
+   * A row returned by {@code nextRow}. The text of each cell is kept in a
+   * buffer shared by all the cells, which is overwritten by the next row.
+   */
+  public static final class Row {
+
+    /** Text of the whole line containing the row. */
+    private char[] line = new char[128];
+    private int lineLen;
+
+    /** Number of the line containing the row, counting from 1. */
+    private int lineNum;
+
+    /** Text of the cells (with quotes removed) one after another. */
+    private char[] chars = new char[128];
+
+    /** Index in chars of the start of each cell and just past its end. */
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+
+    /** Number of cells in this row. */
+    private int size;
+
+    /** Views of the cells, created as needed and reused for every row. */
+    private Cell[] cells = new Cell[0];
+
+    /** Scanner used to check and convert numeric cells. */
+    private final NumberScanner scanner = new NumberScanner();
+
+    // Values of the integer and float columns found when checking the row,
+    // so that the getters need not scan them again. The kind of each is 0
+    // if unknown or else INT or FLOAT.
+    private static final byte INT = 1, FLOAT = 2;
+    private byte[] kinds = new byte[16];
+    private double[] values = new double[16];
+
+    private Row() {}
+
+    /** Returns the number of columns in this row. */
+    public int size() { return size; }
+
+    /** Returns the number of the line containing this row (from 1). */
+    public int getLineNumber() { return lineNum; }
+
+    /** Returns the text of the entire row as a new string. */
+    public String getLine() { return new String(line, 0, lineLen); }
+
+    /**
+     * Returns a view of the text of the given column. The view shows the text
+     * of the same column in the next row once that is read.
+     */
+    public CharSequence get(int col) {
+      checkColumn(col);
+      if (col >= cells.length) {
+        int oldLength = cells.length;
+        cells = Arrays.copyOf(cells, Math.max(size, col + 1));
+        for (int i = oldLength; i < cells.length; i++)
+          cells[i] = new Cell(this, i);
+      }
+      return cells[col];
+    }
+
+    /** Returns the text of the given column as a new string. */
+    public String getString(int col) {
+      checkColumn(col);
+      return new String(chars, starts[col], ends[col] - starts[col]);
+    }
+
+    /** Returns all of the columns as strings, just like {@code next}. */
+    public String[] toStringArray() {
+      String[] cols = new String[size];
+      for (int i = 0; i < size; i++)
+        cols[i] = getString(i);
+      return cols;
+    }
+
+    /**
+     * Returns the value of the given column parsed as an integer. This accepts
+     * the same strings as {@code Integer.parseInt}.
+     * @throws NumberFormatException if the column is not an integer
+     */
+    public int getInt(int col) {
+      checkColumn(col);
+      if (kinds[col] == INT)
+        return (int) values[col];
+      if (!scanner.scanInt(get(col)))
+        throw new NumberFormatException(getString(col));
+      return scanner.getInt();
+    }
+
+    /**
+     * Returns the value of the given column parsed as a float. This accepts
+     * the same strings as {@code Float.parseFloat}.
+     * @throws NumberFormatException if the column is not a float
+     */
+    public float getFloat(int col) {
+      checkColumn(col);
+      if (kinds[col] == FLOAT)
+        return (float) values[col];
+      if (!scanner.scanFloat(get(col)))
+        throw new NumberFormatException(getString(col));
+      return scanner.getFloat();
+    }
+
+    /**
+     * Returns the value of the given column parsed as a double. This accepts
+     * the same strings as {@code Double.parseDouble}.
+     * @throws NumberFormatException if the column is not a double
+     */
+    public double getDouble(int col) {
+      if (!scanner.scanDouble(get(col)))
+        throw new NumberFormatException(getString(col));
+      return scanner.getDouble();
+    }
+
+    /**
+     * Parses the given line, on the given line number, into this row. The
+     * text of columns with a null type (if colTypes is non-null) is skipped.
+     */
+    private void parse(char[] text, int len, int num, Object[] colTypes) {
+      if (line.length < len)
+        line = new char[Math.max(2 * line.length, len)];
+      System.arraycopy(text, 0, line, 0, len);
+      lineLen = len;
+      lineNum = num;
+
+      if (chars.length < len)
+        chars = new char[Math.max(2 * chars.length, len)];
+      size = 0;
+      int count = 0;  // number of characters in chars so far
+      int index = 0;
+
+      // Inv: index at the beginning of a column, all previous parsed into chars
+      while (index < len) {
+        int end;
+        if (size == starts.length) {
+          starts = Arrays.copyOf(starts, 2 * size);
+          ends = Arrays.copyOf(ends, 2 * size);
+          kinds = Arrays.copyOf(kinds, 2 * size);
+          values = Arrays.copyOf(values, 2 * size);
+        }
+        starts[size] = count;
+        kinds[size] = 0;
+        boolean skip = isSkipped(colTypes, size);
+
+        if (line[index] != '"') {
+          end = index;
+          while (end < len && line[end] != ',')
+            end++;
+          if (!skip) {
+            System.arraycopy(line, index, chars, count, end - index);
+            count += end - index;
           }
-        } else if (colTypes[i] == Float.class) {
-          try { Float.parseFloat(cols[i]); }
-          catch (NumberFormatException ex) {
+
+        } else {
+          end = index + 1;  // skip opening quote
+
+          while (end < len) {
+            if (line[end] != '"') {
+              if (!skip)
+                chars[count++] = line[end];
+              end += 1;
+            } else if (end+1 < len && line[end+1] == '"') {
+              if (!skip)
+                chars[count++] = '"';
+              end += 2;
+            } else {
+              break;
+            }
+          }
+
+          if (end == len) {
             throw new RuntimeException(String.format(
-                "CSV: expecting a float in column %d: %s", i+1, nextLine));
+                "CSV: line %d: end of line inside of a quoted column: %s",
+                lineNum, getLine()));
           }
-        } else if (colTypes[i] instanceof DateFormat) {
-          try { ((DateFormat) colTypes[i]).parse(cols[i]); }
-          catch (ParseException ex) {
+
+          end++;
+          if (end < len && line[end] != ',') {
             throw new RuntimeException(String.format(
-                "CSV: expecting a date (%s) in column %d: %s", i+1,
-                colTypes[i], nextLine));
+                "CSV: line %d: quote ends before the end of a quoted column: %s",
+                lineNum, getLine()));
           }
-        } else {
-          throw new AssertionError(
-              "Unsupported column type: " + colTypes[i].getClass().getName());
         }
+
+        ends[size++] = count;
+
+        // end = len or line[end] == ','
+        index = (end == len) ? end : end + 1;  // skip ','
       }
     }
 
-    // Grab the next line of input to maintain the invariant of nextLine.
-    // We need to wrap any IO exception in a runtime exception to fit the
-    // interface of Iterator, unfortunately.
-    try { this.nextLine = this.input.readLine(); }
-    catch (IOException ex) { throw new RuntimeException(ex); }
+    /**
+     * Determines whether the given column is an integer (or float if
+     * {@code isFloat}) as for {@code CsvParser.isValid}. If so, the value is
+     * remembered for the getter to return.
+     */
+    private boolean checkNumber(int col, boolean isFloat) {
+      if (isFloat ? !scanner.scanFloat(get(col)) : !scanner.scanInt(get(col)))
+        return false;
+      kinds[col] = isFloat ? FLOAT : INT;
+      values[col] = isFloat ? scanner.getFloat() : scanner.getInt();
+      return true;
+    }
 
-    return cols;
+    /** Throws an exception if the given column is not in this row. */
+    private void checkColumn(int col) {
+      if (col < 0 || col >= size)
+        throw new IndexOutOfBoundsException("column " + col);
+    }
   }
 
-  @Override
-  public void remove() { throw new UnsupportedOperationException("remove"); }
+  /** View of one cell of a row, as described in {@code Row.get}. */
+  private static final class Cell implements CharSequence {
+
+    private final Row row;
+    private final int col;
+
+    Cell(Row row, int col) {
+      this.row = row;
+      this.col = col;
+    }
+
+    @Override
+    public int length() {
+      return (col < row.size) ? row.ends[col] - row.starts[col] : 0;
+    }
+
+    @Override
+    public char charAt(int index) {
+      if (index < 0 || index >= length())
+        throw new IndexOutOfBoundsException("index " + index);
+      return row.chars[row.starts[col] + index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      return toString().substring(start, end);
+    }
+
+    @Override
+    public String toString() {
+      return new String(row.chars, row.starts[col], length());
+    }
+  }
+
+  /** Determines whether the given column has a null type (is skipped). */
+  private static boolean isSkipped(Object[] colTypes, int col) {
+    return colTypes != null && col < colTypes.length && colTypes[col] == null;
+  }
 
   /** Returns an array of the given number of string column types. */
   private static Object[] makeStringColTypes(int len) {
@@ -157,8 +756,12 @@ public class CsvParser implements Iterator<String[]> {
     return colTypes;
   }
 
-  /** Returns the columns in the given row. */
-  private static String[] parseRow(String row) {
+  /**
+   * Returns the columns in the given row, which is on the given line. Any
+   * column with a null type (if colTypes is non-null) is returned as null.
+   */
+  private static String[] parseRow(
+      String row, int lineNum, Object[] colTypes) {
     List<String> cols = new ArrayList<String>();
     int index = 0;
 
@@ -171,23 +774,26 @@ public class CsvParser implements Iterator<String[]> {
     // Inv: index at the beginning of a column, all previous parsed into cols
     while (index < row.length()) {
       int end;
+      boolean skip = isSkipped(colTypes, cols.size());
 
       if (row.charAt(index) != '"') {
         end = index;
         while (end < row.length() && row.charAt(end) != ',')
           end++;
-        cols.add(row.substring(index, end));
+        cols.add(skip ? null : row.substring(index, end));
 
       } else {
-        StringBuilder buf = new StringBuilder();
+        StringBuilder buf = skip ? null : new StringBuilder();
         end = index + 1;  // skip opening quote
 
         while (end < row.length()) {
           if (row.charAt(end) != '"') {
-            buf.append(row.charAt(end));
+            if (!skip)
+              buf.append(row.charAt(end));
             end += 1;
           } else if (end+1 < row.length() && row.charAt(end+1) == '"') {
-            buf.append('"');
+            if (!skip)
+              buf.append('"');
             end += 2;
           } else {
             break;
@@ -195,15 +801,17 @@ public class CsvParser implements Iterator<String[]> {
         }
 
         if (end == row.length()) {
-          throw new RuntimeException(
-              "CSV: end of line inside of a quoted column: " + row);
+          throw new RuntimeException(String.format(
+              "CSV: line %d: end of line inside of a quoted column: %s",
+              lineNum, row));
         }
-        cols.add(buf.toString());
+        cols.add(skip ? null : buf.toString());
 
         end++;
         if (end < row.length() && row.charAt(end) != ',') {
-          throw new RuntimeException(
-              "CSV: quote ends before the end of a quoted column: " + row);
+          throw new RuntimeException(String.format(
+              "CSV: line %d: quote ends before the end of a quoted column: %s",
+              lineNum, row));
         }
       }
 
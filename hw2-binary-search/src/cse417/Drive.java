@@ -7,11 +7,11 @@ public class Drive {
   /** Week of the NFL season. */
   public final int week;
 
-  /** Name of the team on offense. */
-  public final String offense;
+  /** Index in {@code TeamModel.TEAMS} of the team on offense. */
+  public final int offense;
 
-  /** Name of the team on defense. */
-  public final String defense;
+  /** Index in {@code TeamModel.TEAMS} of the team on defense. */
+  public final int defense;
 
   /** Average points scored from the starting field position. */
   public final double expPointsAtStart;
@@ -20,7 +20,7 @@ public class Drive {
   public final double expPointsAtEnd;
 
   /** Creates a drive with the given description. */
-  public Drive(int week, String offense, String defense,
+  public Drive(int week, int offense, int defense,
       double expPointsAtStart, double expPointsAtEnd) {
     this.week = week;
     this.offense = offense;
@@ -28,4 +28,11 @@ public class Drive {
     this.expPointsAtStart = expPointsAtStart;
     this.expPointsAtEnd = expPointsAtEnd;
   }
+
+  /** As above but taking the names of the teams. */
+  public Drive(int week, String offense, String defense,
+      double expPointsAtStart, double expPointsAtEnd) {
+    this(week, TeamModel.indexOf(offense), TeamModel.indexOf(defense),
+        expPointsAtStart, expPointsAtEnd);
+  }
 }
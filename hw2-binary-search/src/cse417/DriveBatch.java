@@ -0,0 +1,72 @@
+package cse417;
+
+import java.util.List;
+
+/**
+ * Stores a list of drives by column, in arrays of primitives with one entry
+ * per drive, rather than as a list of {@code Drive} objects. This lets the
+ * loss function of a {@code TeamModel} be evaluated by a tight loop over
+ * arrays, which a {@code LossKernel} can run with SIMD instructions.
+ * <p>
+ * The teams are stored as the indexes of their parameters in the model, so
+ * that the parameters can be gathered directly from its array.
+ * <p>
+ * A batch may also be a view of a contiguous range of the drives in another
+ * batch, sharing its arrays. The drives in the batch are those with indexes
+ * from {@code start} (inclusive) to {@code end} (exclusive) in the arrays.
+ */
+public final class DriveBatch {
+
+  /** Kernel used to evaluate the loss function on batches. */
+  static final LossKernel KERNEL = LossKernel.create();
+
+  /** Index of the parameter of the offense in each drive. */
+  final int[] offenses;
+
+  /** Index of the parameter of the defense in each drive. */
+  final int[] defenses;
+
+  /** Actual change in expected points in each drive. */
+  final double[] changes;
+
+  /** Index in the arrays of the first drive in the batch. */
+  final int start;
+
+  /** Index in the arrays just after the last drive in the batch. */
+  final int end;
+
+  /** Creates a batch containing the given drives. */
+  public DriveBatch(List<Drive> drives) {
+    this.offenses = new int[drives.size()];
+    this.defenses = new int[drives.size()];
+    this.changes = new double[drives.size()];
+    for (int i = 0; i < drives.size(); i++) {
+      Drive drive = drives.get(i);
+      offenses[i] = TeamModel.OFFENSES + drive.offense;
+      defenses[i] = TeamModel.DEFENSES + drive.defense;
+      changes[i] = drive.expPointsAtEnd - drive.expPointsAtStart;
+    }
+    this.start = 0;
+    this.end = drives.size();
+  }
+
+  /**
+   * Creates a batch containing the drives of the given one with indexes from
+   * {@code fromIndex} (inclusive) to {@code toIndex} (exclusive). This shares
+   * the arrays of the given batch rather than copying them.
+   */
+  DriveBatch(DriveBatch batch, int fromIndex, int toIndex) {
+    if (fromIndex < 0 || fromIndex > toIndex || toIndex > batch.size()) {
+      throw new IndexOutOfBoundsException(
+          "bad range " + fromIndex + " to " + toIndex);
+    }
+    this.offenses = batch.offenses;
+    this.defenses = batch.defenses;
+    this.changes = batch.changes;
+    this.start = batch.start + fromIndex;
+    this.end = batch.start + toIndex;
+  }
+
+  /** Returns the number of drives in the batch. */
+  public int size() { return end - start; }
+}
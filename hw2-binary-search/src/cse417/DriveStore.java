@@ -0,0 +1,127 @@
+package cse417;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Holds all of the drives of a season in memory, sorted by week, so that the
+ * drives in any range of weeks can be found without reading them again. The
+ * drives of each week are stored contiguously, both as a list and by column in
+ * a {@code DriveBatch}, so the drives in a range of weeks are returned as views
+ * of those rather than copies.
+ * <p>
+ * The {@code MatchupStats} of each week are computed once, when the store is
+ * created, so the statistics for a range of weeks are found by merging those
+ * of its weeks rather than by summarizing its drives.
+ */
+public final class DriveStore {
+
+  /** All of the drives, sorted by week. */
+  private final List<Drive> drives;
+
+  /** The same drives (in the same order) stored by column. */
+  private final DriveBatch batch;
+
+  /** Smallest week of any drive. */
+  private final int minWeek;
+
+  /**
+   * Index in {@code drives} of the first drive of each week from
+   * {@code minWeek} on. The last entry is the number of drives.
+   */
+  private final int[] weekStarts;
+
+  /** Summary of the drives of each week from {@code minWeek} on. */
+  private final MatchupStats[] weekStats;
+
+  /**
+   * Creates a store containing the given drives. Drives from the same week
+   * are kept in the order given.
+   */
+  public DriveStore(List<Drive> drives) {
+    List<Drive> sorted = new ArrayList<Drive>(drives);
+    sorted.sort(Comparator.comparingInt((Drive d) -> d.week));  // stable
+    this.drives = Collections.unmodifiableList(sorted);
+    this.batch = new DriveBatch(sorted);
+
+    int numWeeks = 0;
+    if (sorted.isEmpty()) {
+      this.minWeek = 1;
+    } else {
+      this.minWeek = sorted.get(0).week;
+      numWeeks = sorted.get(sorted.size() - 1).week - minWeek + 1;
+    }
+
+    this.weekStarts = new int[numWeeks + 1];
+    int i = 0;
+    for (int w = 0; w < numWeeks; w++) {
+      weekStarts[w] = i;
+      while (i < sorted.size() && sorted.get(i).week == minWeek + w)
+        i++;
+    }
+    weekStarts[numWeeks] = i;
+
+    this.weekStats = new MatchupStats[numWeeks];
+    for (int w = 0; w < numWeeks; w++) {
+      weekStats[w] = new MatchupStats(
+          sorted.subList(weekStarts[w], weekStarts[w + 1]));
+    }
+  }
+
+  /** Returns the number of drives in the store. */
+  public int size() { return drives.size(); }
+
+  /** Returns the smallest week of any drive (or 1 if there are none). */
+  public int getMinWeek() { return minWeek; }
+
+  /** Returns the largest week of any drive (or 0 if there are none). */
+  public int getMaxWeek() { return minWeek + weekStats.length - 1; }
+
+  /**
+   * Returns the drives from weeks {@code minWeek} to {@code maxWeek}
+   * (inclusive), sorted by week. The result is an unmodifiable view.
+   */
+  public List<Drive> getDrives(int minWeek, int maxWeek) {
+    return drives.subList(startOf(minWeek), endOf(minWeek, maxWeek));
+  }
+
+  /** As above but returns the drives as a view of the batch of all drives. */
+  public DriveBatch getBatch(int minWeek, int maxWeek) {
+    return new DriveBatch(batch, startOf(minWeek), endOf(minWeek, maxWeek));
+  }
+
+  /**
+   * Returns a summary of the drives from weeks {@code minWeek} to
+   * {@code maxWeek} (inclusive). This is found by merging the summaries of
+   * each week, so it may differ from summarizing those drives directly by
+   * rounding errors. (For a single week, it does not.)
+   */
+  public MatchupStats getStats(int minWeek, int maxWeek) {
+    int first = Math.max(minWeek, this.minWeek) - this.minWeek;
+    int last = Math.min(maxWeek, getMaxWeek()) - this.minWeek;
+    if (first == last)
+      return weekStats[first];
+
+    List<MatchupStats> parts = new ArrayList<MatchupStats>();
+    for (int w = first; w <= last; w++)
+      parts.add(weekStats[w]);
+    return MatchupStats.merge(parts);
+  }
+
+  /** Returns the index of the first drive from {@code week} or later. */
+  private int startOf(int week) {
+    int w = Math.min(Math.max(week - minWeek, 0), weekStats.length);
+    return weekStarts[w];
+  }
+
+  /**
+   * Returns the index just after the last drive from {@code maxWeek} or
+   * earlier, but no less than the index of the first drive of {@code minWeek}
+   * (so that an empty range gives an empty list).
+   */
+  private int endOf(int minWeek, int maxWeek) {
+    return Math.max(startOf(minWeek), startOf(maxWeek + 1));
+  }
+}
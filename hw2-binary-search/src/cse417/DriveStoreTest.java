@@ -0,0 +1,102 @@
+package cse417;
+
+import java.util.*;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class DriveStoreTest {
+
+  @Test public void testWeeks() {
+    List<Drive> drives = Arrays.asList(
+        new Drive(3, "SEA", "SF", 1.0, 3.0),
+        new Drive(1, "SEA", "SF", 2.0, 0.0),
+        new Drive(3, "SF", "SEA", 0.5, 1.5),
+        new Drive(5, "SF", "SEA", 1.0, 7.0),
+        new Drive(1, "SF", "SEA", 1.5, 2.0));
+    DriveStore store = new DriveStore(drives);
+
+    assertEquals(5, store.size());
+    assertEquals(1, store.getMinWeek());
+    assertEquals(5, store.getMaxWeek());
+    assertEquals(Arrays.asList(drives.get(1), drives.get(4), drives.get(0),
+        drives.get(2), drives.get(3)), store.getDrives(1, 5));
+    assertEquals(Arrays.asList(drives.get(1), drives.get(4)),
+        store.getDrives(-3, 1));
+    assertEquals(Arrays.asList(drives.get(0), drives.get(2)),
+        store.getDrives(2, 4));
+    assertEquals(Arrays.asList(drives.get(3)), store.getDrives(5, 9));
+    assertTrue(store.getDrives(2, 2).isEmpty());
+    assertTrue(store.getDrives(4, 3).isEmpty());
+    assertTrue(store.getDrives(6, 9).isEmpty());
+    assertEquals(2, store.getBatch(2, 4).size());
+    assertEquals(0, store.getBatch(6, 9).size());
+    assertEquals(2, store.getStats(2, 4).size());
+    assertEquals(0, store.getStats(6, 9).size());
+    assertEquals(4, store.getStats(0, 3).size());
+
+    try {
+      store.getDrives(1, 5).add(drives.get(0));
+      fail("view should be unmodifiable");
+    } catch (UnsupportedOperationException ex) {
+      // expected
+    }
+
+    DriveStore empty = new DriveStore(new ArrayList<Drive>());
+    assertEquals(0, empty.size());
+    assertTrue(empty.getDrives(1, 17).isEmpty());
+    assertEquals(0, empty.getBatch(1, 17).size());
+    assertEquals(0, empty.getStats(1, 17).size());
+  }
+
+  @Test public void testViews() {
+    Random rand = new Random(22);
+    List<Drive> drives = new ArrayList<Drive>();
+    for (int i = 0; i < 3000; i++) {
+      double start = 6 * rand.nextDouble() - 1;
+      drives.add(new Drive(1 + rand.nextInt(17),
+          rand.nextInt(TeamModel.NUM_TEAMS), rand.nextInt(TeamModel.NUM_TEAMS),
+          start, start + 3 * rand.nextGaussian()));
+    }
+    DriveStore store = new DriveStore(drives);
+
+    TeamModel model = new TeamModel().setConstant(rand.nextGaussian());
+    for (int team = 0; team < TeamModel.NUM_TEAMS; team++) {
+      model.setOffense(team, rand.nextGaussian());
+      model.setDefense(team, rand.nextGaussian());
+    }
+
+    for (int minWeek = 1; minWeek <= 17; minWeek += 3) {
+      for (int maxWeek = minWeek; maxWeek <= 17; maxWeek += 2) {
+        // Drives should be sorted by week but otherwise in the same order.
+        List<Drive> expected = new ArrayList<Drive>();
+        for (int week = minWeek; week <= maxWeek; week++) {
+          for (Drive drive : drives) {
+            if (drive.week == week)
+              expected.add(drive);
+          }
+        }
+        assertTrue(expected.equals(store.getDrives(minWeek, maxWeek)));
+        assertEquals(expected.size(),
+            store.getBatch(minWeek, maxWeek).size());
+        assertEquals(expected.size(),
+            store.getStats(minWeek, maxWeek).size());
+
+        double loss = model.evalLoss(expected, 0.01);
+        assertEquals(loss,
+            model.evalLoss(store.getBatch(minWeek, maxWeek), 0.01), 1e-9);
+        assertEquals(loss,
+            model.evalLoss(store.getStats(minWeek, maxWeek), 0.01), 1e-9);
+        assertEquals(0, model.evalLossDerivative(
+                store.getStats(minWeek, maxWeek))
+            .addScaledBy(-1, model.evalLossDerivative(expected)).norm0(),
+            1e-9);
+        assertEquals(0, model.evalLossDerivative(
+                store.getBatch(minWeek, maxWeek))
+            .addScaledBy(-1, model.evalLossDerivative(expected)).norm0(),
+            1e-9);
+      }
+    }
+  }
+}
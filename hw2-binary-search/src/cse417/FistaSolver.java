@@ -0,0 +1,233 @@
+package cse417;
+
+import java.util.List;
+
+/**
+ * Finds the {@code TeamModel} that minimizes the loss function on a fixed
+ * list of drives by an accelerated proximal-gradient method (FISTA, from Beck
+ * and Teboulle). Rather than changing one parameter at a time, as
+ * {@code LassoSolver} does, each iteration moves all of them at once: it takes
+ * a gradient step on the squared error, using
+ * {@code TeamModel.evalLossDerivative}, and then applies the "proximal"
+ * operator of the penalty, which soft thresholds each parameter toward zero
+ * and limits it to [-LIMIT, LIMIT]. Each step starts from an extrapolation of
+ * the last two models ("momentum") rather than the last one, which makes the
+ * error shrink like 1/k^2 after k steps rather than 1/k. The momentum is
+ * reset whenever it points uphill, i.e., in a direction that the gradient step
+ * then undoes (the "adaptive restart" of O'Donoghue and Candes), since it
+ * otherwise makes the models oscillate around the best one.
+ * <p>
+ * The step size is 1/L, where L is an estimate of the largest curvature of the
+ * squared error. It is found by backtracking: starting from the last estimate,
+ * L is doubled until the step decreases the loss by at least as much as the
+ * quadratic with that curvature predicts.
+ * <p>
+ * The squared error and its derivative are computed from the
+ * {@code MatchupStats} of the drives, so each iteration takes time
+ * proportional to the number of matchups, not the number of drives.
+ */
+public final class FistaSolver {
+
+  /** Range of each parameter, as in {@code LassoSolver}. */
+  public static final double LIMIT = LassoSolver.LIMIT;
+
+  /** Factor by which the estimate of L is increased when backtracking. */
+  private static final double BACKTRACK = 2.0;
+
+  /** Summary of the drives used to fit the model. */
+  private final MatchupStats stats;
+
+  /**
+   * Curvature of the squared error in the direction of each parameter alone.
+   * This is used to tell when to stop (see {@code fit}).
+   */
+  private final double[] curvatures;
+
+  /** Current estimate of the largest curvature, L. */
+  private double lipschitz = 1.0;
+
+  /** Creates a solver for models of the given drives. */
+  public FistaSolver(List<Drive> drives) {
+    this(new MatchupStats(drives));
+  }
+
+  /** Creates a solver for models of the drives summarized by stats. */
+  public FistaSolver(MatchupStats stats) {
+    this.stats = stats;
+    this.curvatures = new double[TeamModel.NUM_PARAMETERS];
+    for (int off = 0; off < TeamModel.NUM_TEAMS; off++) {
+      for (int def = 0; def < TeamModel.NUM_TEAMS; def++) {
+        int count = stats.getCount(off, def);
+        curvatures[TeamModel.CONSTANT] += count;
+        curvatures[TeamModel.OFFENSES + off] += count;
+        curvatures[TeamModel.DEFENSES + def] += count;
+      }
+    }
+    for (int param = 0; param < curvatures.length; param++)
+      curvatures[param] = 2 * curvatures[param] / Math.max(1, stats.size());
+  }
+
+  /**
+   * Returns the best model of the drives with the given penalty. This stops
+   * when the change that a pass of coordinate descent would make from the
+   * latest model is no more than {@code tol} in L0 norm (as estimated below),
+   * so that the result is about as accurate as that of {@code LassoSolver}
+   * with the same tolerance.
+   * @param verbose If true, prints progress of the model fitting process.
+   */
+  public TeamModel findBestModel(double penalty, double tol, boolean verbose) {
+    return findBestModel(new TeamModel(), penalty, tol, verbose);
+  }
+
+  /**
+   * As above but starting from the given model rather than all zeros, which
+   * takes fewer iterations if it is the best model for a nearby penalty.
+   */
+  public TeamModel findBestModel(
+      TeamModel start, double penalty, double tol, boolean verbose) {
+    TeamModel best = start.copy();
+    fit(best, penalty, tol, verbose);
+    return best;
+  }
+
+  /**
+   * Returns the best models for each of the given penalties, each found
+   * starting from the one before, as in {@code LassoSolver.findPath}.
+   */
+  public RegularizationPath findPath(double[] penalties, double tol) {
+    TeamModel[] models = new TeamModel[penalties.length];
+    int[] iterations = new int[penalties.length];
+    TeamModel best = new TeamModel();
+    for (int i = 0; i < penalties.length; i++) {
+      iterations[i] = fit(best, penalties[i], tol, false);
+      models[i] = best.copy();
+    }
+    return new RegularizationPath(penalties.clone(), models, iterations);
+  }
+
+  /**
+   * Changes the given model into the best one with the given penalty and
+   * returns the number of iterations (gradient steps) taken.
+   * <p>
+   * To decide when to stop, the step from each point y to the next model z is
+   * turned into a "gradient" of the penalized loss, L (y - z), which is zero
+   * only at the best model. Dividing each coefficient of that by the curvature
+   * in the direction of its parameter gives the change that coordinate
+   * descent would make to the parameter, and we stop once all of those are
+   * at most {@code tol}.
+   * <p>
+   * With no drives, every parameter is left out of the loss, so the best
+   * model is all zeros, which is returned after no iterations.
+   */
+  private int fit(TeamModel best, double penalty, double tol,
+      boolean verbose) {
+    if (stats.size() == 0) {
+      for (int param = 0; param < TeamModel.NUM_PARAMETERS; param++)
+        best.setParameter(param, 0.0);
+      return 0;
+    }
+
+    TeamModel last = best.copy();  // x_{k-1}
+    TeamModel point = best.copy();  // y_k
+    double momentum = 1.0;  // t_k
+    int counter = 0;
+    while (true) {
+      counter++;
+      double loss = point.evalLoss(stats, 0.0);
+      TeamModel gradient = point.evalLossDerivative(stats);
+      gradient.scaleBy(1.0 / stats.size());
+
+      // Backtrack until the quadratic with curvature L bounds the loss. If
+      // either is not finite, doubling L would never end, so we stop there.
+      TeamModel next;
+      while (true) {
+        next = proximalStep(point, gradient, penalty);
+        TeamModel step = next.copy().addScaledBy(-1, point);
+        double bound = loss + dot(gradient, step) +
+            lipschitz / 2 * dot(step, step);
+        double nextLoss = next.evalLoss(stats, 0.0);
+        if (!Double.isFinite(nextLoss) || !Double.isFinite(bound) ||
+            nextLoss <= bound * (1 + 1e-12))
+          break;
+        lipschitz *= BACKTRACK;
+      }
+
+      double diff = 0;
+      for (int param = 0; param < TeamModel.NUM_PARAMETERS; param++) {
+        if (curvatures[param] > 0) {
+          double change = point.getParameter(param) - next.getParameter(param);
+          diff = Math.max(diff,
+              Math.abs(lipschitz * change) / curvatures[param]);
+        }
+      }
+      printProgress(verbose, counter, diff, next, penalty);
+      if (diff <= tol) {
+        for (int param = 0; param < TeamModel.NUM_PARAMETERS; param++)
+          best.setParameter(param, next.getParameter(param));
+        return counter;
+      }
+
+      // If the momentum points uphill, restart it from the new model.
+      TeamModel direction = next.copy().addScaledBy(-1, last);
+      if (dot(point.copy().addScaledBy(-1, next), direction) > 0) {
+        last = next;
+        point = next.copy();
+        momentum = 1.0;
+        continue;
+      }
+
+      // Extrapolate from the last two models.
+      double nextMomentum =
+          (1 + Math.sqrt(1 + 4 * momentum * momentum)) / 2;
+      double scale = (momentum - 1) / nextMomentum;
+      point = next.copy().addScaledBy(scale, direction);
+      last = next;
+      momentum = nextMomentum;
+    }
+  }
+
+  /**
+   * Returns the result of a gradient step of size 1/L from the given point
+   * followed by the proximal operator of the penalty: each parameter is soft
+   * thresholded by penalty/L and then limited to [-LIMIT, LIMIT].
+   */
+  private TeamModel proximalStep(TeamModel point, TeamModel gradient,
+      double penalty) {
+    TeamModel next = new TeamModel();
+    double threshold = penalty / lipschitz;
+    for (int param = 0; param < TeamModel.NUM_PARAMETERS; param++) {
+      double x = point.getParameter(param) -
+          gradient.getParameter(param) / lipschitz;
+      if (x > threshold) {
+        x -= threshold;
+      } else if (x < -threshold) {
+        x += threshold;
+      } else {
+        x = 0;
+      }
+      next.setParameter(param, Math.max(-LIMIT, Math.min(LIMIT, x)));
+    }
+    return next;
+  }
+
+  /** Returns the dot product of the parameters of the two models. */
+  private static double dot(TeamModel a, TeamModel b) {
+    double sum = 0;
+    for (int param = 0; param < TeamModel.NUM_PARAMETERS; param++)
+      sum += a.getParameter(param) * b.getParameter(param);
+    return sum;
+  }
+
+  /** Prints the progress of fitting, if requested, as {@code TeamModeler}. */
+  private void printProgress(boolean verbose, int counter, double diff,
+      TeamModel best, double penalty) {
+    if (verbose) {
+      int numNonzero = best.countNonZeroParameters(0.005);
+      System.out.printf(
+          "At iteration number %d, change in model = %f; num non-zero: %d\n",
+          counter, diff, numNonzero);
+      System.out.printf("\tModel loss is: %g \n",
+          best.evalLoss(stats, penalty));
+    }
+  }
+}
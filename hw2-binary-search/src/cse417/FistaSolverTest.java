@@ -0,0 +1,105 @@
+package cse417;
+
+import java.util.*;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class FistaSolverTest {
+
+  @Test public void testRecoversModel() {
+    Random rand = new Random(423);
+    TeamModel actual = new TeamModel().setConstant(0.5);
+    for (int team = 0; team < TeamModel.NUM_TEAMS; team++) {
+      actual.setOffense(team, rand.nextGaussian());
+      actual.setDefense(team, rand.nextGaussian());
+    }
+
+    // With no noise and no penalty, the predictions should be nearly perfect.
+    List<Drive> drives = makeDrives(actual, 0, rand);
+    TeamModel model = new FistaSolver(drives).findBestModel(0, 1e-9, false);
+    assertEquals(0, model.evalLoss(drives, 0), 1e-12);
+  }
+
+  @Test public void testMatchesExact() {
+    Random rand = new Random(424);
+    TeamModel actual = new TeamModel().setConstant(-0.3);
+    for (int team = 0; team < TeamModel.NUM_TEAMS; team += 3)
+      actual.setOffense(team, 1).setDefense(team + 1, -1);
+    List<Drive> drives = makeDrives(actual, 2, rand);
+    LassoHomotopy exact = new LassoHomotopy(drives);
+
+    FistaSolver solver = new FistaSolver(drives);
+    for (double penalty : new double[] { 0.001, 0.01, 0.03, 0.1, 1 }) {
+      TeamModel model = solver.findBestModel(penalty, 1e-10, false);
+      TeamModel expected = exact.getModel(penalty);
+      assertEquals(0, model.copy().addScaledBy(-1, expected).norm0(), 1e-5);
+      assertEquals(expected.evalLoss(drives, penalty),
+          model.evalLoss(drives, penalty), 1e-12);
+
+      // A large enough penalty forces every parameter to zero exactly.
+      if (penalty >= 1)
+        assertEquals(0, model.countNonZeroParameters(Double.MIN_VALUE));
+    }
+  }
+
+  @Test public void testPath() {
+    Random rand = new Random(425);
+    TeamModel actual = new TeamModel().setConstant(0.2);
+    for (int team = 0; team < TeamModel.NUM_TEAMS; team += 2)
+      actual.setOffense(team, rand.nextGaussian()).setDefense(team + 1, 0.5);
+    List<Drive> drives = makeDrives(actual, 1, rand);
+    FistaSolver solver = new FistaSolver(drives);
+
+    double[] penalties = new double[] { 0.1, 0.03, 0.01, 0.003, 0.001 };
+    RegularizationPath path = solver.findPath(penalties, 1e-9);
+    RegularizationPath lasso =
+        new LassoSolver(drives).findPath(penalties, 1e-9);
+    assertEquals(penalties.length, path.size());
+
+    int coldIterations = 0;
+    for (int i = 0; i < penalties.length; i++) {
+      assertEquals(penalties[i], path.getPenalty(i), 0.0);
+      assertEquals(0, path.getModel(i)
+          .addScaledBy(-1, lasso.getModel(i)).norm0(), 1e-6);
+      coldIterations += solver.findPath(
+          new double[] { penalties[i] }, 1e-9).getIterations(0);
+    }
+    assertTrue(path.getTotalIterations() < coldIterations);
+  }
+
+  @Test public void testNoDrives() {
+    FistaSolver solver = new FistaSolver(new ArrayList<Drive>());
+    TeamModel start = new TeamModel().setConstant(1).setOffense(2, -1);
+    TeamModel model = solver.findBestModel(start, 0.01, 1e-9, false);
+    assertEquals(0, model.countNonZeroParameters(Double.MIN_VALUE));
+
+    RegularizationPath path =
+        solver.findPath(new double[] { 0.1, 0.01 }, 1e-9);
+    assertEquals(2, path.size());
+    assertEquals(0, path.getTotalIterations());
+    assertEquals(0, path.getModel(1).countNonZeroParameters(Double.MIN_VALUE));
+  }
+
+  /**
+   * Returns drives between every pair of teams whose changes in expected
+   * points are those predicted by the model plus noise with the given
+   * standard deviation.
+   */
+  private static List<Drive> makeDrives(
+      TeamModel model, double noise, Random rand) {
+    List<Drive> drives = new ArrayList<Drive>();
+    for (int off = 0; off < TeamModel.NUM_TEAMS; off++) {
+      for (int def = 0; def < TeamModel.NUM_TEAMS; def++) {
+        if (off == def)
+          continue;
+        double start = 3 * rand.nextDouble();
+        double change = model.getConstant() + model.getOffense(off) -
+            model.getDefense(def) + noise * rand.nextGaussian();
+        drives.add(new Drive(1, off, def, start, start + change));
+      }
+    }
+    return drives;
+  }
+}
@@ -0,0 +1,298 @@
+package cse417;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds the best {@code TeamModel} of a list of drives for <i>every</i>
+ * penalty at once using the homotopy method (least angle regression with the
+ * lasso modification).
+ * <p>
+ * As the penalty decreases from the smallest value at which every parameter
+ * is zero, each parameter of the best model changes linearly until the next
+ * point, called a breakpoint, where either a new parameter becomes non-zero
+ * or a non-zero parameter returns to zero. Between breakpoints, the changes
+ * are found by solving a linear system in the non-zero parameters, and the
+ * next breakpoint is the first penalty at which one of the conditions for
+ * optimality of the rest would be violated. So, the whole path is determined
+ * exactly by the models at the breakpoints, which this class computes.
+ * <p>
+ * Everything needed is computed from a {@code MatchupStats} summary, so the
+ * time taken does not depend on the number of drives. Unlike
+ * {@code LassoSolver}, the parameters are not limited to a fixed range.
+ * <p>
+ * Because a shift of every offense and defense by the same amount (or of the
+ * constant and every offense by opposite amounts) does not change any
+ * prediction, the best model is not unique once enough parameters are
+ * non-zero. The path stops at the first breakpoint where that happens,
+ * which may be above a penalty of zero.
+ */
+public final class LassoHomotopy {
+
+  /** Number of parameters in each model. */
+  private static final int NUM_PARAMS = TeamModel.NUM_PARAMETERS;
+
+  /** Relative size below which numbers are treated as zero. */
+  private static final double EPSILON = 1e-10;
+
+  /** Number of drives summarized. */
+  private final int numDrives;
+
+  /** Penalties at the breakpoints, in decreasing order. */
+  private final List<Double> penalties = new ArrayList<Double>();
+
+  /** Best model at each breakpoint. */
+  private final List<TeamModel> models = new ArrayList<TeamModel>();
+
+  /** Computes the path for the given drives. */
+  public LassoHomotopy(List<Drive> drives) {
+    this(new MatchupStats(drives));
+  }
+
+  /** Computes the path for the drives summarized by the given statistics. */
+  public LassoHomotopy(MatchupStats stats) {
+    this.numDrives = stats.size();
+
+    // Compute X^T X and X^T y, where the rows of X are the coefficients of
+    // the parameters in each prediction and y is the actual changes.
+    double[][] gram = new double[NUM_PARAMS][NUM_PARAMS];
+    double[] xty = new double[NUM_PARAMS];
+    int[] indexes = new int[3];
+    int[] coefs = new int[] { 1, 1, -1 };
+    for (int off = 0; off < TeamModel.NUM_TEAMS; off++) {
+      for (int def = 0; def < TeamModel.NUM_TEAMS; def++) {
+        int count = stats.getCount(off, def);
+        if (count == 0)
+          continue;
+        indexes[0] = TeamModel.CONSTANT;
+        indexes[1] = TeamModel.OFFENSES + off;
+        indexes[2] = TeamModel.DEFENSES + def;
+        double sum = count * stats.getMean(off, def);
+        for (int a = 0; a < 3; a++) {
+          xty[indexes[a]] += coefs[a] * sum;
+          for (int b = 0; b < 3; b++)
+            gram[indexes[a]][indexes[b]] += coefs[a] * coefs[b] * count;
+        }
+      }
+    }
+
+    computePath(gram, xty);
+  }
+
+  /**
+   * Fills in the breakpoints of the path. The loss (without the penalty) is
+   * {@code |y - X b|^2 / n}, so the optimality conditions are that each
+   * correlation, {@code (X^T (y - X b))_j}, equals {@code lambda sign(b_j)}
+   * where {@code b_j} is non-zero and is at most {@code lambda} in absolute
+   * value elsewhere, where {@code lambda = n * penalty / 2}.
+   */
+  private void computePath(double[][] gram, double[] xty) {
+    double[] params = new double[NUM_PARAMS];
+    double[] corr = xty.clone();
+    boolean[] active = new boolean[NUM_PARAMS];
+    double[] signs = new double[NUM_PARAMS];
+
+    int first = 0;
+    for (int j = 1; j < NUM_PARAMS; j++) {
+      if (Math.abs(corr[j]) > Math.abs(corr[first]))
+        first = j;
+    }
+    double lambda = Math.abs(corr[first]);
+    addBreakpoint(lambda, params);
+    if (lambda == 0)
+      return;  // the zero model is best for every penalty
+    active[first] = true;
+    signs[first] = Math.signum(corr[first]);
+    double tiny = EPSILON * lambda;
+
+    while (lambda > 0) {
+      // Find the direction in which the active parameters change as lambda
+      // decreases, which keeps their correlations equal to +/- lambda.
+      int[] act = indexesOf(active);
+      double[][] system = new double[act.length][act.length];
+      double[] dir = new double[act.length];
+      for (int a = 0; a < act.length; a++) {
+        for (int b = 0; b < act.length; b++)
+          system[a][b] = gram[act[a]][act[b]];
+        dir[a] = signs[act[a]];
+      }
+      if (!solve(system, dir))
+        break;  // best model is no longer unique
+
+      // Find the first step at which a parameter enters or leaves.
+      double step = lambda;
+      int changed = -1;
+      for (int j = 0; j < NUM_PARAMS; j++) {
+        if (active[j])
+          continue;
+        double rate = 0;  // rate of change of corr[j]
+        for (int a = 0; a < act.length; a++)
+          rate += gram[j][act[a]] * dir[a];
+        for (double s = -1; s <= 1; s += 2) {
+          // Solve corr[j] - rate * t = s * (lambda - t) for t.
+          double t = (s * lambda - corr[j]) / (s - rate);
+          if (t > tiny && t < step) {
+            step = t;
+            changed = j;
+          }
+        }
+      }
+      for (int a = 0; a < act.length; a++) {
+        double t = -params[act[a]] / dir[a];
+        if (t > tiny && t < step) {
+          step = t;
+          changed = act[a];
+        }
+      }
+
+      for (int a = 0; a < act.length; a++)
+        params[act[a]] += step * dir[a];
+      lambda = (changed < 0 || lambda - step <= tiny) ? 0 : lambda - step;
+      for (int j = 0; j < NUM_PARAMS; j++) {
+        corr[j] = xty[j];
+        for (int k = 0; k < NUM_PARAMS; k++)
+          corr[j] -= gram[j][k] * params[k];
+      }
+
+      if (changed >= 0) {
+        if (active[changed]) {
+          params[changed] = 0;
+          active[changed] = false;
+        } else {
+          active[changed] = true;
+          signs[changed] = Math.signum(corr[changed]);
+        }
+      }
+      addBreakpoint(lambda, params);
+    }
+  }
+
+  /** Returns the indexes of the true entries of the given array. */
+  private static int[] indexesOf(boolean[] flags) {
+    int count = 0;
+    for (boolean flag : flags) {
+      if (flag)
+        count++;
+    }
+    int[] indexes = new int[count];
+    for (int j = 0, k = 0; j < flags.length; j++) {
+      if (flags[j])
+        indexes[k++] = j;
+    }
+    return indexes;
+  }
+
+  /**
+   * Replaces {@code rhs} with the solution of {@code matrix x = rhs}, where
+   * the matrix is symmetric and positive semi-definite, using the Cholesky
+   * decomposition, which overwrites the matrix. Returns false if the matrix is
+   * (numerically) singular.
+   */
+  private static boolean solve(double[][] matrix, double[] rhs) {
+    int n = rhs.length;
+    double maxDiag = 0;
+    for (int i = 0; i < n; i++)
+      maxDiag = Math.max(maxDiag, matrix[i][i]);
+
+    // Replace the lower triangle with L, where matrix = L L^T.
+    for (int j = 0; j < n; j++) {
+      double pivot = matrix[j][j];
+      for (int k = 0; k < j; k++)
+        pivot -= matrix[j][k] * matrix[j][k];
+      if (pivot <= EPSILON * maxDiag)
+        return false;
+      matrix[j][j] = Math.sqrt(pivot);
+      for (int i = j + 1; i < n; i++) {
+        double value = matrix[i][j];
+        for (int k = 0; k < j; k++)
+          value -= matrix[i][k] * matrix[j][k];
+        matrix[i][j] = value / matrix[j][j];
+      }
+    }
+
+    for (int i = 0; i < n; i++) {  // solve L z = rhs
+      for (int k = 0; k < i; k++)
+        rhs[i] -= matrix[i][k] * rhs[k];
+      rhs[i] /= matrix[i][i];
+    }
+    for (int i = n - 1; i >= 0; i--) {  // solve L^T x = z
+      for (int k = i + 1; k < n; k++)
+        rhs[i] -= matrix[k][i] * rhs[k];
+      rhs[i] /= matrix[i][i];
+    }
+    return true;
+  }
+
+  /** Records a breakpoint with the given lambda and parameters. */
+  private void addBreakpoint(double lambda, double[] params) {
+    TeamModel model = new TeamModel();
+    for (int j = 0; j < NUM_PARAMS; j++)
+      model.setParameter(j, params[j]);
+    penalties.add(2 * lambda / numDrives);
+    models.add(model);
+  }
+
+  /** Returns the number of breakpoints on the path. */
+  public int size() { return penalties.size(); }
+
+  /** Returns the penalty at the i-th breakpoint, which decrease with i. */
+  public double getPenalty(int i) { return penalties.get(i); }
+
+  /** Returns (a copy of) the best model at the i-th breakpoint. */
+  public TeamModel getModel(int i) { return models.get(i).copy(); }
+
+  /** Returns the number of non-zero parameters at the i-th breakpoint. */
+  public int getNumNonZero(int i) {
+    return models.get(i).countNonZeroParameters(Double.MIN_VALUE);
+  }
+
+  /** Returns the smallest penalty for which the path is known. */
+  public double getMinPenalty() { return penalties.get(penalties.size() - 1); }
+
+  /**
+   * Returns the best model for the given penalty, which is found by linear
+   * interpolation between the surrounding breakpoints.
+   * @throws IllegalArgumentException if the penalty is below
+   *     {@code getMinPenalty}
+   */
+  public TeamModel getModel(double penalty) {
+    if (penalty >= penalties.get(0))
+      return getModel(0);
+    for (int i = 1; i < size(); i++) {
+      double lo = penalties.get(i);
+      if (penalty >= lo) {
+        double hi = penalties.get(i - 1);
+        return interpolate(i - 1, (hi - penalty) / (hi - lo));
+      }
+    }
+    throw new IllegalArgumentException(
+        "penalty is below the end of the path: " + penalty);
+  }
+
+  /**
+   * Returns the model the given fraction of the way from the i-th breakpoint
+   * to the next.
+   */
+  private TeamModel interpolate(int i, double frac) {
+    TeamModel model = getModel(i);
+    model.scaleBy(1 - frac);
+    return model.addScaledBy(frac, models.get(i + 1));
+  }
+
+  /**
+   * Returns the index of the breakpoint with the smallest penalty before the
+   * number of non-zero parameters first exceeds the given number. (If it never
+   * does, this is the last breakpoint.) The model there is the one with the
+   * smallest penalty having no more than that many non-zero parameters.
+   */
+  public int indexOfSparseModel(int maxNonZero) {
+    for (int i = 0; i + 1 < size(); i++) {
+      // A parameter that enters at a breakpoint is still zero there, so count
+      // the parameters in the middle of the segment that follows.
+      int count = interpolate(i, 0.5).countNonZeroParameters(Double.MIN_VALUE);
+      if (count > maxNonZero)
+        return i;
+    }
+    return size() - 1;
+  }
+}
@@ -0,0 +1,90 @@
+package cse417;
+
+import java.util.*;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class LassoHomotopyTest {
+
+  @Test public void testMatchesSolver() {
+    List<Drive> drives = makeDrives(new Random(18), 3000);
+    LassoHomotopy path = new LassoHomotopy(drives);
+    LassoSolver solver = new LassoSolver(drives);
+
+    assertEquals(0, path.getNumNonZero(0));
+    for (int i = 1; i < path.size(); i++)
+      assertTrue(path.getPenalty(i) < path.getPenalty(i - 1));
+    assertEquals(0, path.getMinPenalty(), 0.0);
+
+    // The first breakpoint is where the first parameter becomes non-zero.
+    assertEquals(0, solver.findBestModel(1.01 * path.getPenalty(0), 1e-12,
+        false).countNonZeroParameters(1e-12));
+    assertEquals(1, solver.findBestModel(0.99 * path.getPenalty(0), 1e-12,
+        false).countNonZeroParameters(1e-12));
+
+    for (double penalty : new double[] { 0.1, 0.03, 0.01, 0.003, 0.001 }) {
+      TeamModel expected = solver.findBestModel(penalty, 1e-13, false);
+      TeamModel actual = path.getModel(penalty);
+      assertEquals(0, actual.copy().addScaledBy(-1, expected).norm0(), 1e-9);
+    }
+    for (int i = 0; i < path.size() - 1; i++) {
+      TeamModel expected =
+          solver.findBestModel(path.getPenalty(i), 1e-13, false);
+      assertEquals(0,
+          path.getModel(i).addScaledBy(-1, expected).norm0(), 1e-9);
+    }
+  }
+
+  @Test public void testSparseModel() {
+    List<Drive> drives = makeDrives(new Random(19), 2000);
+    LassoHomotopy path = new LassoHomotopy(drives);
+
+    for (int k = 0; k <= TeamModel.NUM_PARAMETERS; k++) {
+      int index = path.indexOfSparseModel(k);
+      assertTrue(path.getNumNonZero(index) <= k);
+      if (index + 1 < path.size()) {
+        // Any smaller penalty has too many non-zero parameters.
+        double penalty =
+            0.999 * path.getPenalty(index) + 0.001 * path.getPenalty(index + 1);
+        assertTrue(path.getModel(penalty).countNonZeroParameters(
+            Double.MIN_VALUE) > k);
+      }
+    }
+  }
+
+  @Test public void testNoChange() {
+    // With every change zero, the zero model is best for any penalty.
+    List<Drive> drives = Arrays.asList(
+        new Drive(1, 0, 1, 2.0, 2.0), new Drive(1, 1, 0, 3.0, 3.0));
+    LassoHomotopy path = new LassoHomotopy(drives);
+    assertEquals(1, path.size());
+    assertEquals(0, path.getModel(0.0).countNonZeroParameters(1e-300));
+  }
+
+  /**
+   * Returns the given number of drives between random teams whose changes in
+   * expected points depend on a few of the teams.
+   */
+  private static List<Drive> makeDrives(Random rand, int numDrives) {
+    TeamModel actual = new TeamModel().setConstant(0.4);
+    for (int team = 0; team < TeamModel.NUM_TEAMS; team += 4) {
+      actual.setOffense(team, rand.nextGaussian());
+      actual.setDefense(team + 1, rand.nextGaussian());
+    }
+
+    List<Drive> drives = new ArrayList<Drive>();
+    while (drives.size() < numDrives) {
+      int off = rand.nextInt(TeamModel.NUM_TEAMS);
+      int def = rand.nextInt(TeamModel.NUM_TEAMS);
+      if (off == def)
+        continue;
+      double start = 3 * rand.nextDouble();
+      double change = actual.getConstant() + actual.getOffense(off) -
+          actual.getDefense(def) + rand.nextGaussian();
+      drives.add(new Drive(1, off, def, start, start + change));
+    }
+    return drives;
+  }
+}
@@ -0,0 +1,379 @@
+package cse417;
+
+import java.util.List;
+
+/**
+ * Finds the {@code TeamModel} that minimizes the loss function on a fixed
+ * list of drives by coordinate descent, like {@code TeamModeler}, but solving
+ * for each parameter exactly rather than by searching. With all of the other
+ * parameters fixed, the loss is a quadratic in the one parameter being changed
+ * plus the penalty times its absolute value. The minimum of that is found in
+ * closed form by "soft thresholding": move the least-squares solution toward
+ * zero by an amount that depends on the penalty, stopping at zero.
+ * <p>
+ * The quadratic for a parameter only depends on the drives it appears in,
+ * and the model predicts the same change for all drives with the same
+ * offense and defense, so the drives are summarized by {@code MatchupStats}.
+ * The residual of each matchup (mean actual minus predicted change) is kept
+ * up to date as the parameters change, so an update costs time proportional
+ * to the number of teams, not the number of drives. (The constant, which is
+ * in every prediction, is left out of the residuals and handled separately,
+ * so updating it takes constant time.)
+ */
+public class LassoSolver {
+
+  /**
+   * Each parameter is limited to the range [-LIMIT, LIMIT], which is the
+   * range searched by {@code TeamModeler}.
+   */
+  public static final double LIMIT = 8.0;
+
+  /** Summary of the drives used to fit the model. */
+  private final MatchupStats stats;
+
+  /** Number of drives in each matchup, indexed as in {@code residuals}. */
+  private final int[] counts;
+
+  /**
+   * Mean actual minus predicted change in the drives of each matchup under
+   * the current model, except that the constant is not subtracted. (Leaving
+   * it out means that changing the constant does not require changing every
+   * residual.) Entry {@code NUM_TEAMS * offense + defense} is for the drives
+   * with that offense and defense.
+   */
+  private final double[] residuals;
+
+  /** Sum of the residuals of all the drives (weighted by the counts). */
+  private double residualSum;
+
+  /** Value of the constant in the current model. */
+  private double constant;
+
+  /** Creates a solver for models of the given drives. */
+  public LassoSolver(List<Drive> drives) {
+    this(new MatchupStats(drives));
+  }
+
+  /** Creates a solver for models of the drives summarized by stats. */
+  public LassoSolver(MatchupStats stats) {
+    this.stats = stats;
+    this.counts = new int[TeamModel.NUM_TEAMS * TeamModel.NUM_TEAMS];
+    this.residuals = new double[counts.length];
+    for (int off = 0; off < TeamModel.NUM_TEAMS; off++) {
+      for (int def = 0; def < TeamModel.NUM_TEAMS; def++)
+        counts[TeamModel.NUM_TEAMS * off + def] = stats.getCount(off, def);
+    }
+  }
+
+  /**
+   * Returns the best model of the drives with the given penalty. The
+   * parameters are updated in the same order as in {@code TeamModeler}:
+   * constant, then each team's offense and defense. This stops when the L0
+   * norm of the change over one pass is no more than {@code tol}.
+   * @param verbose If true, prints progress of the model fitting process.
+   */
+  public TeamModel findBestModel(double penalty, double tol, boolean verbose) {
+    return findBestModel(new TeamModel(), penalty, tol, verbose);
+  }
+
+  /**
+   * As above but starting from the given model rather than all zeros. If the
+   * start is close to the best model, e.g., if it is the best model for a
+   * nearby penalty, this will take fewer passes to converge.
+   */
+  public TeamModel findBestModel(
+      TeamModel start, double penalty, double tol, boolean verbose) {
+    TeamModel best = start.copy();
+    fit(best, penalty, tol, verbose);
+    return best;
+  }
+
+  /**
+   * Returns the best models for each of the given penalties, each found
+   * starting from the one before. (The first starts from all zeros.) The
+   * penalties should normally be decreasing: a large penalty gives a model
+   * with few non-zero parameters, and each smaller penalty then only needs
+   * to adjust those and add a few more.
+   */
+  public RegularizationPath findPath(double[] penalties, double tol) {
+    return findPath(penalties, tol, false);
+  }
+
+  /**
+   * As above, but if {@code screen} is true, parameters that are likely to
+   * stay zero are screened out before fitting each model, and passes over
+   * all of the parameters are interleaved with passes over just the non-zero
+   * ones (the "active set"). This does more passes in all, but most of them
+   * are shorter, which pays off when the tolerance is tight enough that many
+   * passes are needed for each penalty. With loose tolerances, such as that
+   * of {@code TeamModeler}, it is no faster.
+   * <p>
+   * Screening uses the "sequential strong rule": a parameter that is zero in
+   * the previous model is left out if the derivative of the loss (without the
+   * penalty) in its direction is less than twice the new penalty minus the
+   * previous one in absolute value. Since the rule is not guaranteed, the
+   * screened parameters are checked once the rest have converged, and any
+   * that should be non-zero are added back.
+   */
+  public RegularizationPath findPath(double[] penalties, double tol,
+      boolean screen) {
+    TeamModel[] models = new TeamModel[penalties.length];
+    int[] iterations = new int[penalties.length];
+    TeamModel best = new TeamModel();
+
+    // All zeros is the best model for penalties of at least the largest
+    // derivative at zero, so that is the "previous" penalty for the first.
+    double lastPenalty = 0;
+    if (screen) {
+      computeResiduals(best);
+      for (int param = 0; param < TeamModel.NUM_PARAMETERS; param++)
+        lastPenalty = Math.max(lastPenalty, toPenalty(sumOfResiduals(param)));
+    }
+
+    for (int i = 0; i < penalties.length; i++) {
+      if (screen) {
+        computeResiduals(best);
+        boolean[] candidates = new boolean[TeamModel.NUM_PARAMETERS];
+        double cutoff = 2 * penalties[i] - lastPenalty;
+        for (int param = 0; param < TeamModel.NUM_PARAMETERS; param++) {
+          candidates[param] = best.getParameter(param) != 0 ||
+              toPenalty(sumOfResiduals(param)) >= cutoff;
+        }
+        iterations[i] = fitScreened(best, penalties[i], tol, candidates);
+        lastPenalty = penalties[i];
+      } else {
+        iterations[i] = fit(best, penalties[i], tol, false);
+      }
+      models[i] = best.copy();
+    }
+    return new RegularizationPath(penalties.clone(), models, iterations);
+  }
+
+  /**
+   * Changes the given model into the best one with the given penalty, as
+   * described above, and returns the number of passes made over the
+   * parameters. Each pass updates the model in place, keeping track of the
+   * largest change to any parameter as it goes.
+   */
+  private int fit(TeamModel best, double penalty, double tol,
+      boolean verbose) {
+    double diff = Double.MAX_VALUE;
+    int counter = 0;
+    while (diff > tol) {
+      counter++;
+      computeResiduals(best);  // (so rounding errors do not build up)
+      diff = update(best, penalty, null);
+      printProgress(verbose, counter, diff, best, penalty);
+    }
+    return counter;
+  }
+
+  /**
+   * As above, but only the parameters marked as candidates are changed until
+   * the end, when the rest are checked and any that should be non-zero are
+   * added to the candidates (and the fitting continues). After each pass over
+   * the candidates, passes are made over just the non-zero parameters until
+   * they stop changing.
+   */
+  private int fitScreened(TeamModel best, double penalty, double tol,
+      boolean[] candidates) {
+    boolean[] active = new boolean[TeamModel.NUM_PARAMETERS];
+    int counter = 0;
+    while (true) {
+      computeResiduals(best);  // (so rounding errors do not build up)
+      double diff = update(best, penalty, candidates);
+      counter++;
+
+      if (diff <= tol) {
+        if (!addViolations(best, penalty, candidates))
+          return counter;
+        continue;
+      }
+
+      for (int param = 0; param < TeamModel.NUM_PARAMETERS; param++)
+        active[param] = best.getParameter(param) != 0;
+      do {
+        diff = update(best, penalty, active);
+        counter++;
+      } while (diff > tol);
+    }
+  }
+
+  /**
+   * Updates each of the given parameters (or all of them, if params is null)
+   * in turn to its best value and returns the largest change to any one.
+   */
+  private double update(TeamModel best, double penalty, boolean[] params) {
+    double diff = 0;
+    if (params == null || params[TeamModel.CONSTANT]) {
+      double value = best.getConstant();
+      double newValue = updateConstant(value, penalty);
+      best.setConstant(newValue);
+      diff = Math.abs(newValue - value);
+    }
+    for (int team = 0; team < TeamModel.NUM_TEAMS; team++) {
+      if (params == null || params[TeamModel.OFFENSES + team]) {
+        double value = best.getOffense(team);
+        double newValue = updateOffense(team, value, penalty);
+        best.setOffense(team, newValue);
+        diff = Math.max(diff, Math.abs(newValue - value));
+      }
+      if (params == null || params[TeamModel.DEFENSES + team]) {
+        double value = best.getDefense(team);
+        double newValue = updateDefense(team, value, penalty);
+        best.setDefense(team, newValue);
+        diff = Math.max(diff, Math.abs(newValue - value));
+      }
+    }
+    return diff;
+  }
+
+  /**
+   * Adds to the candidates any other parameter whose best value, with the
+   * rest of the model fixed, is not zero. Returns whether there were any.
+   */
+  private boolean addViolations(TeamModel best, double penalty,
+      boolean[] candidates) {
+    boolean added = false;
+    for (int param = 0; param < TeamModel.NUM_PARAMETERS; param++) {
+      if (!candidates[param] &&
+          toPenalty(sumOfResiduals(param)) > penalty) {
+        candidates[param] = true;
+        added = true;
+      }
+    }
+    return added;
+  }
+
+  /** Prints the progress of fitting, if requested, as {@code TeamModeler}. */
+  private void printProgress(boolean verbose, int counter, double diff,
+      TeamModel best, double penalty) {
+    if (verbose) {
+      int numNonzero = best.countNonZeroParameters(0.005);
+      System.out.printf(
+          "At iteration number %d, change in model = %f; num non-zero: %d\n",
+          counter, diff, numNonzero);
+      System.out.printf("\tModel loss is: %g \n",
+          best.evalLoss(stats, penalty));
+    }
+  }
+
+  /**
+   * Returns the sum of the residuals of the drives involving the given
+   * parameter, including the constant. (For a parameter that is zero, that is
+   * the derivative of the loss without the penalty in its direction, up to a
+   * constant factor.)
+   */
+  private double sumOfResiduals(int param) {
+    if (param == TeamModel.CONSTANT)
+      return residualSum - stats.size() * constant;
+
+    double sum = 0;
+    if (param < TeamModel.DEFENSES) {
+      int start = TeamModel.NUM_TEAMS * (param - TeamModel.OFFENSES);
+      for (int i = start; i < start + TeamModel.NUM_TEAMS; i++)
+        sum += counts[i] * (residuals[i] - constant);
+    } else {
+      int team = param - TeamModel.DEFENSES;
+      for (int i = team; i < residuals.length; i += TeamModel.NUM_TEAMS)
+        sum += counts[i] * (residuals[i] - constant);
+    }
+    return sum;
+  }
+
+  /**
+   * Returns the smallest penalty for which a parameter that is zero, with
+   * the given sum of residuals, would remain zero.
+   */
+  private double toPenalty(double sum) {
+    return 2 * Math.abs(sum) / Math.max(1, stats.size());
+  }
+
+  /** Sets the residuals to those for the given model. */
+  private void computeResiduals(TeamModel model) {
+    residualSum = 0;
+    for (int off = 0; off < TeamModel.NUM_TEAMS; off++) {
+      for (int def = 0; def < TeamModel.NUM_TEAMS; def++) {
+        int index = TeamModel.NUM_TEAMS * off + def;
+        residuals[index] = stats.getMean(off, def) -
+            model.getOffense(off) + model.getDefense(def);
+        residualSum += counts[index] * residuals[index];
+      }
+    }
+    constant = model.getConstant();
+  }
+
+  /**
+   * Returns the best value for the constant, given its current value. Since
+   * the residuals do not include the constant, this takes constant time.
+   */
+  private double updateConstant(double value, double penalty) {
+    assert value == constant;
+    constant = minimize(stats.size(), residualSum, penalty);
+    return constant;
+  }
+
+  /**
+   * Returns the best value for the given team's offense, given its current
+   * value, and updates the residuals to match.
+   */
+  private double updateOffense(int team, double value, double penalty) {
+    int start = TeamModel.NUM_TEAMS * team;
+    double sum = 0;
+    int count = 0;
+    for (int i = start; i < start + TeamModel.NUM_TEAMS; i++) {
+      sum += counts[i] * (residuals[i] - constant + value);
+      count += counts[i];
+    }
+    double newValue = minimize(count, sum, penalty);
+    for (int i = start; i < start + TeamModel.NUM_TEAMS; i++)
+      residuals[i] -= newValue - value;
+    residualSum -= count * (newValue - value);
+    return newValue;
+  }
+
+  /**
+   * Returns the best value for the given team's defense, given its current
+   * value, and updates the residuals to match. Since the defense is
+   * subtracted in the prediction, this is the negation of the best value for
+   * a parameter that is added to it.
+   */
+  private double updateDefense(int team, double value, double penalty) {
+    double sum = 0;
+    int count = 0;
+    for (int i = team; i < residuals.length; i += TeamModel.NUM_TEAMS) {
+      sum += counts[i] * (residuals[i] - constant - value);
+      count += counts[i];
+    }
+    double newValue =  // (0 - x rather than -x so that 0 does not become -0)
+        0 - minimize(count, sum, penalty);
+    for (int i = team; i < residuals.length; i += TeamModel.NUM_TEAMS)
+      residuals[i] += newValue - value;
+    residualSum += count * (newValue - value);
+    return newValue;
+  }
+
+  /**
+   * Returns the x in [-LIMIT, LIMIT] minimizing the part of the loss that
+   * depends on one parameter that is added to the prediction of {@code count}
+   * drives, where {@code sum} is the sum of the residuals of those drives
+   * without that parameter. Dividing by the number of drives, n, that part is
+   * {@code (count x^2 - 2 sum x) / n + penalty |x|}.
+   */
+  private double minimize(int count, double sum, double penalty) {
+    if (count == 0)
+      return 0;  // only the penalty depends on x
+
+    // Soft threshold the least-squares solution, sum / count.
+    double threshold = penalty * stats.size() / 2;
+    double x;
+    if (sum > threshold) {
+      x = (sum - threshold) / count;
+    } else if (sum < -threshold) {
+      x = (sum + threshold) / count;
+    } else {
+      x = 0;
+    }
+    return Math.max(-LIMIT, Math.min(LIMIT, x));
+  }
+}
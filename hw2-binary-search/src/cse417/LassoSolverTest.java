@@ -0,0 +1,164 @@
+package cse417;
+
+import java.util.*;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class LassoSolverTest {
+
+  @Test public void testRecoversModel() {
+    Random rand = new Random(417);
+    TeamModel actual = new TeamModel().setConstant(0.5);
+    for (int team = 0; team < TeamModel.NUM_TEAMS; team++) {
+      actual.setOffense(team, rand.nextGaussian());
+      actual.setDefense(team, rand.nextGaussian());
+    }
+
+    // With no noise and no penalty, the fit should be nearly perfect. (The
+    // model is only determined up to shifting all the offenses and defenses
+    // by the same amount, so only check the predictions.)
+    List<Drive> drives = makeDrives(actual, 0, rand);
+    TeamModel model = new LassoSolver(drives).findBestModel(0, 1e-9, false);
+    assertEquals(0, model.evalLoss(drives, 0), 1e-12);
+  }
+
+  @Test public void testIsOptimal() {
+    Random rand = new Random(418);
+    TeamModel actual = new TeamModel().setConstant(-0.3);
+    for (int team = 0; team < TeamModel.NUM_TEAMS; team += 3)
+      actual.setOffense(team, 1).setDefense(team + 1, -1);
+    List<Drive> drives = makeDrives(actual, 2, rand);
+
+    for (double penalty : new double[] { 0, 0.001, 0.01, 0.1, 1 }) {
+      TeamModel model =
+          new LassoSolver(drives).findBestModel(penalty, 1e-10, false);
+      double loss = model.evalLoss(drives, penalty);
+
+      // No change to one parameter should improve the loss.
+      for (double delta : new double[] { -1e-4, 1e-4 }) {
+        assertTrue(loss <= model.copy()
+            .setConstant(model.getConstant() + delta)
+            .evalLoss(drives, penalty) + 1e-12);
+        for (int team = 0; team < TeamModel.NUM_TEAMS; team++) {
+          assertTrue(loss <= model.copy()
+              .setOffense(team, model.getOffense(team) + delta)
+              .evalLoss(drives, penalty) + 1e-12);
+          assertTrue(loss <= model.copy()
+              .setDefense(team, model.getDefense(team) + delta)
+              .evalLoss(drives, penalty) + 1e-12);
+        }
+      }
+
+      // A large enough penalty forces every parameter to zero.
+      if (penalty >= 1)
+        assertEquals(0, model.countNonZeroParameters(1e-12));
+    }
+  }
+
+  @Test public void testPath() {
+    Random rand = new Random(419);
+    TeamModel actual = new TeamModel().setConstant(0.2);
+    for (int team = 0; team < TeamModel.NUM_TEAMS; team += 2)
+      actual.setOffense(team, rand.nextGaussian()).setDefense(team + 1, 0.5);
+    LassoSolver solver = new LassoSolver(makeDrives(actual, 1, rand));
+
+    double[] penalties = new double[] { 0.1, 0.03, 0.01, 0.003, 0.001 };
+    RegularizationPath path = solver.findPath(penalties, 1e-10);
+    assertEquals(penalties.length, path.size());
+
+    int coldIterations = 0;
+    for (int i = 0; i < penalties.length; i++) {
+      assertEquals(penalties[i], path.getPenalty(i), 0.0);
+      TeamModel cold = solver.findBestModel(penalties[i], 1e-10, false);
+      assertEquals(0,
+          path.getModel(i).addScaledBy(-1, cold).norm0(), 1e-8);
+      coldIterations += solver.findPath(
+          new double[] { penalties[i] }, 1e-10).getIterations(0);
+    }
+    assertTrue(path.getTotalIterations() < coldIterations);
+
+    // Starting at the answer should leave it (nearly) unchanged.
+    TeamModel best = path.getModel(2);
+    assertEquals(0, solver.findBestModel(best, penalties[2], 1e-6, false)
+        .addScaledBy(-1, best).norm0(), 1e-6);
+  }
+
+  @Test public void testSparsePath() {
+    // The sparse models at large penalties leave out most parameters, which
+    // must become non-zero as the penalty decreases.
+    Random rand = new Random(420);
+    TeamModel actual = new TeamModel().setConstant(0.1);
+    for (int team = 0; team < TeamModel.NUM_TEAMS; team++)
+      actual.setOffense(team, 0.3 * rand.nextGaussian());
+    List<Drive> drives = makeDrives(actual, 1, rand);
+    LassoHomotopy exact = new LassoHomotopy(drives);
+
+    double[] penalties = new double[40];
+    for (int i = 0; i < penalties.length; i++)
+      penalties[i] = 0.05 * Math.pow(0.85, i);
+    RegularizationPath path =
+        new LassoSolver(drives).findPath(penalties, 1e-11);
+    for (int i = 0; i < penalties.length; i++) {
+      TeamModel expected = exact.getModel(penalties[i]);
+      assertEquals(0,
+          path.getModel(i).addScaledBy(-1, expected).norm0(), 1e-7);
+    }
+  }
+
+  @Test public void testScreenedPath() {
+    // The strong rule screens out most parameters at large penalties, and
+    // must add them back as the penalty decreases.
+    Random rand = new Random(421);
+    TeamModel actual = new TeamModel().setConstant(-0.2);
+    for (int team = 0; team < TeamModel.NUM_TEAMS; team++) {
+      actual.setOffense(team, 0.3 * rand.nextGaussian());
+      if (team % 3 == 0)
+        actual.setDefense(team, 0.3 * rand.nextGaussian());
+    }
+    List<Drive> drives = makeDrives(actual, 1, rand);
+    LassoHomotopy exact = new LassoHomotopy(drives);
+
+    double[] penalties = new double[40];
+    for (int i = 0; i < penalties.length; i++)
+      penalties[i] = 0.05 * Math.pow(0.85, i);
+    LassoSolver solver = new LassoSolver(drives);
+    RegularizationPath screened = solver.findPath(penalties, 1e-11, true);
+    RegularizationPath plain = solver.findPath(penalties, 1e-11, false);
+    for (int i = 0; i < penalties.length; i++) {
+      TeamModel expected = exact.getModel(penalties[i]);
+      assertEquals(0,
+          screened.getModel(i).addScaledBy(-1, expected).norm0(), 1e-7);
+      assertEquals(0, screened.getModel(i)
+          .addScaledBy(-1, plain.getModel(i)).norm0(), 1e-7);
+    }
+
+    // With no drives, every model is all zeros.
+    RegularizationPath empty = new LassoSolver(new ArrayList<Drive>())
+        .findPath(penalties, 1e-11, true);
+    for (int i = 0; i < penalties.length; i++)
+      assertEquals(0, empty.getModel(i).norm0(), 0.0);
+  }
+
+  /**
+   * Returns drives between every pair of teams whose changes in expected
+   * points are those predicted by the model plus noise with the given
+   * standard deviation.
+   */
+  private static List<Drive> makeDrives(
+      TeamModel model, double noise, Random rand) {
+    List<Drive> drives = new ArrayList<Drive>();
+    for (int off = 0; off < TeamModel.NUM_TEAMS; off++) {
+      for (int def = 0; def < TeamModel.NUM_TEAMS; def++) {
+        if (off == def)
+          continue;
+        double start = 3 * rand.nextDouble();
+        double change = model.getConstant() + model.getOffense(off) -
+            model.getDefense(def) + noise * rand.nextGaussian();
+        drives.add(new Drive(1, off, def, start, start + change));
+      }
+    }
+    return drives;
+  }
+}
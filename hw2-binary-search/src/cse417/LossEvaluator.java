@@ -0,0 +1,200 @@
+package cse417;
+
+/**
+ * Evaluates the loss function of a {@code TeamModel} on the drives summarized
+ * by a {@code MatchupStats}, both for the model as it is and for the model
+ * with one parameter changed ("what if"), without copying the model.
+ * <p>
+ * The residual (mean actual minus predicted change) of each matchup that has
+ * any drives is cached, as is the total squared error. Changing one team's
+ * offense only changes the residuals of the matchups with that offense, so
+ * the loss with a new value for it is found from the cached total by looking
+ * at just those matchups, which are indexed in advance. The same is true for
+ * defenses. The time for each evaluation is thus proportional to the number of
+ * opponents of that team, rather than to the number of drives or matchups.
+ * <p>
+ * Changes to the model must be made through this object so that the cached
+ * values stay up to date.
+ */
+public final class LossEvaluator {
+
+  /** Model whose loss is evaluated. */
+  private final TeamModel model;
+
+  /** Number of drives summarized. */
+  private final int numDrives;
+
+  // Offense, defense, and number of drives of each matchup with any drives.
+  private final int[] offenses, defenses, counts;
+
+  /** Sum over all drives of the squared difference from their matchup mean. */
+  private final double sumOfSquares;
+
+  /** Mean minus predicted change for each matchup under the current model. */
+  private final double[] residuals;
+
+  // Indexes of the matchups with each team on offense (defense) are stored in
+  // offMatchups (defMatchups) from offStarts[team] to offStarts[team+1] - 1.
+  private final int[] offStarts, offMatchups;
+  private final int[] defStarts, defMatchups;
+
+  /** Sum of count times the residual squared over all matchups. */
+  private double squaredError;
+
+  /** L1 norm of the current model. */
+  private double norm1;
+
+  /**
+   * Creates an evaluator for the given model, which is not copied, on the
+   * drives summarized by the given statistics.
+   */
+  public LossEvaluator(TeamModel model, MatchupStats stats) {
+    this.model = model;
+    this.numDrives = stats.size();
+
+    int numMatchups = 0;
+    for (int off = 0; off < TeamModel.NUM_TEAMS; off++) {
+      for (int def = 0; def < TeamModel.NUM_TEAMS; def++) {
+        if (stats.getCount(off, def) > 0)
+          numMatchups++;
+      }
+    }
+
+    this.offenses = new int[numMatchups];
+    this.defenses = new int[numMatchups];
+    this.counts = new int[numMatchups];
+    this.residuals = new double[numMatchups];
+    this.offStarts = new int[TeamModel.NUM_TEAMS + 1];
+    this.defStarts = new int[TeamModel.NUM_TEAMS + 1];
+    double sumOfSquares = 0;
+    int m = 0;
+    for (int off = 0; off < TeamModel.NUM_TEAMS; off++) {
+      for (int def = 0; def < TeamModel.NUM_TEAMS; def++) {
+        int count = stats.getCount(off, def);
+        if (count == 0)
+          continue;
+        offenses[m] = off;
+        defenses[m] = def;
+        counts[m] = count;
+        residuals[m] = stats.getMean(off, def) - model.getConstant() -
+            model.getOffense(off) + model.getDefense(def);
+        sumOfSquares += stats.getSumOfSquares(off, def);
+        offStarts[off + 1]++;
+        defStarts[def + 1]++;
+        m++;
+      }
+    }
+    this.sumOfSquares = sumOfSquares;
+
+    for (int team = 0; team < TeamModel.NUM_TEAMS; team++) {
+      offStarts[team + 1] += offStarts[team];
+      defStarts[team + 1] += defStarts[team];
+    }
+    this.offMatchups = new int[numMatchups];
+    this.defMatchups = new int[numMatchups];
+    int[] offNext = offStarts.clone();
+    int[] defNext = defStarts.clone();
+    for (m = 0; m < numMatchups; m++) {
+      offMatchups[offNext[offenses[m]]++] = m;
+      defMatchups[defNext[defenses[m]]++] = m;
+    }
+
+    updateTotals();
+  }
+
+  /** Returns the model being evaluated. */
+  public TeamModel getModel() { return model; }
+
+  /** Returns the value of the loss function for the current model. */
+  public double evalLoss(double penalty) {
+    return (sumOfSquares + squaredError) / numDrives + penalty * norm1;
+  }
+
+  /** Returns the loss if the constant term were changed to the given value. */
+  public double evalLossWithConstant(double value, double penalty) {
+    double old = model.getConstant();
+    double shift = value - old;  // decrease in every residual
+    double change = 0;
+    for (int m = 0; m < residuals.length; m++)
+      change += counts[m] * shift * (shift - 2 * residuals[m]);
+    return evalLoss(change, old, value, penalty);
+  }
+
+  /**
+   * Returns the loss if the given team's offense were changed to the given
+   * value.
+   */
+  public double evalLossWithOffense(int team, double value, double penalty) {
+    double old = model.getOffense(team);
+    double shift = value - old;  // decrease in the team's residuals
+    double change = 0;
+    for (int j = offStarts[team]; j < offStarts[team + 1]; j++) {
+      int m = offMatchups[j];
+      change += counts[m] * shift * (shift - 2 * residuals[m]);
+    }
+    return evalLoss(change, old, value, penalty);
+  }
+
+  /**
+   * Returns the loss if the given team's defense were changed to the given
+   * value.
+   */
+  public double evalLossWithDefense(int team, double value, double penalty) {
+    double old = model.getDefense(team);
+    double shift = old - value;  // decrease in the team's residuals
+    double change = 0;
+    for (int j = defStarts[team]; j < defStarts[team + 1]; j++) {
+      int m = defMatchups[j];
+      change += counts[m] * shift * (shift - 2 * residuals[m]);
+    }
+    return evalLoss(change, old, value, penalty);
+  }
+
+  /**
+   * Returns the loss with the given change in the squared error and one
+   * parameter changed from {@code old} to {@code value}.
+   */
+  private double evalLoss(double change, double old, double value,
+      double penalty) {
+    return (sumOfSquares + squaredError + change) / numDrives +
+        penalty * (norm1 - Math.abs(old) + Math.abs(value));
+  }
+
+  /** Sets the constant term of the model to the given value. */
+  public void setConstant(double value) {
+    double shift = value - model.getConstant();
+    for (int m = 0; m < residuals.length; m++)
+      residuals[m] -= shift;
+    model.setConstant(value);
+    updateTotals();
+  }
+
+  /** Sets the given team's offense in the model to the given value. */
+  public void setOffense(int team, double value) {
+    double shift = value - model.getOffense(team);
+    for (int j = offStarts[team]; j < offStarts[team + 1]; j++)
+      residuals[offMatchups[j]] -= shift;
+    model.setOffense(team, value);
+    updateTotals();
+  }
+
+  /** Sets the given team's defense in the model to the given value. */
+  public void setDefense(int team, double value) {
+    double shift = value - model.getDefense(team);
+    for (int j = defStarts[team]; j < defStarts[team + 1]; j++)
+      residuals[defMatchups[j]] += shift;
+    model.setDefense(team, value);
+    updateTotals();
+  }
+
+  /**
+   * Recomputes the total squared error and norm from scratch, so that
+   * rounding errors do not build up as parameters are changed.
+   */
+  private void updateTotals() {
+    squaredError = 0;
+    for (int m = 0; m < residuals.length; m++)
+      squaredError += counts[m] * residuals[m] * residuals[m];
+    norm1 = model.norm1();
+  }
+}
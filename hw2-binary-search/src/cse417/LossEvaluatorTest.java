@@ -0,0 +1,62 @@
+package cse417;
+
+import java.util.*;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class LossEvaluatorTest {
+
+  @Test public void testWhatIf() {
+    Random rand = new Random(19);
+    List<Drive> drives = new ArrayList<Drive>();
+    for (int i = 0; i < 3000; i++) {
+      int off = rand.nextInt(TeamModel.NUM_TEAMS);
+      int def = (off + 1 + rand.nextInt(5)) % TeamModel.NUM_TEAMS;
+      double start = 4 * rand.nextDouble();
+      drives.add(new Drive(1, off, def, start,
+          start + 2 * rand.nextGaussian()));
+    }
+
+    TeamModel model = new TeamModel().setConstant(0.3);
+    for (int team = 0; team < TeamModel.NUM_TEAMS; team += 3)
+      model.setOffense(team, rand.nextGaussian());
+    LossEvaluator loss = new LossEvaluator(model, new MatchupStats(drives));
+    assertSame(model, loss.getModel());
+
+    for (int trial = 0; trial < 200; trial++) {
+      double penalty = 0.01 * rand.nextInt(4);
+      double value = rand.nextGaussian();
+      int team = rand.nextInt(TeamModel.NUM_TEAMS);
+      assertEquals(model.evalLoss(drives, penalty), loss.evalLoss(penalty),
+          1e-10);
+
+      TeamModel before = model.copy();
+      switch (trial % 3) {
+        case 0:
+          assertEquals(
+              model.copy().setConstant(value).evalLoss(drives, penalty),
+              loss.evalLossWithConstant(value, penalty), 1e-10);
+          loss.setConstant(value);
+          before.setConstant(value);
+          break;
+        case 1:
+          assertEquals(
+              model.copy().setOffense(team, value).evalLoss(drives, penalty),
+              loss.evalLossWithOffense(team, value, penalty), 1e-10);
+          loss.setOffense(team, value);
+          before.setOffense(team, value);
+          break;
+        default:
+          assertEquals(
+              model.copy().setDefense(team, value).evalLoss(drives, penalty),
+              loss.evalLossWithDefense(team, value, penalty), 1e-10);
+          loss.setDefense(team, value);
+          before.setDefense(team, value);
+          break;
+      }
+      assertEquals(0, model.copy().addScaledBy(-1, before).norm0(), 0.0);
+    }
+  }
+}
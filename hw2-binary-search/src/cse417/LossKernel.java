@@ -0,0 +1,39 @@
+package cse417;
+
+/**
+ * Computes the parts of the loss function of a {@code TeamModel} that depend
+ * on the drives in a {@code DriveBatch}. The model is given as its array of
+ * parameters, in the order used by {@code TeamModel}.
+ */
+interface LossKernel {
+
+  /**
+   * Returns the sum over the drives of the squared difference between the
+   * actual and predicted change in expected points.
+   */
+  double sumOfSquaredErrors(double[] params, DriveBatch batch);
+
+  /** Adds the derivative of that sum to each entry of {@code deriv}. */
+  void addDerivative(double[] params, DriveBatch batch, double[] deriv);
+
+  /** Name of the module needed by {@code VectorLossKernel}. */
+  String VECTOR_MODULE = "jdk.incubator.vector";
+
+  /**
+   * Returns a {@code VectorLossKernel} if the JVM was started with the Vector
+   * API module (e.g., with {@code --add-modules jdk.incubator.vector}) and a
+   * {@code ScalarLossKernel} otherwise.
+   */
+  static LossKernel create() {
+    if (ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+      try {
+        // Loaded by name so that this class does not depend on it.
+        return (LossKernel) Class.forName("cse417.VectorLossKernel")
+            .getDeclaredConstructor().newInstance();
+      } catch (ReflectiveOperationException | LinkageError ex) {
+        // fall back to the scalar kernel
+      }
+    }
+    return new ScalarLossKernel();
+  }
+}
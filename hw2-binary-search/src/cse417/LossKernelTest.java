@@ -0,0 +1,89 @@
+package cse417;
+
+import java.util.*;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class LossKernelTest {
+
+  @Test public void testScalar() {
+    checkKernel(new ScalarLossKernel(), 0.0);
+  }
+
+  @Test public void testVector() {
+    // Only possible if the JVM was started with the module.
+    if (ModuleLayer.boot().findModule(LossKernel.VECTOR_MODULE).isPresent())
+      checkKernel(new VectorLossKernel(), 1e-9);
+  }
+
+  @Test public void testDefault() {
+    boolean hasModule =
+        ModuleLayer.boot().findModule(LossKernel.VECTOR_MODULE).isPresent();
+    assertEquals(hasModule, DriveBatch.KERNEL instanceof VectorLossKernel);
+    assertEquals(!hasModule, DriveBatch.KERNEL instanceof ScalarLossKernel);
+
+    Random rand = new Random(21);
+    List<Drive> drives = makeDrives(rand, 1001);
+    TeamModel model = makeModel(rand);
+    DriveBatch batch = new DriveBatch(drives);
+    assertEquals(1001, batch.size());
+    assertEquals(model.evalLoss(drives, 0.02), model.evalLoss(batch, 0.02),
+        1e-9);
+    assertEquals(0, model.evalLossDerivative(batch)
+        .addScaledBy(-1, model.evalLossDerivative(drives)).norm0(), 1e-9);
+  }
+
+  /**
+   * Checks that the given kernel agrees with {@code TeamModel} to within the
+   * given relative error on batches of several sizes.
+   */
+  private static void checkKernel(LossKernel kernel, double relError) {
+    Random rand = new Random(kernel.getClass().getName().length());
+    for (int size : new int[] { 1, 2, 7, 8, 9, 15, 16, 17, 1000, 4099 }) {
+      List<Drive> drives = makeDrives(rand, size);
+      DriveBatch batch = new DriveBatch(drives);
+      for (int trial = 0; trial < 5; trial++) {
+        TeamModel model = makeModel(rand);
+        double[] params = new double[TeamModel.NUM_PARAMETERS];
+        for (int j = 0; j < params.length; j++)
+          params[j] = model.getParameter(j);
+
+        double expected = model.evalLoss(drives, 0) * size;
+        assertEquals(expected, kernel.sumOfSquaredErrors(params, batch),
+            relError * expected);
+
+        TeamModel derivative = model.evalLossDerivative(drives);
+        double[] deriv = new double[params.length];
+        kernel.addDerivative(params, batch, deriv);
+        for (int j = 0; j < params.length; j++) {
+          assertEquals(derivative.getParameter(j), deriv[j],
+              relError * expected);
+        }
+      }
+    }
+  }
+
+  /** Returns the given number of drives between random teams. */
+  private static List<Drive> makeDrives(Random rand, int numDrives) {
+    List<Drive> drives = new ArrayList<Drive>();
+    for (int i = 0; i < numDrives; i++) {
+      double start = 5 * rand.nextDouble() - 1;
+      drives.add(new Drive(1, rand.nextInt(TeamModel.NUM_TEAMS),
+          rand.nextInt(TeamModel.NUM_TEAMS), start,
+          start + 3 * rand.nextGaussian()));
+    }
+    return drives;
+  }
+
+  /** Returns a model with random parameters. */
+  private static TeamModel makeModel(Random rand) {
+    TeamModel model = new TeamModel().setConstant(rand.nextGaussian());
+    for (int team = 0; team < TeamModel.NUM_TEAMS; team++) {
+      model.setOffense(team, rand.nextGaussian());
+      model.setDefense(team, rand.nextGaussian());
+    }
+    return model;
+  }
+}
@@ -0,0 +1,143 @@
+package cse417;
+
+import java.util.List;
+
+/**
+ * Summarizes a list of drives by what the loss function of a
+ * {@code TeamModel} needs to know about them. The model predicts the same
+ * change for every drive with the same offense and defense, so the squared
+ * error over all of those drives depends only on their number, the mean of
+ * their actual changes, and the sum of the squared differences from that mean:
+ * <pre>
+ *   sum (actual - predicted)^2 = M2 + count * (mean - predicted)^2
+ * </pre>
+ * Once these are computed for each of the {@code NUM_TEAMS^2} matchups, the
+ * loss of any model can be evaluated in time independent of the number of
+ * drives.
+ * <p>
+ * (Storing the mean and the squares about it, rather than the sums of the
+ * changes and of their squares, avoids losing precision to cancellation when
+ * the model fits the drives well.)
+ * <p>
+ * The summaries of disjoint lists of drives can be combined with
+ * {@code merge} into a summary of all of them, without looking at the drives
+ * again.
+ */
+public final class MatchupStats {
+
+  /** Number of drives summarized. */
+  private final int numDrives;
+
+  // Entry NUM_TEAMS * offense + defense of each array describes the drives
+  // with that offense and defense.
+  private final int[] counts;
+  private final double[] means;
+  private final double[] sumsOfSquares;
+
+  /** Creates a summary of the given drives. */
+  public MatchupStats(List<Drive> drives) {
+    int size = TeamModel.NUM_TEAMS * TeamModel.NUM_TEAMS;
+    this.numDrives = drives.size();
+    this.counts = new int[size];
+    this.means = new double[size];
+    this.sumsOfSquares = new double[size];
+
+    for (int i = 0; i < drives.size(); i++) {
+      Drive drive = drives.get(i);
+      int index = indexOf(drive.offense, drive.defense);
+      counts[index]++;
+      means[index] += drive.expPointsAtEnd - drive.expPointsAtStart;
+    }
+    for (int index = 0; index < size; index++) {
+      if (counts[index] > 0)
+        means[index] /= counts[index];
+    }
+
+    for (int i = 0; i < drives.size(); i++) {
+      Drive drive = drives.get(i);
+      int index = indexOf(drive.offense, drive.defense);
+      double diff =
+          drive.expPointsAtEnd - drive.expPointsAtStart - means[index];
+      sumsOfSquares[index] += diff * diff;
+    }
+  }
+
+  /** Creates an empty summary to be filled in by {@code merge}. */
+  private MatchupStats(int numDrives) {
+    int size = TeamModel.NUM_TEAMS * TeamModel.NUM_TEAMS;
+    this.numDrives = numDrives;
+    this.counts = new int[size];
+    this.means = new double[size];
+    this.sumsOfSquares = new double[size];
+  }
+
+  /**
+   * Returns a summary of all of the drives summarized by the given objects,
+   * which should describe disjoint lists of drives. For each matchup, the
+   * means and squares are combined by the formulas of Chan et al.:
+   * <pre>
+   *   mean = mean_a + delta * count_b / count
+   *   M2 = M2_a + M2_b + delta^2 * count_a * count_b / count
+   * </pre>
+   * where {@code delta = mean_b - mean_a}. This agrees with summarizing the
+   * drives all at once up to rounding errors.
+   */
+  public static MatchupStats merge(List<MatchupStats> parts) {
+    int numDrives = 0;
+    for (MatchupStats part : parts)
+      numDrives += part.numDrives;
+
+    MatchupStats sum = new MatchupStats(numDrives);
+    for (MatchupStats part : parts) {
+      for (int index = 0; index < sum.counts.length; index++) {
+        int countA = sum.counts[index];
+        int countB = part.counts[index];
+        if (countB == 0)
+          continue;
+        if (countA == 0) {  // copy exactly
+          sum.counts[index] = countB;
+          sum.means[index] = part.means[index];
+          sum.sumsOfSquares[index] = part.sumsOfSquares[index];
+          continue;
+        }
+
+        int count = countA + countB;
+        double delta = part.means[index] - sum.means[index];
+        sum.means[index] += delta * countB / count;
+        sum.sumsOfSquares[index] += part.sumsOfSquares[index] +
+            delta * delta * ((double) countA * countB / count);
+        sum.counts[index] = count;
+      }
+    }
+    return sum;
+  }
+
+  /** Returns the index in the arrays for the given matchup. */
+  private static int indexOf(int offense, int defense) {
+    return TeamModel.NUM_TEAMS * offense + defense;
+  }
+
+  /** Returns the number of drives summarized. */
+  public int size() { return numDrives; }
+
+  /** Returns the number of drives with the given offense and defense. */
+  public int getCount(int offense, int defense) {
+    return counts[indexOf(offense, defense)];
+  }
+
+  /**
+   * Returns the mean change in expected points over the drives with the given
+   * offense and defense (or zero if there are none).
+   */
+  public double getMean(int offense, int defense) {
+    return means[indexOf(offense, defense)];
+  }
+
+  /**
+   * Returns the sum over the drives with the given offense and defense of the
+   * squared difference between the change in expected points and the mean.
+   */
+  public double getSumOfSquares(int offense, int defense) {
+    return sumsOfSquares[indexOf(offense, defense)];
+  }
+}
@@ -0,0 +1,107 @@
+package cse417;
+
+import java.util.*;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class MatchupStatsTest {
+
+  @Test public void testCounts() {
+    List<Drive> drives = Arrays.asList(
+        new Drive(1, "SEA", "SF", 1.0, 3.0),
+        new Drive(1, "SEA", "SF", 2.0, 0.0),
+        new Drive(1, "SEA", "SF", 0.5, 1.5),
+        new Drive(2, "SF", "SEA", 1.0, 7.0));
+    MatchupStats stats = new MatchupStats(drives);
+    int sea = TeamModel.indexOf("SEA"), sf = TeamModel.indexOf("SF");
+
+    assertEquals(4, stats.size());
+    assertEquals(3, stats.getCount(sea, sf));
+    assertEquals(1, stats.getCount(sf, sea));
+    assertEquals(0, stats.getCount(sea, sea));
+    assertEquals(1.0 / 3, stats.getMean(sea, sf), 1e-15);
+    assertEquals(6.0, stats.getMean(sf, sea), 1e-15);
+    assertEquals(0.0, stats.getMean(sf, sf), 0.0);
+    assertEquals(
+        Math.pow(2 - 1.0 / 3, 2) + Math.pow(-2 - 1.0 / 3, 2) +
+            Math.pow(1 - 1.0 / 3, 2),
+        stats.getSumOfSquares(sea, sf), 1e-14);
+    assertEquals(0.0, stats.getSumOfSquares(sf, sea), 0.0);
+  }
+
+  @Test public void testLoss() {
+    Random rand = new Random(15);
+    List<Drive> drives = new ArrayList<Drive>();
+    for (int i = 0; i < 5000; i++) {
+      int off = rand.nextInt(TeamModel.NUM_TEAMS);
+      int def = rand.nextInt(TeamModel.NUM_TEAMS);
+      double start = 6 * rand.nextDouble() - 1;
+      drives.add(new Drive(1 + i % 17, off, def, start,
+          start + 3 * rand.nextGaussian()));
+    }
+    MatchupStats stats = new MatchupStats(drives);
+
+    for (int trial = 0; trial < 20; trial++) {
+      TeamModel model = new TeamModel().setConstant(rand.nextGaussian());
+      for (int team = 0; team < TeamModel.NUM_TEAMS; team++) {
+        if (rand.nextBoolean())
+          model.setOffense(team, rand.nextGaussian());
+        if (rand.nextBoolean())
+          model.setDefense(team, rand.nextGaussian());
+      }
+
+      double penalty = trial * 0.01;
+      assertEquals(model.evalLoss(drives, penalty),
+          model.evalLoss(stats, penalty), 1e-9);
+
+      TeamModel expected = model.evalLossDerivative(drives);
+      TeamModel actual = model.evalLossDerivative(stats);
+      assertEquals(0, actual.addScaledBy(-1, expected).norm0(), 1e-8);
+    }
+  }
+
+  @Test public void testMerge() {
+    Random rand = new Random(22);
+    List<Drive> drives = new ArrayList<Drive>();
+    List<MatchupStats> parts = new ArrayList<MatchupStats>();
+    for (int part = 0; part < 4; part++) {
+      List<Drive> partDrives = new ArrayList<Drive>();
+      for (int i = 0; i < 1000 * part; i++) {
+        double start = 6 * rand.nextDouble() - 1;
+        partDrives.add(new Drive(part, rand.nextInt(4), rand.nextInt(4),
+            start, start + 3 * rand.nextGaussian()));
+      }
+      drives.addAll(partDrives);
+      parts.add(new MatchupStats(partDrives));
+    }
+
+    MatchupStats expected = new MatchupStats(drives);
+    MatchupStats actual = MatchupStats.merge(parts);
+    assertEquals(expected.size(), actual.size());
+    for (int off = 0; off < TeamModel.NUM_TEAMS; off++) {
+      for (int def = 0; def < TeamModel.NUM_TEAMS; def++) {
+        assertEquals(expected.getCount(off, def), actual.getCount(off, def));
+        assertEquals(expected.getMean(off, def), actual.getMean(off, def),
+            1e-12);
+        assertEquals(expected.getSumOfSquares(off, def),
+            actual.getSumOfSquares(off, def), 1e-9);
+      }
+    }
+
+    // Merging one summary (or empty ones) gives the same numbers exactly.
+    MatchupStats same = MatchupStats.merge(Arrays.asList(parts.get(0),
+        parts.get(2), parts.get(0)));
+    assertEquals(parts.get(2).size(), same.size());
+    for (int off = 0; off < 4; off++) {
+      for (int def = 0; def < 4; def++) {
+        assertEquals(parts.get(2).getMean(off, def), same.getMean(off, def),
+            0.0);
+        assertEquals(parts.get(2).getSumOfSquares(off, def),
+            same.getSumOfSquares(off, def), 0.0);
+      }
+    }
+    assertEquals(0, MatchupStats.merge(new ArrayList<MatchupStats>()).size());
+  }
+}
@@ -1,6 +1,7 @@
 package cse417;
 
 import java.util.function.DoubleFunction;
+import java.util.function.DoubleUnaryOperator;
 
 
 /**
@@ -8,9 +9,93 @@ import java.util.function.DoubleFunction;
  * functions. When looking for the minimum, by unimodal, we mean that the
  * function must have a <b>unique</b> local minimum, whereas when looking for
  * the maximum, to be unimodal, the function must have a unique local maximum.
+ * <p>
+ * The {@code findMinimumOfUnimodal} methods use ternary search. The
+ * {@code minimize} methods instead take the search {@code Method} to use, take
+ * the function as a {@code DoubleUnaryOperator} (so that values are not
+ * boxed), and also report how many times the function was evaluated, which is
+ * where the time goes when the function is expensive.
+ * <p>
+ * When one pass over some data can evaluate the function at many points
+ * almost as quickly as at one, the function can be given as a
+ * {@code BatchEvaluator} instead, and searched with {@code minimizeBatch},
+ * which evaluates several points in each round.
  */
 public class Optimizer {
 
+  /** Ways of searching for the minimum of a unimodal function. */
+  public enum Method {
+    /**
+     * Evaluates the function at two points dividing the interval into thirds
+     * and keeps the two thirds containing the smaller value. This takes two
+     * evaluations to shrink the interval by a factor of 1.5.
+     */
+    TERNARY,
+
+    /**
+     * Like ternary search, but with the points dividing the interval in the
+     * golden ratio, so that the point kept inside the new interval is one of
+     * the points needed next. This takes one evaluation to shrink the interval
+     * by a factor of 1.618.
+     */
+    GOLDEN_SECTION,
+
+    /**
+     * Brent's method: moves to the minimum of the parabola through the best
+     * three points found so far when that is safely inside the interval and
+     * takes golden-section steps otherwise. This converges much faster on
+     * smooth functions and is never much slower than golden-section search.
+     */
+    BRENT
+  }
+
+  /**
+   * Function that can be evaluated at many points at once, e.g., in a single
+   * pass over some data.
+   */
+  @FunctionalInterface
+  public interface BatchEvaluator {
+
+    /**
+     * Sets {@code values[i]} to the value of the function at
+     * {@code points[i]} for each i. (The arrays have the same length.)
+     */
+    void evaluate(double[] points, double[] values);
+  }
+
+  /** Result of {@code minimize}: the point found and the work needed. */
+  public static final class Minimum {
+
+    private final double point;
+    private final int evaluations;
+    private final int rounds;
+
+    private Minimum(double point, int evaluations) {
+      this(point, evaluations, evaluations);
+    }
+
+    private Minimum(double point, int evaluations, int rounds) {
+      this.point = point;
+      this.evaluations = evaluations;
+      this.rounds = rounds;
+    }
+
+    /** Returns the point found, which is within the tolerance of the min. */
+    public double getPoint() { return point; }
+
+    /** Returns the number of points at which the function was evaluated. */
+    public int getEvaluations() { return evaluations; }
+
+    /**
+     * Returns the number of calls made to the function. This is the number
+     * of evaluations unless it was a {@code BatchEvaluator}.
+     */
+    public int getRounds() { return rounds; }
+  }
+
+  /** Fraction of the interval from each end to the golden-section points. */
+  private static final double GOLDEN = (3 - Math.sqrt(5)) / 2;
+
   /** The default for the maximum error in estimating the optimum. */
   public static double DEFAULT_TOLERANCE = 1e-12;
 
@@ -33,19 +118,202 @@ public class Optimizer {
       DoubleFunction<Double> f, double a, double b, double tol) {
     assert a <= b;
 
-    // Maintains the invariant that the minimu lies in [a,b]. Each iteration
+    return minimize(Method.TERNARY, x -> f.apply(x), a, b, tol).getPoint();
+  }
+
+  /**
+   * Returns a point within a distance of {@code tol} of the minimum of the
+   * given function, found by the given method, along with the number of
+   * evaluations of the function that were needed. The function must be
+   * unimodal with its minimum lying between {@code a} and {@code b}.
+   */
+  public static Minimum minimize(Method method, DoubleUnaryOperator f,
+      double a, double b, double tol) {
+    assert a <= b;
+    switch (method) {
+      case TERNARY: return ternarySearch(f, a, b, tol);
+      case GOLDEN_SECTION: return goldenSectionSearch(f, a, b, tol);
+      case BRENT: return brentSearch(f, a, b, tol);
+      default: throw new AssertionError("impossible");
+    }
+  }
+
+  /**
+   * Returns a point within a distance of {@code tol} of the minimum of the
+   * given function, which must be unimodal with its minimum lying between
+   * {@code a} and {@code b}, found by k-section search: each round evaluates
+   * the function at the {@code k} points dividing the interval into
+   * {@code k+1} equal parts, in one call, and keeps the two parts on either
+   * side of the point with the smallest value. This shrinks the interval by
+   * a factor of (k+1)/2 per round. (With k = 2, this is ternary search.)
+   */
+  public static Minimum minimizeBatch(BatchEvaluator f, int k,
+      double a, double b, double tol) {
+    assert a <= b;
+    if (k < 2)
+      throw new IllegalArgumentException("need at least two points: " + k);
+
+    double[] points = new double[k];
+    double[] values = new double[k];
+    int rounds = 0;
+    while (b - a > tol) {
+      double width = (b - a) / (k + 1);
+      for (int i = 0; i < k; i++)
+        points[i] = a + (i + 1) * width;
+      f.evaluate(points, values);
+      rounds++;
+
+      // Find the last point with the smallest value (so that ties are broken
+      // as in ternary search). The minimum lies between the points on either
+      // side of it (or the ends).
+      int best = 0;
+      for (int i = 1; i < k; i++) {
+        if (values[i] <= values[best])
+          best = i;
+      }
+      double lo = (best == 0) ? a : points[best - 1];
+      double hi = (best == k - 1) ? b : points[best + 1];
+      a = lo;
+      b = hi;
+    }
+
+    return new Minimum((a + b) / 2, k * rounds, rounds);
+  }
+
+  /** Implements {@code minimize} using ternary search. */
+  private static Minimum ternarySearch(DoubleUnaryOperator f,
+      double a, double b, double tol) {
+    // Maintains the invariant that the minimum lies in [a,b]. Each iteration
     // shrinks the distance between these points.
+    int evals = 0;
     while (b - a > tol) {
       double x1 = a + (b - a) / 3;
       double x2 = a + 2 * (b - a) / 3;
-      if (f.apply(x1) < f.apply(x2)) {
+      evals += 2;
+      if (f.applyAsDouble(x1) < f.applyAsDouble(x2)) {
         b = x2;
       } else {
         a = x1;
       }
     }
 
-    return (a + b) / 2;
+    return new Minimum((a + b) / 2, evals);
+  }
+
+  /** Implements {@code minimize} using golden-section search. */
+  private static Minimum goldenSectionSearch(DoubleUnaryOperator f,
+      double a, double b, double tol) {
+    if (b - a <= tol)
+      return new Minimum((a + b) / 2, 0);
+
+    // Maintains the invariant that the minimum lies in [a,b] and that x1 and
+    // x2 are the golden-section points of that interval, with values f1, f2.
+    double x1 = a + GOLDEN * (b - a), f1 = f.applyAsDouble(x1);
+    double x2 = b - GOLDEN * (b - a), f2 = f.applyAsDouble(x2);
+    int evals = 2;
+    while (b - a > tol) {
+      evals++;
+      if (f1 < f2) {
+        b = x2;
+        x2 = x1;
+        f2 = f1;
+        x1 = a + GOLDEN * (b - a);
+        f1 = f.applyAsDouble(x1);
+      } else {
+        a = x1;
+        x1 = x2;
+        f1 = f2;
+        x2 = b - GOLDEN * (b - a);
+        f2 = f.applyAsDouble(x2);
+      }
+    }
+
+    return new Minimum((a + b) / 2, evals);
+  }
+
+  /**
+   * Implements {@code minimize} using Brent's method, following the procedure
+   * {@code localmin} in Brent, "Algorithms for Minimization without
+   * Derivatives" (1973), with an absolute tolerance.
+   */
+  private static Minimum brentSearch(DoubleUnaryOperator f,
+      double a, double b, double tol) {
+    // x is the best point so far, w the second best, and v the previous value
+    // of w. The minimum lies in [a,b]. e is the size of the step before last.
+    double x = a + GOLDEN * (b - a);
+    double fx = f.applyAsDouble(x);
+    double w = x, fw = fx, v = x, fv = fx;
+    double d = 0, e = 0;
+    int evals = 1;
+
+    while (true) {
+      double m = (a + b) / 2;
+      double tol1 = tol / 2 + 2 * Math.ulp(x);
+      double tol2 = 2 * tol1;
+      if (Math.abs(x - m) <= tol2 - (b - a) / 2)
+        break;  // every point of [a,b] is within tol2 of x
+
+      // Try the minimum of the parabola through x, w, and v, which is x + p/q.
+      boolean golden = true;
+      if (Math.abs(e) > tol1) {
+        double r = (x - w) * (fx - fv);
+        double q = (x - v) * (fx - fw);
+        double p = (x - v) * q - (x - w) * r;
+        q = 2 * (q - r);
+        if (q > 0) {
+          p = -p;
+        } else {
+          q = -q;
+        }
+        r = e;
+        e = d;
+
+        // Only use it if it is inside the interval and the step is less than
+        // half of the one before last (so that the steps keep shrinking).
+        if (Math.abs(p) < Math.abs(q * r / 2) &&
+            p > q * (a - x) && p < q * (b - x)) {
+          d = p / q;
+          golden = false;
+          double u = x + d;
+          if (u - a < tol2 || b - u < tol2)
+            d = (x < m) ? tol1 : -tol1;  // (do not evaluate near the ends)
+        }
+      }
+      if (golden) {
+        e = (x < m) ? b - x : a - x;  // step into the larger part
+        d = GOLDEN * e;
+      }
+
+      // Never evaluate closer than tol1 to x.
+      double u = x + (Math.abs(d) >= tol1 ? d : Math.copySign(tol1, d));
+      double fu = f.applyAsDouble(u);
+      evals++;
+
+      if (fu <= fx) {
+        if (u < x) {
+          b = x;
+        } else {
+          a = x;
+        }
+        v = w; fv = fw;
+        w = x; fw = fx;
+        x = u; fx = fu;
+      } else {
+        if (u < x) {
+          a = u;
+        } else {
+          b = u;
+        }
+        if (fu <= fw || w == x) {
+          v = w; fv = fw;
+          w = u; fw = fu;
+        } else if (fu <= fv || v == x || v == w) {
+          v = u; fv = fu;
+        }
+      }
+    }
+
+    return new Minimum(x, evals);
   }
 
   /** 
@@ -67,4 +335,13 @@ public class Optimizer {
       DoubleFunction<Double> f, double a, double b, double tol) {
     return findMinimumOfUnimodal(x -> -f.apply(x), a, b, tol);
   }
+
+  /**
+   * Returns a point within a distance of {@code tol} of the maximum of the
+   * given function, found by the given method, as in {@code minimize}.
+   */
+  public static Minimum maximize(Method method, DoubleUnaryOperator f,
+      double a, double b, double tol) {
+    return minimize(method, x -> -f.applyAsDouble(x), a, b, tol);
+  }
 }
@@ -1,6 +1,8 @@
 package cse417;
 
+import java.util.*;
 import java.util.function.DoubleFunction;
+import java.util.function.DoubleUnaryOperator;
 
 import org.junit.Test;
 import static org.junit.Assert.*;
@@ -32,4 +34,148 @@ public class OptimizerTest {
     assertEquals(3, Optimizer.findMaximumOfUnimodal(h, -25, 25), 1e-5);
     assertEquals(3, Optimizer.findMaximumOfUnimodal(h, -25, 25, 1e-10), 1e-10);
   }
+
+  @Test
+  public void testMinimize() {
+    for (Optimizer.Method method : Optimizer.Method.values()) {
+      DoubleUnaryOperator f = x -> Math.abs(x);
+      assertEquals(0, minimize(method, f, -1, 1, 1e-5), 1e-5);
+      assertEquals(0, minimize(method, f, -10, 1, 1e-5), 1e-5);
+      assertEquals(0, minimize(method, f, -1, 10, 1e-5), 1e-5);
+      assertEquals(0, minimize(method, f, 0, 10, 1e-5), 1e-5);
+
+      DoubleUnaryOperator g = x -> Math.abs(x-1);
+      assertEquals(1, minimize(method, g, 0, 2, 1e-5), 1e-5);
+      assertEquals(1, minimize(method, g, 0, 10, 1e-5), 1e-5);
+
+      DoubleUnaryOperator h = x -> (x+3) * (x+3);
+      assertEquals(-3, minimize(method, h, -5, 5, 1e-5), 1e-5);
+      assertEquals(-3, minimize(method, h, -25, 25, 1e-10), 1e-10);
+      assertEquals(-3, minimize(method, h, -3, 25, 1e-10), 1e-10);
+
+      // Like the loss as a function of one parameter: a quadratic plus a
+      // penalty on the absolute value (with minima at 0.5 and 0). Near a
+      // smooth minimum of 0.75, values differing by rounding errors are only
+      // about 1e-8 apart, so only that accuracy is possible there.
+      DoubleUnaryOperator k = x -> (x-1) * (x-1) + Math.abs(x);
+      assertEquals(0.5, minimize(method, k, -8, 8, 1e-12), 1e-7);
+      DoubleUnaryOperator m = x -> 0.1 * (x-1) * (x-1) + Math.abs(x);
+      assertEquals(0, minimize(method, m, -8, 8, 1e-12), 1e-12);
+
+      DoubleUnaryOperator n = x -> -(x-3) * (x-3);
+      assertEquals(3, Optimizer.maximize(method, n, -25, 25, 1e-10)
+          .getPoint(), 1e-10);
+
+      assertEquals(0.5, minimize(method, k, 0.5, 0.5, 1e-12), 0.0);
+    }
+  }
+
+  @Test
+  public void testEvaluations() {
+    DoubleUnaryOperator f = x -> (x-1) * (x-1) + 0.01 * Math.abs(x);
+    int ternary = Optimizer.minimize(
+        Optimizer.Method.TERNARY, f, -8, 8, 1e-12).getEvaluations();
+    int golden = Optimizer.minimize(
+        Optimizer.Method.GOLDEN_SECTION, f, -8, 8, 1e-12).getEvaluations();
+    int brent = Optimizer.minimize(
+        Optimizer.Method.BRENT, f, -8, 8, 1e-12).getEvaluations();
+    assertTrue(golden < ternary / 2);
+    assertTrue(brent < golden);
+
+    // Counts should match the calls actually made.
+    int[] calls = new int[1];
+    int evals = Optimizer.minimize(Optimizer.Method.BRENT,
+        x -> { calls[0]++; return f.applyAsDouble(x); }, -8, 8, 1e-12)
+        .getEvaluations();
+    assertEquals(calls[0], evals);
+    assertEquals(0, Optimizer.minimize(
+        Optimizer.Method.TERNARY, f, 1, 1, 1e-12).getEvaluations());
+  }
+
+  /** Returns the point found by {@code Optimizer.minimize}. */
+  private static double minimize(Optimizer.Method method,
+      DoubleUnaryOperator f, double a, double b, double tol) {
+    return Optimizer.minimize(method, f, a, b, tol).getPoint();
+  }
+
+  @Test
+  public void testMinimizeBatch() {
+    for (int k = 2; k <= 9; k++) {
+      Optimizer.BatchEvaluator f = (xs, ys) -> {
+        for (int i = 0; i < xs.length; i++)
+          ys[i] = (xs[i]-1) * (xs[i]-1) + 0.01 * Math.abs(xs[i]);
+      };
+      Optimizer.Minimum min = Optimizer.minimizeBatch(f, k, -8, 8, 1e-9);
+      assertEquals(0.995, min.getPoint(), 1e-7);
+      assertEquals(k * min.getRounds(), min.getEvaluations());
+
+      Optimizer.BatchEvaluator g = (xs, ys) -> {
+        for (int i = 0; i < xs.length; i++)
+          ys[i] = Math.abs(xs[i] + 3);
+      };
+      assertEquals(-3, Optimizer.minimizeBatch(g, k, -25, 25, 1e-10)
+          .getPoint(), 1e-10);
+      assertEquals(-3, Optimizer.minimizeBatch(g, k, -3, 25, 1e-10)
+          .getPoint(), 1e-10);
+    }
+
+    // More points per round should mean fewer rounds. With k = 2, this is
+    // the same as ternary search.
+    DoubleUnaryOperator h = x -> (x+3) * (x+3);
+    Optimizer.BatchEvaluator hs = (xs, ys) -> {
+      for (int i = 0; i < xs.length; i++)
+        ys[i] = h.applyAsDouble(xs[i]);
+    };
+    Optimizer.Minimum ternary =
+        Optimizer.minimize(Optimizer.Method.TERNARY, h, -25, 25, 1e-10);
+    Optimizer.Minimum two = Optimizer.minimizeBatch(hs, 2, -25, 25, 1e-10);
+    assertEquals(ternary.getPoint(), two.getPoint(), 0.0);
+    assertEquals(ternary.getEvaluations(), two.getEvaluations());
+    assertTrue(Optimizer.minimizeBatch(hs, 9, -25, 25, 1e-10).getRounds() <
+        two.getRounds() / 2);
+  }
+
+  @Test
+  public void testBatchLoss() {
+    Random rand = new Random(25);
+    List<Drive> drives = new ArrayList<Drive>();
+    for (int i = 0; i < 2000; i++) {
+      double start = 5 * rand.nextDouble() - 1;
+      drives.add(new Drive(1, rand.nextInt(TeamModel.NUM_TEAMS),
+          rand.nextInt(TeamModel.NUM_TEAMS), start,
+          start + 3 * rand.nextGaussian()));
+    }
+    DriveBatch batch = new DriveBatch(drives);
+    TeamModel model = new TeamModel().setConstant(0.2);
+    for (int team = 0; team < TeamModel.NUM_TEAMS; team += 2)
+      model.setOffense(team, rand.nextGaussian()).setDefense(team + 1, -0.5);
+
+    double[] points = new double[] { -8, -1, -0.25, 0, 0.5, 3 };
+    double[] values = new double[points.length];
+    for (int team = 0; team < TeamModel.NUM_TEAMS; team += 5) {
+      model.lossWithOffense(batch, team, 0.03).evaluate(points, values);
+      for (int j = 0; j < points.length; j++) {
+        assertEquals(model.copy().setOffense(team, points[j])
+            .evalLoss(drives, 0.03), values[j], 1e-12);
+      }
+      model.lossWithDefense(batch, team, 0.03).evaluate(points, values);
+      for (int j = 0; j < points.length; j++) {
+        assertEquals(model.copy().setDefense(team, points[j])
+            .evalLoss(drives, 0.03), values[j], 1e-12);
+      }
+    }
+    model.lossWithConstant(batch, 0.03).evaluate(points, values);
+    for (int j = 0; j < points.length; j++) {
+      assertEquals(model.copy().setConstant(points[j])
+          .evalLoss(drives, 0.03), values[j], 1e-12);
+    }
+
+    // The search should agree with searching one point at a time.
+    double expected = Optimizer.minimize(Optimizer.Method.GOLDEN_SECTION,
+        x -> model.copy().setOffense(4, x).evalLoss(drives, 0.03),
+        -8, 8, 1e-9).getPoint();
+    double actual = Optimizer.minimizeBatch(
+        model.lossWithOffense(batch, 4, 0.03), 7, -8, 8, 1e-9).getPoint();
+    assertEquals(expected, actual, 1e-6);
+  }
 }
@@ -0,0 +1,128 @@
+package cse417;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class ReadAheadReaderTest {
+
+  @Test public void testSmallBuffers() throws IOException {
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 1000; i++)
+      content.append(i).append(",\u00e9\u4e2d,").append(i % 7).append('\n');
+    byte[] bytes = content.toString().getBytes(StandardCharsets.UTF_8);
+
+    for (int size : new int[] { 1, 7, 1 << 16 }) {
+      for (int numBuffers : new int[] { 1, 3 }) {
+        Reader reader = new ReadAheadReader(
+            new ByteArrayInputStream(bytes), size, numBuffers);
+        assertEquals(content.toString(), readAll(reader, size % 5 + 1));
+        assertEquals(-1, reader.read());
+        reader.close();
+      }
+    }
+
+    Reader reader = new ReadAheadReader(new ByteArrayInputStream(new byte[0]));
+    assertEquals(-1, reader.read());
+    reader.close();
+  }
+
+  @Test public void testGzip() throws IOException {
+    StringBuilder content = new StringBuilder("A,B,C\n");
+    for (int i = 0; i < 50000; i++)
+      content.append(i).append(",\"x").append(i).append("\",").append(i / 2.)
+          .append('\n');
+    Object[] colTypes = new Object[] {
+        Integer.class, String.class, Float.class };
+    File plain = writeTempFile(".csv", content.toString(), false);
+    File gzip = writeTempFile(".csv.gz", content.toString(), true);
+
+    for (File file : new File[] { plain, gzip }) {
+      try (CsvParser parser =
+               CsvParser.openReadAhead(file.getPath(), true, colTypes)) {
+        CsvParser copy = new CsvParser(new StringReader(content.toString()),
+            true, colTypes);
+        while (copy.hasNext())
+          assertArrayEquals(copy.next(), parser.next());
+        assertFalse(parser.hasNext());
+      }
+    }
+  }
+
+  @Test public void testErrors() throws IOException {
+    File notGzip = writeTempFile(".csv.gz", "a,b\n", false);
+    try { ReadAheadReader.open(notGzip.getPath()); fail(); }
+    catch (IOException ex) { /* pass */ }
+
+    // Cut off the end of a compressed file.
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 10000; i++)
+      content.append(i).append('\n');
+    File gzip = writeTempFile(".csv.gz", content.toString(), true);
+    byte[] bytes = Files.readAllBytes(gzip.toPath());
+    try (OutputStream out = new FileOutputStream(gzip)) {
+      out.write(bytes, 0, bytes.length / 2);
+    }
+    try (Reader reader = ReadAheadReader.open(gzip.getPath())) {
+      readAll(reader, 100);
+      fail();
+    } catch (IOException ex) { /* pass */ }
+
+    // Closing before the end must not wait for the rest of the input.
+    Reader reader = new ReadAheadReader(
+        new ByteArrayInputStream(new byte[1 << 20]), 16, 2);
+    assertEquals(0, reader.read());
+    reader.close();
+  }
+
+  @Test public void testReadAfterClose() throws IOException {
+    Reader reader = new ReadAheadReader(
+        new ByteArrayInputStream(new byte[1 << 20]), 16, 2);
+    assertEquals(0, reader.read());
+    reader.close();
+    try { reader.read(); fail(); }
+    catch (IOException ex) { /* pass */ }
+    try { reader.read(new char[0], 0, 0); fail(); }
+    catch (IOException ex) { /* pass */ }
+    reader.close();  // closing again does nothing
+
+    // The same holds for a reader that never read anything.
+    reader = new ReadAheadReader(new ByteArrayInputStream(new byte[10]));
+    reader.close();
+    try { reader.read(new char[4], 0, 4); fail(); }
+    catch (IOException ex) { /* pass */ }
+  }
+
+  /** Returns all the text from the reader, read in pieces of the given size. */
+  private static String readAll(Reader reader, int size) throws IOException {
+    StringBuilder text = new StringBuilder();
+    char[] buf = new char[size];
+    int n;
+    while ((n = reader.read(buf, 0, size)) >= 0)
+      text.append(buf, 0, n);
+    return text.toString();
+  }
+
+  /**
+   * Returns a new temporary file with the given suffix and content, which is
+   * compressed with gzip if requested.
+   */
+  private static File writeTempFile(String suffix, String content,
+      boolean compress) throws IOException {
+    File file = File.createTempFile("csv", suffix);
+    file.deleteOnExit();
+    OutputStream out = new FileOutputStream(file);
+    if (compress)
+      out = new GZIPOutputStream(out);
+    try (Writer writer = new OutputStreamWriter(out, "UTF-8")) {
+      writer.write(content);
+    }
+    return file;
+  }
+}
@@ -0,0 +1,42 @@
+package cse417;
+
+/**
+ * Stores the best {@code TeamModel}s for a sequence of penalties, as found by
+ * {@code LassoSolver.findPath}, along with the number of passes of coordinate
+ * descent that were needed to find each one.
+ */
+public final class RegularizationPath {
+
+  private final double[] penalties;
+  private final TeamModel[] models;
+  private final int[] iterations;
+
+  /** Creates a path with the given data, which is not copied. */
+  RegularizationPath(double[] penalties, TeamModel[] models, int[] iterations) {
+    assert penalties.length == models.length;
+    assert penalties.length == iterations.length;
+    this.penalties = penalties;
+    this.models = models;
+    this.iterations = iterations;
+  }
+
+  /** Returns the number of penalties on the path. */
+  public int size() { return penalties.length; }
+
+  /** Returns the i-th penalty. */
+  public double getPenalty(int i) { return penalties[i]; }
+
+  /** Returns (a copy of) the best model for the i-th penalty. */
+  public TeamModel getModel(int i) { return models[i].copy(); }
+
+  /** Returns the number of passes needed to find the i-th model. */
+  public int getIterations(int i) { return iterations[i]; }
+
+  /** Returns the total number of passes over all the penalties. */
+  public int getTotalIterations() {
+    int total = 0;
+    for (int count : iterations)
+      total += count;
+    return total;
+  }
+}
@@ -0,0 +1,35 @@
+package cse417;
+
+/**
+ * Loss kernel that processes one drive at a time. This gives exactly the
+ * same results as {@code TeamModel.evalLoss} on a list of the drives.
+ */
+final class ScalarLossKernel implements LossKernel {
+
+  @Override
+  public double sumOfSquaredErrors(double[] params, DriveBatch batch) {
+    double constant = params[TeamModel.CONSTANT];
+    double sum = 0;
+    for (int i = batch.start; i < batch.end; i++) {
+      double predicted = constant +
+          params[batch.offenses[i]] - params[batch.defenses[i]];
+      double error = batch.changes[i] - predicted;
+      sum += error * error;
+    }
+    return sum;
+  }
+
+  @Override
+  public void addDerivative(double[] params, DriveBatch batch,
+      double[] deriv) {
+    double constant = params[TeamModel.CONSTANT];
+    for (int i = batch.start; i < batch.end; i++) {
+      double predicted = constant +
+          params[batch.offenses[i]] - params[batch.defenses[i]];
+      double error = batch.changes[i] - predicted;
+      deriv[TeamModel.CONSTANT] -= 2 * error;
+      deriv[batch.offenses[i]] -= 2 * error;
+      deriv[batch.defenses[i]] += 2 * error;
+    }
+  }
+}
@@ -0,0 +1,187 @@
+package cse417;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Program that compares the iterations and time needed to fit models by
+ * coordinate descent, with {@code LassoSolver}, and by accelerated proximal
+ * gradient, with {@code FistaSolver}. Each of the given drive files is tried
+ * as is and then as synthetic data with {@code --scale} (by default, 100)
+ * times as many drives, drawn from a random sparse model plus noise.
+ * <p>
+ * Two tasks are timed: fitting the path of penalties used by
+ * {@code TeamModeler --train} with its tolerance, and fitting a single model
+ * from scratch with a much tighter tolerance. Finally, the path is fit by
+ * coordinate descent with the tighter tolerance, with and without screening
+ * (see {@code LassoSolver.findPath}).
+ * <p>
+ * The losses of the models are compared on a {@code DriveBatch} of the drives,
+ * which uses SIMD instructions if the JVM is started with
+ * {@code --add-modules jdk.incubator.vector}.
+ */
+public class SolverBenchmark {
+
+  /**
+   * Number of times each measurement is repeated. The best is kept, so there
+   * must be enough that the first, before the JIT compiler has finished with
+   * the code, is not it.
+   */
+  private static final int TRIALS = 20;
+
+  /** Tolerance used by {@code TeamModeler}. */
+  private static final double TOLERANCE = 5e-3;
+
+  /** Tolerance used for the single model. */
+  private static final double TIGHT_TOLERANCE = 1e-6;
+
+  /** Penalty used for the single model. */
+  private static final double PENALTY = 0.01;
+
+  /** Entry point for a program to run the benchmark. */
+  public static void main(String[] args) throws IOException {
+    ArgParser argParser = new ArgParser("SolverBenchmark");
+    argParser.addOption("scale", Integer.class);
+    args = argParser.parseArgs(args, 1, 10);
+    int scale = argParser.hasOption("scale") ?
+        argParser.getIntegerOption("scale") : 100;
+
+    double[] penalties = new double[51];
+    for (int j = 0; j < penalties.length; j++)
+      penalties[j] = 0.05 - 0.001 * j;
+    penalties[penalties.length - 1] = 0.0;  // (rather than -3.5e-17)
+
+    System.out.println(
+        "                          iters   time (ms)    max loss diff");
+    Random rand = new Random(417);
+    for (String fileName : args) {
+      DriveStore store = TeamModeler.loadDrives(fileName);
+      List<Drive> drives = store.getDrives(store.getMinWeek(),
+          store.getMaxWeek());
+      System.out.printf("%s (%d drives)%n", fileName, drives.size());
+      report(drives, store.getBatch(store.getMinWeek(), store.getMaxWeek()),
+          penalties);
+
+      List<Drive> synthetic = makeDrives(rand, scale * drives.size());
+      System.out.printf("synthetic (%d drives)%n", synthetic.size());
+      report(synthetic, new DriveBatch(synthetic), penalties);
+    }
+  }
+
+  /**
+   * Prints the results of both solvers on both tasks for the drives, which
+   * are also given as a batch for computing the losses.
+   */
+  private static void report(List<Drive> drives, DriveBatch batch,
+      double[] penalties) {
+    TeamModel[] cdModels = new TeamModel[penalties.length];
+    TeamModel[] fistaModels = new TeamModel[penalties.length];
+    long cdNanos = Long.MAX_VALUE, fistaNanos = Long.MAX_VALUE;
+    int cdIters = 0, fistaIters = 0;
+    for (int trial = 0; trial < TRIALS; trial++) {
+      long start = System.nanoTime();
+      RegularizationPath path =
+          new LassoSolver(drives).findPath(penalties, TOLERANCE);
+      cdNanos = Math.min(cdNanos, System.nanoTime() - start);
+      cdIters = path.getTotalIterations();
+      for (int j = 0; j < penalties.length; j++)
+        cdModels[j] = path.getModel(j);
+
+      start = System.nanoTime();
+      path = new FistaSolver(drives).findPath(penalties, TOLERANCE);
+      fistaNanos = Math.min(fistaNanos, System.nanoTime() - start);
+      fistaIters = path.getTotalIterations();
+      for (int j = 0; j < penalties.length; j++)
+        fistaModels[j] = path.getModel(j);
+    }
+
+    double maxDiff = 0;
+    for (int j = 0; j < penalties.length; j++) {
+      maxDiff = Math.max(maxDiff, Math.abs(
+          cdModels[j].evalLoss(batch, penalties[j]) -
+          fistaModels[j].evalLoss(batch, penalties[j])));
+    }
+    System.out.printf("  path, coord. descent %8d %10.1f%n",
+        cdIters, cdNanos / 1e6);
+    System.out.printf("  path, FISTA          %8d %10.1f    %.2e%n",
+        fistaIters, fistaNanos / 1e6, maxDiff);
+
+    TeamModel cdModel = null, fistaModel = null;
+    cdNanos = fistaNanos = Long.MAX_VALUE;
+    for (int trial = 0; trial < TRIALS; trial++) {
+      long start = System.nanoTime();
+      RegularizationPath path = new LassoSolver(drives).findPath(
+          new double[] { PENALTY }, TIGHT_TOLERANCE);
+      cdNanos = Math.min(cdNanos, System.nanoTime() - start);
+      cdIters = path.getTotalIterations();
+      cdModel = path.getModel(0);
+
+      start = System.nanoTime();
+      path = new FistaSolver(drives).findPath(
+          new double[] { PENALTY }, TIGHT_TOLERANCE);
+      fistaNanos = Math.min(fistaNanos, System.nanoTime() - start);
+      fistaIters = path.getTotalIterations();
+      fistaModel = path.getModel(0);
+    }
+
+    maxDiff = Math.abs(cdModel.evalLoss(batch, PENALTY) -
+        fistaModel.evalLoss(batch, PENALTY));
+    System.out.printf("  tight, coord. descent %7d %10.1f%n",
+        cdIters, cdNanos / 1e6);
+    System.out.printf("  tight, FISTA          %7d %10.1f    %.2e%n",
+        fistaIters, fistaNanos / 1e6, maxDiff);
+
+    RegularizationPath plain = null, screened = null;
+    long plainNanos = Long.MAX_VALUE, screenedNanos = Long.MAX_VALUE;
+    for (int trial = 0; trial < TRIALS; trial++) {
+      long start = System.nanoTime();
+      plain = new LassoSolver(drives).findPath(
+          penalties, TIGHT_TOLERANCE, false);
+      plainNanos = Math.min(plainNanos, System.nanoTime() - start);
+
+      start = System.nanoTime();
+      screened = new LassoSolver(drives).findPath(
+          penalties, TIGHT_TOLERANCE, true);
+      screenedNanos = Math.min(screenedNanos, System.nanoTime() - start);
+    }
+
+    maxDiff = 0;
+    for (int j = 0; j < penalties.length; j++) {
+      maxDiff = Math.max(maxDiff, Math.abs(
+          plain.getModel(j).evalLoss(batch, penalties[j]) -
+          screened.getModel(j).evalLoss(batch, penalties[j])));
+    }
+    System.out.printf("  tight path, plain     %7d %10.1f%n",
+        plain.getTotalIterations(), plainNanos / 1e6);
+    System.out.printf("  tight path, screened  %7d %10.1f    %.2e%n",
+        screened.getTotalIterations(), screenedNanos / 1e6, maxDiff);
+  }
+
+  /**
+   * Returns the given number of drives between random teams, whose changes in
+   * expected points come from a model with a few non-zero parameters plus
+   * noise about as large as in the real data.
+   */
+  private static List<Drive> makeDrives(Random rand, int numDrives) {
+    TeamModel model = new TeamModel().setConstant(-0.3);
+    for (int team = 0; team < TeamModel.NUM_TEAMS; team++) {
+      if (rand.nextInt(3) == 0)
+        model.setOffense(team, 0.5 * rand.nextGaussian());
+      if (rand.nextInt(3) == 0)
+        model.setDefense(team, 0.5 * rand.nextGaussian());
+    }
+
+    List<Drive> drives = new ArrayList<Drive>();
+    for (int i = 0; i < numDrives; i++) {
+      int off = rand.nextInt(TeamModel.NUM_TEAMS);
+      int def = rand.nextInt(TeamModel.NUM_TEAMS);
+      double start = 5 * rand.nextDouble() - 1;
+      double change = model.getConstant() + model.getOffense(off) -
+          model.getDefense(def) + 2.6 * rand.nextGaussian();
+      drives.add(new Drive(1, off, def, start, start + change));
+    }
+    return drives;
+  }
+}
@@ -38,82 +38,125 @@ public class TeamModel {
           "PHI", "PIT", "SD", "SEA", "SF", "TB", "TEN", "WAS"
       }));
 
-  /** Stores the value of the constant term in the model. */
-  private double constant;
+  /** Number of teams in {@code TEAMS}. */
+  public static final int NUM_TEAMS = TEAMS.size();
 
-  /** Stores the value of the parameter for each offense. */
-  private final Map<String, Double> offenses;
+  /** Maps each team name to its index in {@code TEAMS}. */
+  private static final Map<String, Integer> TEAM_INDEXES =
+      new HashMap<String, Integer>();
+  static {
+    for (int i = 0; i < NUM_TEAMS; i++)
+      TEAM_INDEXES.put(TEAMS.get(i), i);
+  }
+
+  /** Index in {@code params} of the constant term. */
+  static final int CONSTANT = 0;
+
+  /** Index in {@code params} of the parameter for the first offense. */
+  static final int OFFENSES = 1;
+
+  /** Index in {@code params} of the parameter for the first defense. */
+  static final int DEFENSES = OFFENSES + NUM_TEAMS;
 
-  /** Stores the value of the parameter for each defense. */
-  private final Map<String, Double> defenses;
+  /** Number of parameters in each model. */
+  static final int NUM_PARAMETERS = DEFENSES + NUM_TEAMS;
+
+  /**
+   * Stores the value of every parameter: the constant term, then the
+   * parameter for each offense, then that for each defense, with the teams in
+   * the order of {@code TEAMS}.
+   */
+  private final double[] params;
 
   /** Creates a model with all parameters set to zero. */
   public TeamModel() {
-    this.offenses = new HashMap<String, Double>();
-    this.defenses = new HashMap<String, Double>();
-
-    for (String team : TEAMS) {
-      offenses.put(team, 0.);
-      defenses.put(team, 0.);
-    }
+    this.params = new double[NUM_PARAMETERS];
   }
 
   /** Creates a model with the given parameters. */
-  private TeamModel(double constant, Map<String, Double> offenses,
-      Map<String, Double> defenses) {
-    this.constant = constant;
-    this.offenses = new HashMap<String, Double>(offenses);
-    this.defenses = new HashMap<String, Double>(defenses);
+  private TeamModel(double[] params) {
+    this.params = params;
   }
 
   /** Returns a copy of this model. */
   public TeamModel copy() {
-    return new TeamModel(constant, offenses, defenses);
+    return new TeamModel(params.clone());
+  }
+
+  /**
+   * Returns the index of the given team in {@code TEAMS}.
+   * @throws IllegalArgumentException if the team is not one of those
+   */
+  public static int indexOf(String team) {
+    Integer index = TEAM_INDEXES.get(team);
+    if (index == null)
+      throw new IllegalArgumentException("unknown team: " + team);
+    return index;
   }
 
   /** Returns the current value of the constant term. */
-  public double getConstant() { return constant; }
+  public double getConstant() { return params[CONSTANT]; }
   
   /** Sets the constant term to the given value. */
   public TeamModel setConstant(double constant) {
-    this.constant = constant;
+    params[CONSTANT] = constant;
     return this;
   }
 
   /** Returns the current value of the parameter for the given team's offense */
   public double getOffense(String team) {
-    assert offenses.containsKey(team);
-    return offenses.get(team);
+    return getOffense(indexOf(team));
   }
 
+  /** As above but for the team with the given index in {@code TEAMS}. */
+  public double getOffense(int team) { return params[OFFENSES + team]; }
+
   /** Sets the value of the parameter for the given team's offense. */
   public TeamModel setOffense(String team, double value) {
-    assert offenses.containsKey(team);
-    offenses.put(team, value);
+    return setOffense(indexOf(team), value);
+  }
+
+  /** As above but for the team with the given index in {@code TEAMS}. */
+  public TeamModel setOffense(int team, double value) {
+    params[OFFENSES + team] = value;
     return this;
   }
 
   /** Returns the current value of the parameter for the given team's defense */
   public double getDefense(String team) {
-    assert defenses.containsKey(team);
-    return defenses.get(team);
+    return getDefense(indexOf(team));
   }
 
+  /** As above but for the team with the given index in {@code TEAMS}. */
+  public double getDefense(int team) { return params[DEFENSES + team]; }
+
   /** Sets the value of the parameter for the given team's defense. */
   public TeamModel setDefense(String team, double value) {
-    assert defenses.containsKey(team);
-    defenses.put(team, value);
+    return setDefense(indexOf(team), value);
+  }
+
+  /** As above but for the team with the given index in {@code TEAMS}. */
+  public TeamModel setDefense(int team, double value) {
+    params[DEFENSES + team] = value;
+    return this;
+  }
+
+  /**
+   * Returns the parameter with the given index, where the parameters are
+   * numbered as described for {@code params}.
+   */
+  double getParameter(int index) { return params[index]; }
+
+  /** Sets the parameter with the given index (see above). */
+  TeamModel setParameter(int index, double value) {
+    params[index] = value;
     return this;
   }
 
   /** Multiples every parameter in the model by {@code scale}. */
   public void scaleBy(double scale) {
-    TeamModel result = new TeamModel();
-    constant *= scale;
-    for (String team : TEAMS) {
-      offenses.put(team, scale * offenses.get(team));
-      defenses.put(team, scale * defenses.get(team));
-    }
+    for (int i = 0; i < params.length; i++)
+      params[i] *= scale;
   }
 
   /**
@@ -122,42 +165,37 @@ public class TeamModel {
    * {@code this += scale * other}.)
    */
   public TeamModel addScaledBy(double scale, TeamModel other) {
-    constant += scale * other.constant;
-    for (String team : TEAMS) {
-      offenses.put(team,
-          offenses.get(team) + scale * other.offenses.get(team));
-      defenses.put(team,
-          defenses.get(team) + scale * other.defenses.get(team));
-    }
+    for (int i = 0; i < params.length; i++)
+      params[i] += scale * other.params[i];
     return this;
   }
 
   /** Returns the L0 norm of the model thought of as a vector. */
   public double norm0() {
-    double s = Math.abs(constant);
-    for (String team : TEAMS) {
-      s = Math.max(s, Math.abs(offenses.get(team)));
-      s = Math.max(s, Math.abs(defenses.get(team)));
+    double s = Math.abs(params[CONSTANT]);
+    for (int team = 0; team < NUM_TEAMS; team++) {
+      s = Math.max(s, Math.abs(params[OFFENSES + team]));
+      s = Math.max(s, Math.abs(params[DEFENSES + team]));
     } 
     return s;
   }
 
   /** Returns the L1 norm of the model thought of as a vector. */
   public double norm1() {
-    double s = Math.abs(constant);
-    for (String team : TEAMS) {
-      s += Math.abs(offenses.get(team));
-      s += Math.abs(defenses.get(team));
+    double s = Math.abs(params[CONSTANT]);
+    for (int team = 0; team < NUM_TEAMS; team++) {
+      s += Math.abs(params[OFFENSES + team]);
+      s += Math.abs(params[DEFENSES + team]);
     } 
     return s;
   }
 
   /** Returns the L2 norm of the model thought of as a vector. */
   public double norm2() {
-    double s = constant * constant;
-    for (String team : TEAMS) {
-      s += offenses.get(team) * offenses.get(team);
-      s += defenses.get(team) * defenses.get(team);
+    double s = params[CONSTANT] * params[CONSTANT];
+    for (int team = 0; team < NUM_TEAMS; team++) {
+      s += params[OFFENSES + team] * params[OFFENSES + team];
+      s += params[DEFENSES + team] * params[DEFENSES + team];
     } 
     return Math.sqrt(s);
   }
@@ -165,15 +203,107 @@ public class TeamModel {
   /** Returns the value of the loss function for the current model. */
   public double evalLoss(List<Drive> drives, double penalty) {
     double loss = 0;
-    for (Drive drive : drives) {
+    for (int i = 0; i < drives.size(); i++) {
+      Drive drive = drives.get(i);
       double actual = drive.expPointsAtEnd - drive.expPointsAtStart;
-      double predicted = constant +
-          offenses.get(drive.offense) - defenses.get(drive.defense);
+      double predicted = params[CONSTANT] +
+          params[OFFENSES + drive.offense] - params[DEFENSES + drive.defense];
       loss += (actual - predicted) * (actual - predicted);
     }
     return loss / drives.size() + penalty * norm1();
   }
 
+  /**
+   * As above but for the drives in the given batch, which are read from arrays
+   * rather than {@code Drive} objects (and with SIMD instructions, if
+   * available). See {@code LossKernel}.
+   */
+  public double evalLoss(DriveBatch batch, double penalty) {
+    return DriveBatch.KERNEL.sumOfSquaredErrors(params, batch) / batch.size() +
+        penalty * norm1();
+  }
+
+  /**
+   * As above but for the drives summarized by the given statistics. This takes
+   * time proportional to the number of matchups, not the number of drives.
+   */
+  public double evalLoss(MatchupStats stats, double penalty) {
+    double loss = 0;
+    for (int off = 0; off < NUM_TEAMS; off++) {
+      for (int def = 0; def < NUM_TEAMS; def++) {
+        int count = stats.getCount(off, def);
+        if (count == 0)
+          continue;
+        double predicted = params[CONSTANT] +
+            params[OFFENSES + off] - params[DEFENSES + def];
+        double diff = stats.getMean(off, def) - predicted;
+        loss += stats.getSumOfSquares(off, def) + count * diff * diff;
+      }
+    }
+    return loss / stats.size() + penalty * norm1();
+  }
+
+  /**
+   * Returns a function giving the loss on the drives in the given batch with
+   * the constant changed to each point given to it. The function finds the
+   * values for all of the points in a single pass over the drives, so it can
+   * be passed to {@code Optimizer.minimizeBatch}. (Each call uses the current
+   * values of the other parameters. This model is not changed.)
+   */
+  public Optimizer.BatchEvaluator lossWithConstant(
+      DriveBatch batch, double penalty) {
+    return lossWithParameter(batch, CONSTANT, penalty);
+  }
+
+  /** As above but changing the given team's offense. */
+  public Optimizer.BatchEvaluator lossWithOffense(
+      DriveBatch batch, int team, double penalty) {
+    return lossWithParameter(batch, OFFENSES + team, penalty);
+  }
+
+  /** As above but changing the given team's defense. */
+  public Optimizer.BatchEvaluator lossWithDefense(
+      DriveBatch batch, int team, double penalty) {
+    return lossWithParameter(batch, DEFENSES + team, penalty);
+  }
+
+  /**
+   * As above but changing the parameter with the given index. Each drive not
+   * involving that parameter adds the same squared error for every point, so
+   * it is computed once. For the others, the error with value x is
+   * {@code r - sign * x}, where r is the error without the parameter and sign
+   * is -1 for a defense and +1 otherwise.
+   */
+  Optimizer.BatchEvaluator lossWithParameter(
+      DriveBatch batch, int param, double penalty) {
+    return (points, values) -> {
+      double[] sums = new double[points.length];
+      double common = 0;
+      double constant = params[CONSTANT];
+      double sign = (param < DEFENSES) ? 1 : -1;
+      for (int i = batch.start; i < batch.end; i++) {
+        int off = batch.offenses[i], def = batch.defenses[i];
+        double error =
+            batch.changes[i] - (constant + params[off] - params[def]);
+        if (param != CONSTANT && param != off && param != def) {
+          common += error * error;
+        } else {
+          double r = error + sign * params[param];
+          for (int j = 0; j < points.length; j++) {
+            double e = r - sign * points[j];
+            sums[j] += e * e;
+          }
+        }
+      }
+
+      double rest = norm1() - Math.abs(params[param]);
+      for (int j = 0; j < points.length; j++) {
+        values[j] = (common + sums[j]) / batch.size() +
+            penalty * (rest + Math.abs(points[j]));
+      }
+    };
+  }
+
   /**
    * Returns the derivative of the loss function, with <b>no penalty term</b>,
    * at the current model. (The penalty term is not diffentiable.) Since the
@@ -184,15 +314,49 @@ public class TeamModel {
     TeamModel derivative = new TeamModel();
 
     // Add the derivative of the main loss term.
-    for (Drive drive : drives) {
+    double[] deriv = derivative.params;
+    for (int i = 0; i < drives.size(); i++) {
+      Drive drive = drives.get(i);
       double actual = drive.expPointsAtEnd - drive.expPointsAtStart;
-      double predicted = constant +
-          offenses.get(drive.offense) - defenses.get(drive.defense);
-      derivative.constant -= 2 * (actual - predicted);
-      derivative.offenses.put(drive.offense,
-          derivative.offenses.get(drive.offense) - 2 * (actual - predicted));
-      derivative.defenses.put(drive.defense,
-          derivative.defenses.get(drive.defense) + 2 * (actual - predicted));
+      double predicted = params[CONSTANT] +
+          params[OFFENSES + drive.offense] - params[DEFENSES + drive.defense];
+      deriv[CONSTANT] -= 2 * (actual - predicted);
+      deriv[OFFENSES + drive.offense] -= 2 * (actual - predicted);
+      deriv[DEFENSES + drive.defense] += 2 * (actual - predicted);
+    }
+
+    return derivative;
+  }
+
+  /** As above but for the drives in the given batch. */
+  public TeamModel evalLossDerivative(DriveBatch batch) {
+    TeamModel derivative = new TeamModel();
+    DriveBatch.KERNEL.addDerivative(params, batch, derivative.params);
+    return derivative;
+  }
+
+  /**
+   * As above but for the drives summarized by the given statistics. This takes
+   * time proportional to the number of matchups, not the number of drives.
+   */
+  public TeamModel evalLossDerivative(MatchupStats stats) {
+    TeamModel derivative = new TeamModel();
+
+    // The derivative from each drive in a matchup is 2 (predicted - actual),
+    // so their sum is 2 count (predicted - mean).
+    double[] deriv = derivative.params;
+    for (int off = 0; off < NUM_TEAMS; off++) {
+      for (int def = 0; def < NUM_TEAMS; def++) {
+        int count = stats.getCount(off, def);
+        if (count == 0)
+          continue;
+        double predicted = params[CONSTANT] +
+            params[OFFENSES + off] - params[DEFENSES + def];
+        double error = count * (stats.getMean(off, def) - predicted);
+        deriv[CONSTANT] -= 2 * error;
+        deriv[OFFENSES + off] -= 2 * error;
+        deriv[DEFENSES + def] += 2 * error;
+      }
     }
 
     return derivative;
@@ -201,12 +365,8 @@ public class TeamModel {
   /** Returns a count of the parameters with magnitude at least {@code tol}. */
   public int countNonZeroParameters(double tol) {
     int count = 0;
-    if (Math.abs(constant) >= tol)
-      count += 1;
-    for (String team : TEAMS) {
-      if (Math.abs(offenses.get(team)) >= tol)
-        count += 1;
-      if (Math.abs(defenses.get(team)) >= tol)
+    for (double param : params) {
+      if (Math.abs(param) >= tol)
         count += 1;
     }
     return count;
@@ -214,11 +374,11 @@ public class TeamModel {
 
   /** Prints a description of this model to the given writer. */
   public void printTo(PrintStream out) throws IOException {
-    out.printf("Constant: %5.2f\n\n", constant);
+    out.printf("Constant: %5.2f\n\n", params[CONSTANT]);
     out.println("     Off   Def");
-    for (String team : TEAMS) {
-      out.printf("%3s %5.2f %5.2f\n", team, offenses.get(team),
-          defenses.get(team));
+    for (int team = 0; team < NUM_TEAMS; team++) {
+      out.printf("%3s %5.2f %5.2f\n", TEAMS.get(team),
+          params[OFFENSES + team], params[DEFENSES + team]);
     }
   }
 }
@@ -1,20 +1,11 @@
 package cse417;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
 
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
-
-import java.util.function.DoubleFunction;
-
-import static cse417.TeamModel.TEAMS;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 
 /**
@@ -23,6 +14,13 @@ import static cse417.TeamModel.TEAMS;
  * fitting historical data. Without that option, this just finds the best model
  * using the last {@code WEEKS} weeks of data. The latter supports using either
  * a fixed penalty or finding the model with a fixed number of non-zero params.
+ * The option {@code --threads} sets the number of periods fit at once when
+ * training (by default, one per processor). Since each period is fit as one
+ * warm-started path, at most {@code NUM_WINDOWS} (10) threads are used, so
+ * training gets no faster beyond that. The option {@code --solver} picks the
+ * method used to fit each model (see {@code Solver} below). The default is
+ * now "lasso", which gives the same models as the original "search" (up to
+ * the tolerance) in a small fraction of the time.
  */
 public class TeamModeler {
 
@@ -35,6 +33,24 @@ public class TeamModeler {
    */
   private static double TOLERANCE = 5e-3;
 
+  /**
+   * Ways to fit models: LASSO solves for the best value of each parameter in
+   * turn with {@code LassoSolver}; SEARCH searches for it with
+   * {@code Optimizer} instead, which is much slower but works for any loss
+   * function; and FISTA moves all of the parameters at once along the
+   * derivative with {@code FistaSolver}. All three give the same models (up
+   * to the tolerance). These are named in lower case by {@code --solver}.
+   */
+  private enum Solver { LASSO, SEARCH, FISTA }
+
+  /**
+   * Method used by the "search" solver to find the best value of each
+   * parameter. Brent's method needs far fewer evaluations of the loss than
+   * ternary search, since the loss is a parabola on each side of zero.
+   */
+  private static final Optimizer.Method SEARCH_METHOD =
+      Optimizer.Method.BRENT;
+
   /** Entry point for a program to build a model of NFL teams. */
   public static void main(String[] args) throws IOException {
     ArgParser argParser = new ArgParser("TeamModeler");
@@ -42,27 +58,49 @@ public class TeamModeler {
     argParser.addOption("penalty", Double.class);
     argParser.addOption("num-nonzero", Integer.class);
     argParser.addOption("verbose", Boolean.class);
+    argParser.addOption("solver", String.class);
+    argParser.addOption("threads", Integer.class);
     args = argParser.parseArgs(args, 1, 1);
 
+    Solver solver = Solver.LASSO;
+    if (argParser.hasOption("solver")) {
+      String name = argParser.getStringOption("solver");
+      try {
+        solver = Solver.valueOf(name.toUpperCase());
+      } catch (IllegalArgumentException ex) {
+        System.err.println("Unknown solver (try lasso, which is the " +
+            "default, search, or fista): " + name);
+        System.exit(1);
+      }
+    }
+
     if (argParser.hasOption("train")) {
-      train(args[0]);
+      int numThreads = argParser.hasOption("threads") ?
+          argParser.getIntegerOption("threads") :
+          Runtime.getRuntime().availableProcessors();
+      if (numThreads < 1) {
+        System.err.println("Number of threads must be positive: " + numThreads);
+        System.exit(1);
+      }
+      train(solver, args[0], numThreads, argParser.hasOption("verbose"));
     } else {
-      // Find the drives in the last WEEKS worth of weeks.
-      List<Drive> drives = loadDrives(args[0], 1, 16);
-      int maxWeek = drives.stream().map((d) -> d.week)
-          .max((a, b) -> Double.compare(a, b)).get();
-      drives = drives.stream().filter((d) -> maxWeek - WEEKS + 1 <= d.week)
-          .collect(Collectors.toList());
+      // Find the drives in the last WEEKS worth of weeks (through week 16).
+      DriveStore store = loadDrives(args[0]);
+      int maxWeek = Math.min(store.getMaxWeek(), 16);
+      while (maxWeek > store.getMinWeek() &&
+             store.getStats(maxWeek, maxWeek).size() == 0)
+        maxWeek--;
+      MatchupStats stats = store.getStats(maxWeek - WEEKS + 1, maxWeek);
 
       TeamModel model;
       if (argParser.hasOption("num-nonzero")) {
-        model = findBestSparseModel(drives,
+        model = findBestSparseModel(solver, stats,
             argParser.getIntegerOption("num-nonzero"), TOLERANCE,
             argParser.hasOption("verbose"));
       } else {
         double penalty = argParser.hasOption("penalty") ?
             argParser.getDoubleOption("penalty") : 0.0;
-        model = findBestModel(drives, penalty, TOLERANCE,
+        model = findBestModel(solver, stats, penalty, TOLERANCE,
             argParser.hasOption("verbose"));
       }
       model.printTo(System.out);
@@ -70,56 +108,120 @@ public class TeamModeler {
   }
 
   /**
-   * Returns the drives described in the given file from games in weeks of the
-   * NFL season in the given range ({@code minWeek} to {@code maxWeek}).
+   * Returns a store of all of the drives described in the given file. The
+   * file is read just once; the drives in any range of weeks are then found
+   * from the store.
    */
-  private static List<Drive> loadDrives(
-      String fileName, int minWeek, int maxWeek) throws IOException {
+  static DriveStore loadDrives(String fileName) throws IOException {
     List<Drive> drives = new ArrayList<Drive>();
-    CsvParser parser = new CsvParser(fileName, true, new Object[] {
-          String.class, String.class, Integer.class, Float.class, Float.class
+    CsvDictionary teams = new CsvDictionary();  // offenses and defenses
+    CsvTable table = CsvSnapshot.load(fileName, true, new Object[] {
+          teams, teams, Integer.class, Double.class, Double.class
         });
-    while (parser.hasNext()) {
-      String[] parts = parser.next();
-      int week = Integer.parseInt(parts[2]);
-      if (minWeek <= week && week <= maxWeek) {
-        double expStartPts = Double.parseDouble(parts[3]);
-        double expEndPts = Double.parseDouble(parts[4]);
-        drives.add(new Drive(week, parts[0], parts[1], expStartPts, expEndPts));
-      }
+
+    // Look up the index of each team once rather than once per drive.
+    int[] teamIndexes = new int[teams.size()];
+    for (int code = 0; code < teams.size(); code++)
+      teamIndexes[code] = TeamModel.indexOf(teams.get(code));
+
+    for (int i = 0; i < table.size(); i++) {
+      drives.add(new Drive(table.getInt(i, 2),
+          teamIndexes[table.getCode(i, 0)], teamIndexes[table.getCode(i, 1)],
+          table.getDouble(i, 3), table.getDouble(i, 4)));
     }
-    return drives;
+    return new DriveStore(drives);
   }
 
   /**
    * Fills in the given maps with the best model of how the offenses increase
    * the expected points in each drive and how the defenses decrease it.
-   * @param drives List of the drives that the model should describe.
+   * @param solver Method used to fit the model.
+   * @param stats Summary of the drives that the model should describe.
    * @param penalty Constant factor on the penalty term of the loss function.
    * @param tol Stop when the L0 change per iteration less than this amount.
    * @param verbose If true, prints progress of the model fitting process.
    */
-  	private static TeamModel findBestModel(
-  			final List<Drive> drives, double penalty, double tol, boolean verbose) {
-	    TeamModel best = new TeamModel();  // start with all zeros
-	    TeamModel other = new TeamModel();
+  private static TeamModel findBestModel(Solver solver, MatchupStats stats,
+      double penalty, double tol, boolean verbose) {
+    return findBestModel(
+        solver, stats, new TeamModel(), penalty, tol, verbose);
+  }
+
+  /**
+   * As above but starting from the given model rather than all zeros, which
+   * takes fewer iterations if it is the best model for a nearby penalty.
+   */
+  private static TeamModel findBestModel(Solver solver, MatchupStats stats,
+      TeamModel start, double penalty, double tol, boolean verbose) {
+    if (solver == Solver.LASSO) {
+      return new LassoSolver(stats).findBestModel(
+          start, penalty, tol, verbose);
+    } else if (solver == Solver.FISTA) {
+      return new FistaSolver(stats).findBestModel(
+          start, penalty, tol, verbose);
+    }
+    TeamModel best = start.copy();
+    fitBySearch(stats, best, penalty, tol, verbose);
+    return best;
+  }
+
+  /**
+   * Returns the best models of the drives for each of the given penalties,
+   * each found starting from the one before, as in
+   * {@code LassoSolver.findPath}.
+   */
+  private static RegularizationPath findPath(Solver solver,
+      MatchupStats stats, double[] penalties, double tol) {
+    if (solver == Solver.LASSO)
+      return new LassoSolver(stats).findPath(penalties, tol);
+    if (solver == Solver.FISTA)
+      return new FistaSolver(stats).findPath(penalties, tol);
+
+    TeamModel[] models = new TeamModel[penalties.length];
+    int[] iterations = new int[penalties.length];
+    TeamModel best = new TeamModel();
+    for (int i = 0; i < penalties.length; i++) {
+      iterations[i] = fitBySearch(stats, best, penalties[i], tol, false);
+      models[i] = best.copy();
+    }
+    return new RegularizationPath(penalties.clone(), models, iterations);
+  }
+
+  /**
+   * Changes the given model into the best one for the drives summarized by
+   * {@code stats} by finding the best value of each parameter in turn using
+   * {@code Optimizer.minimize} (with {@code SEARCH_METHOD}) on the loss
+   * function. The loss
+   * with each value tried is found by a {@code LossEvaluator}, which only
+   * looks at the matchups involving that parameter. Returns the number of
+   * passes made over the parameters.
+   */
+  	private static int fitBySearch(final MatchupStats stats,
+  			final TeamModel best, double penalty, double tol, boolean verbose) {
+	    final LossEvaluator loss = new LossEvaluator(best, stats);
+	    TeamModel other = best.copy();
 	    double diff = Double.MAX_VALUE;
 	    int counter = 0;
+	    int evaluations = 0;
 	    while (diff > tol) {
 	    	counter++;
-	    	double newConstant = Optimizer.findMinimumOfUnimodal(
-	    		      t -> best.copy().setConstant(t).evalLoss(drives, penalty),
-	    		      -8.0, 8.0);
-		    best.setConstant(newConstant);
-		    for (String team : TeamModel.TEAMS) {
-		    	double newOffense = Optimizer.findMinimumOfUnimodal(
-		    		  t -> best.copy().setOffense(team, t).evalLoss(drives, penalty),
-		    		  -8.0, 8.0);
-		    	best.setOffense(team, newOffense);
-		    	double newDefense = Optimizer.findMinimumOfUnimodal(
-		    		  t -> best.copy().setDefense(team, t).evalLoss(drives, penalty),
-		    		  -8.0, 8.0);
-		    	best.setDefense(team, newDefense);
+	    	Optimizer.Minimum newConstant = Optimizer.minimize(SEARCH_METHOD,
+	    		      t -> loss.evalLossWithConstant(t, penalty), -8.0, 8.0,
+	    		      Optimizer.DEFAULT_TOLERANCE);
+		    loss.setConstant(newConstant.getPoint());
+		    evaluations += newConstant.getEvaluations();
+		    for (int i = 0; i < TeamModel.NUM_TEAMS; i++) {
+		    	final int team = i;
+		    	Optimizer.Minimum newOffense = Optimizer.minimize(SEARCH_METHOD,
+		    		  t -> loss.evalLossWithOffense(team, t, penalty), -8.0, 8.0,
+		    		  Optimizer.DEFAULT_TOLERANCE);
+		    	loss.setOffense(team, newOffense.getPoint());
+		    	Optimizer.Minimum newDefense = Optimizer.minimize(SEARCH_METHOD,
+		    		  t -> loss.evalLossWithDefense(team, t, penalty), -8.0, 8.0,
+		    		  Optimizer.DEFAULT_TOLERANCE);
+		    	loss.setDefense(team, newDefense.getPoint());
+		    	evaluations +=
+		    		  newOffense.getEvaluations() + newDefense.getEvaluations();
 		    }
 		    diff = best.copy().addScaledBy(-1, other).norm0();
 		    other = best.copy();
@@ -127,10 +229,11 @@ public class TeamModeler {
 	        	int numNonzero = best.countNonZeroParameters(0.005);
 	        	System.out.printf("At iteration number %d, change in model = %f; num non-zero: %d\n",
 	        			counter, diff, numNonzero);
-	        	System.out.printf("\tModel loss is: %g \n", best.evalLoss(drives, penalty));
+	        	System.out.printf("\tModel loss is: %g (%d loss evaluations so far)\n",
+	        			loss.evalLoss(penalty), evaluations);
 	        }
 	    }
-	    return best;
+	    return counter;
   	}
 
   /**
@@ -140,18 +243,26 @@ public class TeamModeler {
    * If increasing the penalty by less than 0.0001 changes the number of
    * non-zero parameters from less than the desired amount to more than the
    * desired amount, then this will just return the model with fewer parameters
+   * <p>
+   * Each model is found starting from the one before, since the penalties
+   * tried get closer and closer together.
    */
-  private static TeamModel findBestSparseModel(
-      final List<Drive> drives, int numNonZeros, double tol, boolean verbose) {
+  private static TeamModel findBestSparseModel(Solver solver,
+      final MatchupStats stats, int numNonZeros, double tol,
+      boolean verbose) {
+    if (solver == Solver.LASSO)
+      return findSparseModelOnPath(stats, numNonZeros, verbose);
+
 	  double lo = 0.0;
 	  double hi = 0.05;
 	  double range = hi - lo;
 	  double bestTol = 0.0001;
 	  double nonZeroTol = 0.005;
 	  int bestNonZero = -1;
+	  TeamModel best = new TeamModel();
 	  while (range >= bestTol) {
 		  double penalty = (lo + hi) / 2;
-		  TeamModel best = findBestModel(drives, penalty, TOLERANCE, false);
+		  best = findBestModel(solver, stats, best, penalty, TOLERANCE, false);
 		  bestNonZero = best.countNonZeroParameters(nonZeroTol);
 		  if (bestNonZero <= numNonZeros) {
 			  hi = penalty;
@@ -165,9 +276,40 @@ public class TeamModeler {
 	      System.out.printf("Best model was found at penalty %g with %2d nonzero parameters",
 	    		  bestPen, bestNonZero);
 	  }
-	  return findBestModel(drives, lo + bestTol, TOLERANCE, false);
+	  return findBestModel(
+	      solver, stats, best, lo + bestTol, TOLERANCE, false);
+  }
+
+  /**
+   * As above, but finds the model with the smallest penalty having at most
+   * the given number of non-zero parameters exactly, by computing the whole
+   * {@code LassoHomotopy} path. (Parameters count as non-zero here only if
+   * they are not exactly zero.)
+   * @param verbose If true, prints the penalty and number of non-zero
+   *     parameters at each breakpoint on the path.
+   */
+  private static TeamModel findSparseModelOnPath(
+      MatchupStats stats, int numNonZeros, boolean verbose) {
+    LassoHomotopy path = new LassoHomotopy(stats);
+    int index = path.indexOfSparseModel(numNonZeros);
+    if (verbose) {
+      for (int i = 0; i < path.size(); i++) {
+        System.out.printf("penalty %.6f: %2d nonzero parameters\n",
+            path.getPenalty(i), path.getNumNonZero(i));
+      }
+      System.out.printf(
+          "Best model was found at penalty %g with %2d nonzero parameters\n",
+          path.getPenalty(index), path.getNumNonZero(index));
+    }
+    return path.getModel(index);
   }
 
+  /** Number of periods of {@code WEEKS+1} weeks tried by {@code train}. */
+  private static final int NUM_WINDOWS = 10;
+
+  /** Number of penalties tried by {@code train} on each period. */
+  private static final int NUM_PENALTIES = 51;
+
   /** 
    * Prints the results of using different penalties .001 to 0.050 on each
    * period of {@code WEEKS} weeks in the provided data. That is, for each
@@ -181,29 +323,107 @@ public class TeamModeler {
    * (This normalization is necessary because some weeks are harder to predict
    * than others, and we want the model that works best on an average week not
    * just the worst week.)
+   * <p>
+   * The models for each period are found along a {@code RegularizationPath},
+   * with each penalty starting from the model for the one before. The periods
+   * are fit in parallel on a fork-join pool with the given number of threads,
+   * but the results are printed in the same order regardless. Each period's
+   * path is a single task, since its models depend on each other, so there
+   * are only {@code NUM_WINDOWS} tasks, and more threads than that would sit
+   * idle. The pool is limited to that many.
+   * @param solver Method used to fit the models.
+   * @param verbose If true, prints the iterations needed for each model and
+   *     the time taken for each period (and the total) to standard error.
    */
-  	private static void train(String fileName) throws IOException {
-  		for (int i = 1; i <= 10; i++) {
-  			List<Drive> trainDrives = loadDrives(fileName, i, WEEKS + i - 1);
-  			List<Drive> testDrives = loadDrives(fileName, WEEKS + i, WEEKS + i);
-  			double minError = Double.MAX_VALUE;
-  			double[] errors = new double[51];
-  			int[] nonZeroCounter = new int[51];
-  			double pen = 0.05;
-  			for (int j = 0; j < 51; j++) {
-  				TeamModel bestModel = findBestModel(trainDrives, pen, TOLERANCE, false);
-  				double testError = bestModel.evalLoss(testDrives, 0.0);
-  				int numNonzero = bestModel.countNonZeroParameters(0.005);
-  				if (testError < minError) {
-  					minError = testError;
-  				}
-  				pen -= 0.001;
-  				nonZeroCounter[j] = numNonzero;
-  				errors[j] = testError;
-  			}
-  			for (int k = 0; k < nonZeroCounter.length; k++) {
-  				System.out.printf("%2d %g \n", nonZeroCounter[k], errors[k] - minError);
-  			}
-  		}
-  	}
+  private static void train(Solver solver, String fileName, int numThreads,
+      boolean verbose) throws IOException {
+    // Load all of the data up front so that only the fitting is parallel.
+    DriveStore store = loadDrives(fileName);
+    List<MatchupStats> trainStats = new ArrayList<MatchupStats>();
+    List<MatchupStats> testStats = new ArrayList<MatchupStats>();
+    for (int i = 1; i <= NUM_WINDOWS; i++) {
+      trainStats.add(store.getStats(i, WEEKS + i - 1));
+      testStats.add(store.getStats(WEEKS + i, WEEKS + i));
+    }
+
+    double[] penalties = new double[NUM_PENALTIES];
+    double pen = 0.05;
+    for (int j = 0; j < NUM_PENALTIES; j++) {
+      penalties[j] = pen;
+      pen -= 0.001;
+    }
+
+    long startTime = System.nanoTime();
+    long taskNanos = 0;
+    numThreads = Math.min(numThreads, NUM_WINDOWS);  // (one task per period)
+    ForkJoinPool pool = new ForkJoinPool(numThreads);
+    try {
+      List<ForkJoinTask<TrainResult>> tasks =
+          new ArrayList<ForkJoinTask<TrainResult>>();
+      for (int i = 0; i < NUM_WINDOWS; i++) {
+        final MatchupStats train = trainStats.get(i);
+        final MatchupStats test = testStats.get(i);
+        tasks.add(pool.submit(
+            () -> new TrainResult(solver, train, penalties, test)));
+      }
+
+      // Print the results of each period as soon as they are available.
+      for (int i = 0; i < NUM_WINDOWS; i++) {
+        TrainResult result = tasks.get(i).join();
+        double minError = Double.MAX_VALUE;
+        for (int j = 0; j < NUM_PENALTIES; j++)
+          minError = Math.min(minError, result.testErrors[j]);
+        for (int j = 0; j < NUM_PENALTIES; j++) {
+          System.out.printf("%2d %g \n", result.numNonZeros[j],
+              result.testErrors[j] - minError);
+        }
+
+        taskNanos += result.nanos;
+        if (verbose) {
+          for (int j = 0; j < NUM_PENALTIES; j++) {
+            System.err.printf("period %2d, penalty %.3f: %3d iterations\n",
+                i + 1, penalties[j], result.path.getIterations(j));
+          }
+          System.err.printf("period %2d: %d iterations in %.2f ms\n", i + 1,
+              result.path.getTotalIterations(), result.nanos / 1e6);
+        }
+      }
+    } finally {
+      pool.shutdown();
+    }
+
+    if (verbose) {
+      double elapsed = (System.nanoTime() - startTime) / 1e6;
+      System.err.printf(
+          "Fit %d models in %.0f ms (%.0f ms of fitting on %d threads)\n",
+          NUM_WINDOWS * NUM_PENALTIES, elapsed, taskNanos / 1e6, numThreads);
+    }
+  }
+
+  /** Results of fitting the models for one period in {@code train}. */
+  private static final class TrainResult {
+    final RegularizationPath path;
+    final int[] numNonZeros;
+    final double[] testErrors;
+    final long nanos;  // time taken to fit and test the models
+
+    /**
+     * Fits models to the drives summarized by {@code trainStats} along the
+     * path of the given penalties, using the given solver, and records their
+     * errors on the drives summarized by {@code testStats}.
+     */
+    TrainResult(Solver solver, MatchupStats trainStats, double[] penalties,
+        MatchupStats testStats) {
+      long start = System.nanoTime();
+      this.path = findPath(solver, trainStats, penalties, TOLERANCE);
+      this.numNonZeros = new int[path.size()];
+      this.testErrors = new double[path.size()];
+      for (int j = 0; j < path.size(); j++) {
+        TeamModel model = path.getModel(j);
+        testErrors[j] = model.evalLoss(testStats, 0.0);
+        numNonZeros[j] = model.countNonZeroParameters(0.005);
+      }
+      this.nanos = System.nanoTime() - start;
+    }
+  }
 }
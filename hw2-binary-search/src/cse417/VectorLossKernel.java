@@ -0,0 +1,73 @@
+package cse417;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Loss kernel that processes as many drives at once as fit in a SIMD
+ * register, using the (incubating) Vector API. The parameters of the offense
+ * and defense of each drive are gathered from the parameter array by their
+ * indexes, and the squared errors are summed separately in each lane. Only
+ * the loss itself uses SIMD; the derivative is computed as by
+ * {@code ScalarLossKernel}.
+ * <p>
+ * Since the additions are done in a different order, the results may differ
+ * from {@code ScalarLossKernel} by rounding errors. This class can only be
+ * loaded if the JVM was started with the {@code jdk.incubator.vector} module.
+ */
+final class VectorLossKernel implements LossKernel {
+
+  /** Widest vectors of doubles supported by this processor. */
+  private static final VectorSpecies<Double> SPECIES =
+      DoubleVector.SPECIES_PREFERRED;
+
+  /** Kernel used for the derivative (see below). */
+  private static final ScalarLossKernel SCALAR = new ScalarLossKernel();
+
+  @Override
+  public double sumOfSquaredErrors(double[] params, DriveBatch batch) {
+    double constant = params[TeamModel.CONSTANT];
+    int bound = batch.start + SPECIES.loopBound(batch.size());
+    DoubleVector sums = DoubleVector.zero(SPECIES);
+    int i = batch.start;
+    for (; i < bound; i += SPECIES.length()) {
+      DoubleVector errors = errors(params, batch, i);
+      sums = errors.fma(errors, sums);
+    }
+    double sum = sums.reduceLanes(VectorOperators.ADD);
+
+    for (; i < batch.end; i++) {
+      double error = batch.changes[i] -
+          (constant + params[batch.offenses[i]] - params[batch.defenses[i]]);
+      sum += error * error;
+    }
+    return sum;
+  }
+
+  /**
+   * Uses the scalar loop: the errors could be computed with SIMD, but adding
+   * them into the derivative cannot be, since several lanes may have the same
+   * team, and that is where the time goes. (Computing the errors separately
+   * with SIMD was measured to be slower.)
+   */
+  @Override
+  public void addDerivative(double[] params, DriveBatch batch,
+      double[] deriv) {
+    SCALAR.addDerivative(params, batch, deriv);
+  }
+
+  /**
+   * Returns the actual minus predicted change for the drives starting at the
+   * given index.
+   */
+  private static DoubleVector errors(double[] params, DriveBatch batch,
+      int start) {
+    DoubleVector offense =
+        DoubleVector.fromArray(SPECIES, params, 0, batch.offenses, start);
+    DoubleVector defense =
+        DoubleVector.fromArray(SPECIES, params, 0, batch.defenses, start);
+    return DoubleVector.fromArray(SPECIES, batch.changes, start)
+        .sub(offense.sub(defense).add(params[TeamModel.CONSTANT]));
+  }
+}
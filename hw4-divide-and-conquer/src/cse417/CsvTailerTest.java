@@ -0,0 +1,120 @@
+package cse417;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class CsvTailerTest {
+
+  /** Column types used in the tests. */
+  private static final Object[] COL_TYPES =
+      new Object[] { String.class, Integer.class };
+
+  @Test public void testPartialLines() throws IOException {
+    File file = createTempFile();
+    try (CsvTailer tailer = new CsvTailer(file.getPath(), true, COL_TYPES)) {
+      assertEquals(0, tailer.poll().size());
+
+      append(file, "Name,Num");
+      assertEquals(0, tailer.poll().size());
+
+      append(file, "\na,1\nb,");
+      checkRows(tailer.poll(), "a", "1");
+      assertEquals(3, tailer.getCheckpoint().getLineNumber());
+
+      append(file, "2\r");  // could still be followed by a '\n'
+      assertEquals(0, tailer.poll().size());
+
+      append(file, "\nc,3\rd,4\r");
+      checkRows(tailer.poll(), "b", "2", "c", "3");
+      assertEquals(0, tailer.poll().size());
+
+      append(file, "e,5");
+      checkRows(tailer.poll(), "d", "4");
+      assertEquals(6, tailer.getCheckpoint().getLineNumber());
+    }
+  }
+
+  @Test public void testResume() throws IOException {
+    File file = createTempFile();
+    File checkpointFile = createTempFile();
+    checkpointFile.delete();
+
+    append(file, "Name,Num\na,1\nb,2\nc,");
+    CsvTailer.Checkpoint checkpoint =
+        CsvTailer.Checkpoint.load(checkpointFile.getPath());
+    try (CsvTailer tailer =
+        new CsvTailer(file.getPath(), true, COL_TYPES, checkpoint)) {
+      checkRows(tailer.poll(), "a", "1", "b", "2");
+      tailer.getCheckpoint().save(checkpointFile.getPath());
+    }
+
+    append(file, "3\nd,4\n");
+    checkpoint = CsvTailer.Checkpoint.load(checkpointFile.getPath());
+    assertEquals("Name,Num\na,1\nb,2\n".length(), checkpoint.getOffset());
+    try (CsvTailer tailer =
+        new CsvTailer(file.getPath(), true, COL_TYPES, checkpoint)) {
+      checkRows(tailer.poll(), "c", "3", "d", "4");
+    }
+  }
+
+  @Test public void testErrors() throws IOException {
+    File file = createTempFile();
+    append(file, "a,1\nb,2\n");
+    CsvTailer.Checkpoint checkpoint;
+    try (CsvTailer tailer = new CsvTailer(file.getPath(), false, COL_TYPES)) {
+      tailer.poll();
+      checkpoint = tailer.getCheckpoint();
+
+      append(file, "c,x\n");
+      try { tailer.poll(); fail(); }
+      catch (RuntimeException ex) {
+        assertTrue(ex.getMessage().startsWith(
+            "CSV: line 3: expecting an integer in column 2"));
+      }
+    }
+
+    // Rewrite the file with different contents before the checkpoint.
+    try (Writer out = new FileWriter(file)) {
+      out.write("a,1\nz,2\nc,3\n");
+    }
+    try {
+      new CsvTailer(file.getPath(), false, COL_TYPES, checkpoint).close();
+      fail();
+    } catch (IOException ex) { /* pass */ }
+
+    try (Writer out = new FileWriter(file)) {
+      out.write("a,1\n");
+    }
+    try {
+      new CsvTailer(file.getPath(), false, COL_TYPES, checkpoint).close();
+      fail();
+    } catch (IOException ex) { /* pass */ }
+  }
+
+  /** Checks that the rows have the given values, two columns per row. */
+  private static void checkRows(List<String[]> rows, String... values) {
+    assertEquals(values.length / 2, rows.size());
+    for (int i = 0; i < rows.size(); i++) {
+      assertArrayEquals(new String[] { values[2*i], values[2*i+1] },
+          rows.get(i));
+    }
+  }
+
+  /** Returns a new, empty temporary file. */
+  private static File createTempFile() throws IOException {
+    File file = File.createTempFile("csv", ".csv");
+    file.deleteOnExit();
+    return file;
+  }
+
+  /** Appends the given text to the end of the file. */
+  private static void append(File file, String text) throws IOException {
+    try (Writer out = new FileWriter(file, true)) {
+      out.write(text);
+    }
+  }
+}
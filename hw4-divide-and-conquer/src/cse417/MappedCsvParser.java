@@ -0,0 +1,497 @@
+package cse417;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+
+import java.time.format.DateTimeParseException;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Parses a CSV file like {@code CsvParser} but works directly on the bytes of
+ * the file, which are memory mapped rather than read through a
+ * {@code Reader}. Rows are returned as {@code Row} objects that record only
+ * where each column starts and ends in the mapped file. No strings are created
+ * unless the caller asks for one via {@code Row.getString}: numbers are
+ * scanned directly from the mapped bytes by a {@code NumberScanner}.
+ * <p>
+ * The file is assumed to be encoded in UTF-8 (or ASCII). The accepted syntax
+ * and the column type checks are the same as in {@code CsvParser}.
+ */
+public class MappedCsvParser implements Iterator<MappedCsvParser.Row> {
+
+  /** Contents of the file being parsed. */
+  private final ByteBuffer data;
+
+  /** Index in data of the start of the next line (or the limit if none). */
+  private int pos;
+
+  /** Number of the line starting at pos, counting from 1 (with header). */
+  private int lineNum;
+
+  /**
+   * Null or an array of the types of the columns, which can be String.class,
+   * Integer.class, Float.class, DateFormat, EpochDayParser (which replaces
+   * any DateTimeFormatter passed in), or CsvDictionary. Null means no
+   * constraints, and a null entry means that column is not checked.
+   */
+  private final Object[] colTypes;
+
+  /** The same contents viewed as text, for the scanner. */
+  private final ByteText ascii;
+
+  /** Scanner used by all of the rows to check and convert numbers. */
+  private final NumberScanner scanner = new NumberScanner();
+
+  // Scratch space used while finding the columns of a line. These are copied
+  // into the returned Row, so they can be reused for the next one.
+  private int[] starts = new int[16];
+  private int[] ends = new int[16];
+  private boolean[] escaped = new boolean[16];
+
+  /**
+   * Creates a parser of the given file.
+   * @param fileName Name of the file to memory map and parse.
+   * @param hasHeader Whether the CVS starts with a header row, which should be
+   *   ignored.
+   * @param colTypes If non-null, an array of entries indicating the allowed
+   *   values in each column, exactly as for {@code CsvParser}.
+   */
+  public MappedCsvParser(String fileName, boolean hasHeader, Object[] colTypes)
+      throws IOException {
+    this(map(fileName), hasHeader, colTypes, 1);
+  }
+
+  /** As above, but only fixes the number of columns not their types. */
+  public MappedCsvParser(String fileName, boolean hasHeader, int numCols)
+      throws IOException {
+    this(fileName, hasHeader, makeStringColTypes(numCols));
+  }
+
+  /** As above but with all columns as arbitrary strings. */
+  public MappedCsvParser(String fileName, boolean hasHeader)
+      throws IOException {
+    this(fileName, hasHeader, null);
+  }
+
+  /** As above but with no header and all columns as arbitrary strings. */
+  public MappedCsvParser(String fileName) throws IOException {
+    this(fileName, false, null);
+  }
+
+  /**
+   * Creates a parser of the bytes remaining in the given buffer, whose first
+   * line is numbered {@code firstLineNum} when reporting errors.
+   */
+  MappedCsvParser(ByteBuffer data, boolean hasHeader, Object[] colTypes,
+      int firstLineNum) {
+    this.data = data;
+    this.ascii = new ByteText(data);
+    this.pos = data.position();
+    this.lineNum = firstLineNum;
+    if (hasHeader && pos < data.limit()) {
+      pos = nextLineStart(lineEnd(pos));
+      lineNum++;
+    }
+
+    this.colTypes = EpochDayParser.wrapFormatters(colTypes);
+  }
+
+  /** Returns a read-only mapping of the entire contents of the given file. */
+  static MappedByteBuffer map(String fileName) throws IOException {
+    // Note that the mapping remains valid after the channel is closed.
+    try (RandomAccessFile file = new RandomAccessFile(fileName, "r");
+         FileChannel channel = file.getChannel()) {
+      if (channel.size() > Integer.MAX_VALUE)
+        throw new IOException("CSV: file is too large to map: " + fileName);
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    return pos < data.limit();
+  }
+
+  @Override
+  public Row next() {
+    if (pos >= data.limit())
+      throw new NoSuchElementException();
+
+    int lineStart = pos;
+    int lineEnd = lineEnd(pos);
+    int numCols = findColumns(lineStart, lineEnd);
+    Row row = new Row(data, ascii, scanner, lineNum, lineStart, lineEnd,
+        Arrays.copyOf(starts, numCols),
+        Arrays.copyOf(ends, numCols), Arrays.copyOf(escaped, numCols));
+
+    if (colTypes != null) {
+      if (numCols != colTypes.length) {
+        throw new RuntimeException(String.format(
+            "CSV: line %d: expected %d columns: %s", lineNum, colTypes.length,
+            row.getLine()));
+      }
+      for (int i = 0; i < numCols; i++) {
+        if (colTypes[i] == null || colTypes[i] == String.class ||
+            colTypes[i] instanceof CsvDictionary) {
+          // anything allowed
+        } else if (colTypes[i] == Integer.class) {
+          try { row.getInt(i); }
+          catch (NumberFormatException ex) {
+            throw new RuntimeException(String.format(
+                "CSV: line %d: expecting an integer in column %d: %s",
+                lineNum, i+1, row.getLine()));
+          }
+        } else if (colTypes[i] == Float.class) {
+          if (!row.scanFloat(i)) {
+            throw new RuntimeException(String.format(
+                "CSV: line %d: expecting a float in column %d: %s",
+                lineNum, i+1, row.getLine()));
+          }
+        } else if (colTypes[i] instanceof DateFormat) {
+          try { ((DateFormat) colTypes[i]).parse(row.getString(i)); }
+          catch (ParseException ex) {
+            throw new RuntimeException(String.format(
+                "CSV: line %d: expecting a date (%s) in column %d: %s",
+                lineNum, colTypes[i], i+1, row.getLine()));
+          }
+        } else if (colTypes[i] instanceof EpochDayParser) {
+          try { ((EpochDayParser) colTypes[i]).parse(row.getString(i)); }
+          catch (DateTimeParseException ex) {
+            throw new RuntimeException(String.format(
+                "CSV: line %d: expecting a date (%s) in column %d: %s",
+                lineNum, colTypes[i], i+1, row.getLine()));
+          }
+        } else {
+          throw new AssertionError(
+              "Unsupported column type: " + colTypes[i].getClass().getName());
+        }
+      }
+    }
+
+    pos = nextLineStart(lineEnd);
+    lineNum++;
+    return row;
+  }
+
+  @Override
+  public void remove() { throw new UnsupportedOperationException("remove"); }
+
+  /** Returns an array of the given number of string column types. */
+  private static Object[] makeStringColTypes(int len) {
+    Object[] colTypes = new Object[len];
+    Arrays.fill(colTypes, String.class);
+    return colTypes;
+  }
+
+  /**
+   * Returns the index of the line terminator ('\n', '\r', or "\r\n") ending
+   * the line that starts at the given index or the limit if there is none.
+   * (These are the same terminators recognized by BufferedReader.readLine.)
+   */
+  private int lineEnd(int index) {
+    int limit = data.limit();
+    while (index < limit) {
+      byte b = data.get(index);
+      if (b == '\n' || b == '\r')
+        break;
+      index++;
+    }
+    return index;
+  }
+
+  /** Returns the index just past the line terminator at the given index. */
+  private int nextLineStart(int lineEnd) {
+    if (lineEnd < data.limit() && data.get(lineEnd) == '\r')
+      lineEnd++;
+    if (lineEnd < data.limit() && data.get(lineEnd) == '\n')
+      lineEnd++;
+    return lineEnd;
+  }
+
+  /**
+   * Records the start and end of each column in the given line into the
+   * scratch arrays and returns the number of columns.
+   */
+  private int findColumns(int lineStart, int lineEnd) {
+    int count = 0;
+    int index = lineStart;
+
+    // Inv: index at the beginning of a column, all previous recorded
+    while (index < lineEnd) {
+      if (count == starts.length) {
+        starts = Arrays.copyOf(starts, 2 * count);
+        ends = Arrays.copyOf(ends, 2 * count);
+        escaped = Arrays.copyOf(escaped, 2 * count);
+      }
+
+      int end;
+      if (data.get(index) != '"') {
+        end = index;
+        while (end < lineEnd && data.get(end) != ',')
+          end++;
+        starts[count] = index;
+        ends[count] = end;
+        escaped[count] = false;
+
+      } else {
+        boolean hasEscapes = false;
+        end = index + 1;  // skip opening quote
+
+        while (end < lineEnd) {
+          if (data.get(end) != '"') {
+            end += 1;
+          } else if (end+1 < lineEnd && data.get(end+1) == '"') {
+            hasEscapes = true;
+            end += 2;
+          } else {
+            break;
+          }
+        }
+
+        if (end == lineEnd) {
+          throw new RuntimeException(String.format(
+              "CSV: line %d: end of line inside of a quoted column: %s",
+              lineNum, decode(lineStart, lineEnd)));
+        }
+        starts[count] = index + 1;
+        ends[count] = end;
+        escaped[count] = hasEscapes;
+
+        end++;
+        if (end < lineEnd && data.get(end) != ',') {
+          throw new RuntimeException(String.format(
+              "CSV: line %d: quote ends before the end of a quoted column: %s",
+              lineNum, decode(lineStart, lineEnd)));
+        }
+      }
+
+      count++;
+
+      // end = lineEnd or data[end] == ','
+      index = (end == lineEnd) ? end : end + 1;  // skip ','
+    }
+
+    return count;
+  }
+
+  /** Returns the text in the given range of the data. */
+  private String decode(int start, int end) {
+    return decode(data, start, end);
+  }
+
+  /** Returns the text in the given range of the given buffer. */
+  private static String decode(ByteBuffer data, int start, int end) {
+    byte[] bytes = new byte[end - start];
+    for (int i = 0; i < bytes.length; i++)
+      bytes[i] = data.get(start + i);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * A row of the CSV, described by the location of each of its columns in the
+   * underlying file. Columns are numbered starting from zero.
+   */
+  public static final class Row {
+
+    /** Contents of the file containing the row. */
+    private final ByteBuffer data;
+
+    /** The same contents viewed as (ASCII) text. */
+    private final ByteText ascii;
+
+    /** Scanner shared by all rows of the parser that returned this one. */
+    private final NumberScanner scanner;
+
+    /** Number of the line containing the row, counting from 1. */
+    private final int lineNum;
+
+    /** Index of the start of the line containing the row. */
+    private final int lineStart;
+
+    /** Index of the end of the line, excluding the terminator. */
+    private final int lineEnd;
+
+    /** Index of the first byte of each column (after any opening quote). */
+    private final int[] starts;
+
+    /** Index just past the last byte of each column (before any quote). */
+    private final int[] ends;
+
+    /** Whether each column is quoted and contains escaped ("") quotes. */
+    private final boolean[] escaped;
+
+    /** Creates a row with columns at the given locations. */
+    private Row(ByteBuffer data, ByteText ascii, NumberScanner scanner,
+        int lineNum, int lineStart, int lineEnd, int[] starts, int[] ends,
+        boolean[] escaped) {
+      this.data = data;
+      this.ascii = ascii;
+      this.scanner = scanner;
+      this.lineNum = lineNum;
+      this.lineStart = lineStart;
+      this.lineEnd = lineEnd;
+      this.starts = starts;
+      this.ends = ends;
+      this.escaped = escaped;
+    }
+
+    /** Returns the number of columns in this row. */
+    public int size() { return starts.length; }
+
+    /** Returns the number of the line containing this row (from 1). */
+    public int getLineNumber() { return lineNum; }
+
+    /** Returns the text of the entire row as it appears in the file. */
+    public String getLine() { return decode(data, lineStart, lineEnd); }
+
+    /** Returns the number of bytes in the given column. */
+    public int length(int col) { return ends[col] - starts[col]; }
+
+    /** Determines whether the given column is empty. */
+    public boolean isEmpty(int col) { return ends[col] == starts[col]; }
+
+    /** Determines whether the given column contains escaped ("") quotes. */
+    boolean isEscaped(int col) { return escaped[col]; }
+
+    /** Returns the i-th byte of the given column as it appears in the file. */
+    public byte byteAt(int col, int i) {
+      assert 0 <= i && i < length(col);
+      return data.get(starts[col] + i);
+    }
+
+    /** Determines whether the given column holds exactly the given text. */
+    public boolean contentEquals(int col, String text) {
+      if (escaped[col] || length(col) != text.length())
+        return getString(col).equals(text);
+      for (int i = 0; i < text.length(); i++) {
+        if (data.get(starts[col] + i) != text.charAt(i))
+          return false;  // (also false for any non-ASCII text)
+      }
+      return true;
+    }
+
+    /** Returns the text of the given column as a new string. */
+    public String getString(int col) {
+      String text = decode(data, starts[col], ends[col]);
+      return escaped[col] ? text.replace("\"\"", "\"") : text;
+    }
+
+    /** Returns all of the columns as strings, just like {@code CsvParser}. */
+    public String[] toStringArray() {
+      String[] cols = new String[size()];
+      for (int i = 0; i < cols.length; i++)
+        cols[i] = getString(i);
+      return cols;
+    }
+
+    /**
+     * Returns the value of the given column parsed as an integer. This accepts
+     * the same strings as {@code Integer.parseInt} (in ASCII).
+     * @throws NumberFormatException if the column is not an integer
+     */
+    public int getInt(int col) {
+      int index = starts[col], end = ends[col];
+      if (escaped[col] || index == end)
+        throw new NumberFormatException(getString(col));
+
+      boolean negative = false;
+      byte first = data.get(index);
+      if (first == '-' || first == '+') {
+        negative = (first == '-');
+        if (++index == end)
+          throw new NumberFormatException(getString(col));
+      }
+
+      // Accumulate negatively, as Integer.parseInt does, so that MIN_VALUE
+      // can be represented without overflow.
+      int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+      int result = 0;
+      while (index < end) {
+        int digit = data.get(index++) - '0';
+        if (digit < 0 || 9 < digit || result < limit / 10)
+          throw new NumberFormatException(getString(col));
+        result *= 10;
+        if (result < limit + digit)
+          throw new NumberFormatException(getString(col));
+        result -= digit;
+      }
+      return negative ? result : -result;
+    }
+
+    /**
+     * Returns the value of the given column parsed as a float. This accepts
+     * the same strings as {@code Float.parseFloat} (in ASCII).
+     * @throws NumberFormatException if the column is not a float
+     */
+    public float getFloat(int col) {
+      if (!scanFloat(col))
+        throw new NumberFormatException(getString(col));
+      return scanner.getFloat();
+    }
+
+    /**
+     * Returns the value of the given column parsed as a double. This accepts
+     * the same strings as {@code Double.parseDouble} (in ASCII).
+     * @throws NumberFormatException if the column is not a double
+     */
+    public double getDouble(int col) {
+      if (!scanDouble(col))
+        throw new NumberFormatException(getString(col));
+      return scanner.getDouble();
+    }
+
+    /**
+     * Determines whether the given column is a float, as for getFloat, and if
+     * so, leaves its value in {@code getScanner().getFloat()}.
+     */
+    boolean scanFloat(int col) {
+      return scanner.scanFloat(ascii, starts[col], ends[col]);
+    }
+
+    /** As above but for a double, left in getScanner().getDouble(). */
+    boolean scanDouble(int col) {
+      return scanner.scanDouble(ascii, starts[col], ends[col]);
+    }
+
+    /** Returns the scanner used by scanFloat and scanDouble. */
+    NumberScanner getScanner() { return scanner; }
+  }
+
+  /**
+   * View of the bytes of a buffer as text, with each byte as one character.
+   * This is only correct for ASCII, but that is all that numbers contain.
+   * (The bytes of any other character decode to characters that cannot be
+   * part of a number, so such text is still rejected.)
+   */
+  private static final class ByteText implements CharSequence {
+
+    private final ByteBuffer data;
+
+    ByteText(ByteBuffer data) { this.data = data; }
+
+    @Override
+    public int length() { return data.limit(); }
+
+    @Override
+    public char charAt(int index) { return (char) (data.get(index) & 0xFF); }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      return decode(data, start, end);
+    }
+
+    @Override
+    public String toString() { return decode(data, 0, data.limit()); }
+  }
+}
@@ -0,0 +1,187 @@
+package cse417;
+
+import java.io.*;
+import java.text.*;
+import java.util.*;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class MappedCsvParserTest {
+
+  @Test public void testEmpty() {
+    assertEquals(0, parseRows("").size());
+  }
+
+  @Test public void testSameAsCsvParser() {
+    String[] contents = new String[] {
+        "a\nb\nc", "a,b,c", "a,b,c\nd,e,f\ng,h,i\n", "a,b,c\r\nd,e,f\r\n",
+        "a,b\rc,d", "\n\na\n", "a,,b,", "\"a\",\"\"\"b\"\"\",\"c\"",
+        "\"\",x,\"y,z\"", "caf\u00e9,na\u00efve"
+    };
+    for (String content : contents) {
+      List<String[]> expected = parseRowsSequential(content, false, null);
+      List<String[]> actual = parseRows(content, false, null);
+      assertEquals(expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); i++)
+        assertArrayEquals(expected.get(i), actual.get(i));
+    }
+  }
+
+  @Test public void testHeader() {
+    List<String[]> rows = parseRows("A,B,C\na,b,c", true, null);
+    assertEquals(1, rows.size());
+    assertArrayEquals(new String[] {"a", "b", "c"}, rows.get(0));
+
+    assertEquals(0, parseRows("A,B,C", true, null).size());
+  }
+
+  @Test public void testBadQuote() {
+    try { parseRows("a,\"b,c"); fail(); } // no end
+    catch (RuntimeException ex) { /* pass */ }
+
+    try { parseRows("a,\"b\" ,c"); fail(); } // extra space
+    catch (RuntimeException ex) { /* pass */ }
+  }
+
+  /** Format for the dates used in the data files. */
+  private static final DateFormat DATE_FORMAT =
+      new SimpleDateFormat("dd-MMM-yy");
+
+  @Test public void testWithTypes() {
+    List<String[]> rows = parseRows(
+        "abc,2,3.14,01-Jan-78\ndef,-3,\".25\",05-Dec-87",
+        false,
+        new Object[] { String.class, Integer.class, Float.class, DATE_FORMAT});
+    assertEquals(2, rows.size());
+    assertArrayEquals(new String[] {"abc", "2", "3.14", "01-Jan-78"},
+        rows.get(0));
+    assertArrayEquals(new String[] {"def", "-3", ".25", "05-Dec-87"},
+        rows.get(1));
+  }
+
+  @Test public void testBadTypes() {
+    try { parseRows("3.14", false, new Object[] { Integer.class }); fail(); }
+    catch (RuntimeException ex) { /* pass */ }
+
+    try { parseRows("abc", false, new Object[] { Float.class }); fail(); }
+    catch (RuntimeException ex) { /* pass */ }
+
+    try { parseRows("a,b", false, new Object[] { String.class }); fail(); }
+    catch (RuntimeException ex) { /* pass */ }
+
+    try {
+      parseRows("01-Fredcember-78", false, new Object[] { DATE_FORMAT });
+      fail();
+    } catch (RuntimeException ex) { /* pass */ }
+  }
+
+  @Test public void testGetInt() {
+    MappedCsvParser.Row row = parseFirst(
+        "0,-7,+12,2147483647,-2147483648,2147483648,-2147483649,1a,-,\"\"");
+    assertEquals(0, row.getInt(0));
+    assertEquals(-7, row.getInt(1));
+    assertEquals(12, row.getInt(2));
+    assertEquals(Integer.MAX_VALUE, row.getInt(3));
+    assertEquals(Integer.MIN_VALUE, row.getInt(4));
+    for (int col = 5; col < row.size(); col++) {
+      try { row.getInt(col); fail(); }
+      catch (NumberFormatException ex) { /* pass */ }
+    }
+  }
+
+  @Test public void testGetFloatAndDouble() {
+    String[] texts = { "0", "-7.25", "+.5", "1e3", " 2.5 ", "3.4028236e38",
+        "0.1000000000000000055511151231257827", "NaN", "-Infinity", "1d" };
+    MappedCsvParser.Row row = parseFirst(String.join(",", texts));
+    for (int col = 0; col < texts.length; col++) {
+      assertEquals(Float.floatToIntBits(Float.parseFloat(texts[col])),
+          Float.floatToIntBits(row.getFloat(col)));
+      assertEquals(Double.doubleToLongBits(Double.parseDouble(texts[col])),
+          Double.doubleToLongBits(row.getDouble(col)));
+    }
+
+    row = parseFirst("1a,-,,.,\"1\"\"\",1\u00e9,e5");
+    for (int col = 0; col < row.size(); col++) {
+      try { row.getFloat(col); fail(); }
+      catch (NumberFormatException ex) { /* pass */ }
+      try { row.getDouble(col); fail(); }
+      catch (NumberFormatException ex) { /* pass */ }
+    }
+  }
+
+  @Test public void testColumnViews() {
+    MappedCsvParser.Row row = parseFirst("ARI,\"say \"\"hi\"\"\",,2.5");
+    assertEquals(4, row.size());
+    assertTrue(row.contentEquals(0, "ARI"));
+    assertFalse(row.contentEquals(0, "ATL"));
+    assertTrue(row.contentEquals(1, "say \"hi\""));
+    assertTrue(row.isEmpty(2));
+    assertEquals(3, row.length(0));
+    assertEquals('R', row.byteAt(0, 1));
+    assertEquals(2.5, row.getDouble(3), 1e-12);
+    assertEquals(2.5f, row.getFloat(3), 1e-6f);
+  }
+
+  /** Returns the first row produced by parsing the given content. */
+  private MappedCsvParser.Row parseFirst(String content) {
+    try {
+      MappedCsvParser parser =
+          new MappedCsvParser(writeTemp(content).getPath());
+      assertTrue(parser.hasNext());
+      return parser.next();
+    } catch (IOException ex) {
+      throw new RuntimeException(ex);  // should not happen here
+    }
+  }
+
+  /** Returns the rows produced by parsing the given content as a CSV. */
+  private List<String[]> parseRows(String content) {
+    return parseRows(content, false, null);
+  }
+
+  /**
+   * Returns the rows produced by parsing the given content as a CSV using a
+   * memory-mapped parser.
+   */
+  private List<String[]> parseRows(
+        String content, boolean hasHeader, Object[] colTypes) {
+    List<String[]> rows = new ArrayList<String[]>();
+    try {
+      MappedCsvParser parser = new MappedCsvParser(
+          writeTemp(content).getPath(), hasHeader, colTypes);
+      while (parser.hasNext())
+        rows.add(parser.next().toStringArray());
+    } catch (IOException ex) {
+      throw new RuntimeException(ex);  // should not happen here
+    }
+    return rows;
+  }
+
+  /** Returns the rows produced by parsing the content with CsvParser. */
+  private List<String[]> parseRowsSequential(
+        String content, boolean hasHeader, Object[] colTypes) {
+    List<String[]> rows = new ArrayList<String[]>();
+    try {
+      CsvParser parser =
+          new CsvParser(new StringReader(content), hasHeader, colTypes);
+      while (parser.hasNext())
+        rows.add(parser.next());
+    } catch (IOException ex) {
+      throw new RuntimeException(ex);  // should not happen here
+    }
+    return rows;
+  }
+
+  /** Returns a temporary file containing the given content in UTF-8. */
+  private static File writeTemp(String content) throws IOException {
+    File file = File.createTempFile("csv", ".csv");
+    file.deleteOnExit();
+    try (Writer out = new OutputStreamWriter(
+        new FileOutputStream(file), "UTF-8")) {
+      out.write(content);
+    }
+    return file;
+  }
+}
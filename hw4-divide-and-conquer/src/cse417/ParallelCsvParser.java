@@ -0,0 +1,205 @@
+package cse417;
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+
+import java.text.DateFormat;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Parses a CSV file on multiple threads. The (memory-mapped) file is split
+ * into byte ranges that each start at the beginning of a line, and each range
+ * is parsed and checked by its own {@code MappedCsvParser} on the fork-join
+ * pool. The results are then put back together in the order of the file.
+ * <p>
+ * Since neither parser allows a quoted column to continue onto another line,
+ * every line terminator ends a row, so splitting at line starts never cuts a
+ * quoted column in two. Errors are reported exactly as the sequential parser
+ * would: the first bad row in the file is the one reported, with its line
+ * number in the file as a whole.
+ */
+public class ParallelCsvParser {
+
+  /** Smallest number of bytes worth handing to a separate task. */
+  static final int MIN_CHUNK_SIZE = 1 << 20;
+
+  /**
+   * Returns all of the rows in the given file. This produces the same result
+   * as reading every row from a {@code CsvParser} with the same arguments.
+   */
+  public static List<String[]> parseAll(String fileName, boolean hasHeader,
+      Object[] colTypes) throws IOException {
+    return parseAll(MappedCsvParser.map(fileName), hasHeader, colTypes,
+        MIN_CHUNK_SIZE);
+  }
+
+  /** As above but for the given data split into chunks of the given size. */
+  static List<String[]> parseAll(ByteBuffer data, boolean hasHeader,
+      final Object[] colTypes, int minChunkSize) {
+    List<List<String[]>> chunks = parseChunks(data, hasHeader, minChunkSize,
+        parser -> {
+          List<String[]> rows = new ArrayList<String[]>();
+          while (parser.hasNext())
+            rows.add(parser.next().toStringArray());
+          return rows;
+        }, colTypes);
+
+    List<String[]> rows = new ArrayList<String[]>();
+    for (List<String[]> chunk : chunks)
+      rows.addAll(chunk);
+    return rows;
+  }
+
+  /**
+   * Splits the data into chunks of (roughly) at least the given size and
+   * applies the given function to a parser of each chunk on the fork-join
+   * pool. Returns the results for each chunk in the order of the file.
+   * @param colTypes Column types to check in each parser (or null). Each
+   *   parser is given its own copy of any DateFormat since those are not
+   *   thread safe.
+   * @throws RuntimeException the first error in the file (if any)
+   */
+  static <T> List<T> parseChunks(ByteBuffer data, boolean hasHeader,
+      int minChunkSize, final Function<MappedCsvParser, T> parseChunk,
+      final Object[] colTypes) {
+    int start = data.position();
+    int firstLineNum = 1;
+    if (hasHeader && start < data.limit()) {
+      start = nextLineStart(data, start + 1);
+      firstLineNum++;
+    }
+
+    // Split the data after the header into ranges starting at line starts.
+    int parallelism = ForkJoinPool.getCommonPoolParallelism();
+    int chunkSize = Math.max(minChunkSize,
+        (data.limit() - start) / (4 * parallelism) + 1);
+    final List<Integer> bounds = new ArrayList<Integer>();
+    bounds.add(start);
+    while (bounds.get(bounds.size()-1) < data.limit()) {
+      int last = bounds.get(bounds.size()-1);
+      bounds.add(nextLineStart(data,
+          (int) Math.min(data.limit(), (long) last + chunkSize)));
+    }
+    int numChunks = bounds.size() - 1;
+
+    // Count the lines in each chunk so that we know the first line number in
+    // each one before parsing any of them.
+    List<Future<Integer>> counts = new ArrayList<Future<Integer>>();
+    for (int i = 0; i < numChunks; i++) {
+      final int s = bounds.get(i), e = bounds.get(i+1);
+      counts.add(submit(() -> countLines(data, s, e)));
+    }
+    int[] lineNums = new int[numChunks];
+    for (int i = 0; i < numChunks; i++) {
+      lineNums[i] = firstLineNum;
+      firstLineNum += join(counts.get(i));
+    }
+
+    List<Future<T>> tasks = new ArrayList<Future<T>>();
+    for (int i = 0; i < numChunks; i++) {
+      final ByteBuffer chunk = data.duplicate();
+      chunk.limit(bounds.get(i+1));
+      chunk.position(bounds.get(i));
+      final int lineNum = lineNums[i];
+      tasks.add(submit(() -> parseChunk.apply(new MappedCsvParser(
+          chunk, false, copyColTypes(colTypes), lineNum))));
+    }
+
+    // Join in order so that an error in an earlier chunk is the one reported.
+    List<T> results = new ArrayList<T>();
+    try {
+      for (Future<T> task : tasks)
+        results.add(join(task));
+    } finally {
+      for (Future<T> task : tasks)
+        task.cancel(false);
+    }
+    return results;
+  }
+
+  /**
+   * Returns a copy of the given column types with each DateFormat cloned so
+   * that it can be used on another thread. Each CsvDictionary is replaced by
+   * a new, empty one (the same new one wherever the old one appears).
+   */
+  static Object[] copyColTypes(Object[] colTypes) {
+    if (colTypes == null)
+      return null;
+
+    Object[] copy = colTypes.clone();
+    Map<Object, CsvDictionary> dicts =
+        new IdentityHashMap<Object, CsvDictionary>();
+    for (int i = 0; i < copy.length; i++) {
+      if (copy[i] instanceof DateFormat) {
+        copy[i] = ((DateFormat) copy[i]).clone();
+      } else if (copy[i] instanceof CsvDictionary) {
+        copy[i] = dicts.computeIfAbsent(copy[i], d -> new CsvDictionary());
+      }
+    }
+    return copy;
+  }
+
+  /**
+   * Returns the first index at or after the given one that begins a line (or
+   * the limit if there is none).
+   */
+  private static int nextLineStart(ByteBuffer data, int index) {
+    while (index < data.limit() && !isLineStart(data, index))
+      index++;
+    return index;
+  }
+
+  /**
+   * Determines whether the given index is just past a line terminator, where
+   * the terminators are '\n', '\r', or "\r\n".
+   */
+  private static boolean isLineStart(ByteBuffer data, int index) {
+    byte prev = data.get(index - 1);
+    return prev == '\n' || (prev == '\r' && data.get(index) != '\n');
+  }
+
+  /** Returns the number of lines starting in data[start..end-1]. */
+  private static int countLines(ByteBuffer data, int start, int end) {
+    int count = (start < end) ? 1 : 0;  // start begins a line
+    for (int i = start + 1; i < end; i++) {
+      if (isLineStart(data, i))
+        count++;
+    }
+    return count;
+  }
+
+  /** Starts the given task on the (common) fork-join pool. */
+  private static <T> Future<T> submit(Supplier<T> task) {
+    return CompletableFuture.supplyAsync(task);
+  }
+
+  /**
+   * Returns the result of the given task, rethrowing (unchanged) any runtime
+   * exception or error that it threw.
+   */
+  private static <T> T join(Future<T> task) {
+    try {
+      return task.get();
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof RuntimeException)
+        throw (RuntimeException) ex.getCause();
+      if (ex.getCause() instanceof Error)
+        throw (Error) ex.getCause();
+      throw new RuntimeException(ex.getCause());
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(ex);
+    }
+  }
+}
@@ -4,17 +4,18 @@ import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.temporal.ChronoField;
 
 import java.util.LinkedList;
 import java.util.Queue;
 import java.util.Stack;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Date;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 
 
 /**
@@ -25,9 +26,21 @@ import java.util.List;
  */
 public class SidewaysTrend {
 
-  /** Format for the dates used in the data files. */
-  private static final DateFormat DATE_FORMAT =
-      new SimpleDateFormat("dd-MMM-yy");
+  /**
+   * Format for the dates used in the data files. Like SimpleDateFormat, this
+   * accepts one-digit days and any case in the month, and two-digit years
+   * are taken to be within 50 years of 2000.
+   */
+  private static final DateTimeFormatter DATE_FORMAT =
+      new DateTimeFormatterBuilder()
+          .parseCaseInsensitive()
+          .appendPattern("d-MMM-")
+          .appendValueReduced(ChronoField.YEAR, 2, 2, 1950)
+          .toFormatter(Locale.US);
+
+  /** Format for the dates printed in the output. */
+  private static final DateTimeFormatter OUTPUT_DATE_FORMAT =
+      DateTimeFormatter.ofPattern("dd-MMM-yy", Locale.US);
 
   /** Entry point for a program to build a model of NFL teams. */
   public static void main(String[] args) throws Exception {
@@ -39,7 +52,7 @@ public class SidewaysTrend {
     double maxPctChange = argParser.hasOption("max-pct-change") ?
         argParser.getDoubleOption("max-pct-change") : 5.0;
 
-    List<Date> dates = new ArrayList<Date>();
+    List<Integer> dates = new ArrayList<Integer>();
     List<Integer> prices = loadPrices(args[0], dates);
 
     Range longest;
@@ -52,8 +65,10 @@ public class SidewaysTrend {
 
     System.out.printf(
         "Longest sideways trend is from %s to %s (%d trading days)\n",
-        DATE_FORMAT.format(dates.get(longest.firstIndex)),
-        DATE_FORMAT.format(dates.get(longest.lastIndex)),
+        LocalDate.ofEpochDay(dates.get(longest.firstIndex))
+            .format(OUTPUT_DATE_FORMAT),
+        LocalDate.ofEpochDay(dates.get(longest.lastIndex))
+            .format(OUTPUT_DATE_FORMAT),
         longest.length());
     System.out.printf("Price range is %.2f to %.2f, a %.1f%% change\n",
         longest.lowPrice/100., longest.highPrice/100.,
@@ -64,44 +79,36 @@ public class SidewaysTrend {
    * Returns the prices in the file. Prices are returned in units of cents
    * ($0.01) to avoid roundoff issues elsewhere in the code.
    * @param fileName Name of the CSV file containing price data
-   * @param dates If non-null, dates will be stored in this list. In this case,
-   *     we will also check that the prices are in order of increasing date.
+   * @param dates If non-null, dates (as epoch days) will be stored in this
+   *     list. In this case, we will also check that the prices are in order
+   *     of increasing date.
    */
-  private static List<Integer> loadPrices(String fileName, List<Date> dates)
-      throws IOException, ParseException {
+  private static List<Integer> loadPrices(String fileName, List<Integer> dates)
+      throws IOException {
     assert (dates == null) || (dates.size() == 0);
 
-    // Stores the relevant information from one row of data.
-    class Row {
-      public final Date date;
-      public final int price;
-      public Row(Date date, int price) { this.date = date; this.price = price; }
-    }
-    List<Row> rows = new ArrayList<Row>();
-
-    CsvParser parser = new CsvParser(fileName, true, new Object[] {
-          DATE_FORMAT, Float.class, Float.class, Float.class, Float.class,
-          String.class, String.class
+    // Only the date and (closing) price are used, so skip the other columns.
+    CsvTable table = CsvSnapshot.load(fileName, true, new Object[] {
+          DATE_FORMAT, Double.class, null, null, null, null, null
         });
-    while (parser.hasNext()) {
-      String[] parts = parser.next();
-      double close = Double.parseDouble(parts[1]);
-      rows.add(new Row(DATE_FORMAT.parse(parts[0]), (int)(100 * close)));
-    }
 
     // Put the rows in increasing order of date.
-    Collections.sort(rows, (r1, r2) -> r1.date.compareTo(r2.date));
+    Integer[] rows = new Integer[table.size()];
+    for (int i = 0; i < rows.length; i++)
+      rows[i] = i;
+    Arrays.sort(rows, (r1, r2) -> Integer.compare(
+        table.getEpochDay(r1, 0), table.getEpochDay(r2, 0)));
 
     // If requested, otput the dates from the file.
     if (dates != null) {
-      for (Row row : rows)
-        dates.add(row.date);
+      for (int row : rows)
+        dates.add(table.getEpochDay(row, 0));
     }
 
     // Return the prices from the file.
     List<Integer> prices = new ArrayList<Integer>();
-    for (Row row : rows)
-      prices.add(row.price);
+    for (int row : rows)
+      prices.add((int)(100 * table.getDouble(row, 1)));
     return prices;
   }
 
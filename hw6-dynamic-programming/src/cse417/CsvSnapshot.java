@@ -0,0 +1,426 @@
+package cse417;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+import java.util.zip.CRC32;
+
+/**
+ * Loads CSV files into {@code CsvTable}s, keeping a binary snapshot of each
+ * table next to its file so that later loads of the same file can skip
+ * parsing. The snapshot of {@code X.csv} is stored in {@code X.csv.snap}.
+ * <p>
+ * A snapshot starts with a header recording the length, modification time,
+ * and CRC-32 checksum of the CSV file it came from and the schema (column
+ * types) used to load it. The snapshot is only used if the length and schema
+ * still match. If the modification time also matches, the CSV is assumed to
+ * be unchanged, so the snapshot is used without reading the CSV at all.
+ * Otherwise, the checksum of the CSV is computed, and the snapshot is used
+ * (and its time updated) only if that still matches. After the header,
+ * each column is stored in turn: numeric and date columns as their raw
+ * values and string columns as lengths followed by UTF-8 bytes. A dictionary
+ * column is stored as its own list of the distinct strings that appear in it
+ * followed by an index into that list for each row; on loading, these are
+ * given codes in the caller's dictionary in the same order that parsing
+ * would give them. (Skipped columns are not stored.) Any problem reading or
+ * writing a snapshot just means that the CSV is parsed instead.
+ * <p>
+ * The snapshot always holds every row, so the same snapshot serves loads
+ * with any row predicate. With a predicate, only the key column is read in
+ * full; the other columns are read just at the rows that are kept.
+ * <p>
+ * Columns parsed with a {@code DateFormat} other than a
+ * {@code SimpleDateFormat} cannot be described in the header, so tables with
+ * such columns are always parsed and never snapshotted.
+ */
+public class CsvSnapshot {
+
+  /** Suffix added to the name of the CSV file to get the snapshot's name. */
+  public static final String SUFFIX = ".snap";
+
+  /** Bytes at the start of every snapshot file. */
+  private static final long MAGIC = 0x43535653_4E415032L;  // "CSVSNAP2"
+
+  /** Offset in the snapshot of the modification time of the CSV. */
+  private static final int MODIFIED_OFFSET = 16;
+
+  /**
+   * Returns a table with the contents of the given CSV file, loaded from its
+   * snapshot if there is an up-to-date one. Otherwise, the CSV is parsed (in
+   * parallel) and a new snapshot is written for next time. The parameters
+   * are the same as for {@code CsvTable.load}.
+   */
+  public static CsvTable load(String fileName, boolean hasHeader,
+      Object[] colTypes) throws IOException {
+    return load(fileName, hasHeader, colTypes, -1, null);
+  }
+
+  /**
+   * As above, but only keeps the rows whose value in column {@code keyCol}
+   * passes the given predicate, as in {@code CsvTable.load}.
+   */
+  public static CsvTable load(String fileName, boolean hasHeader,
+      Object[] colTypes, int keyCol, IntPredicate keep) throws IOException {
+    colTypes = EpochDayParser.wrapFormatters(colTypes);
+    if (keep != null)
+      CsvTable.checkKeyColumn(colTypes, keyCol);
+    String schema = describeSchema(hasHeader, colTypes);
+
+    // Note the time before reading, so that later changes make it differ.
+    File csvFile = new File(fileName);
+    long csvModified = csvFile.lastModified();
+    File snapFile = new File(fileName + SUFFIX);
+    if (schema != null && snapFile.exists()) {
+      try {
+        CsvTable table = read(snapFile, csvFile, csvModified, schema,
+            colTypes, keyCol, keep);
+        if (table != null)
+          return table;
+      } catch (IOException | RuntimeException ex) {
+        // fall through and parse the CSV instead
+      }
+    }
+
+    ByteBuffer csv = MappedCsvParser.map(fileName);
+    CsvTable table = CsvTable.loadParallel(csv, hasHeader, colTypes,
+        ParallelCsvParser.MIN_CHUNK_SIZE);
+    if (schema != null) {
+      try {
+        write(table, snapFile, csv.limit(), csvModified, checksum(csv),
+            schema);
+      } catch (IOException ex) {
+        // the snapshot is just an optimization, so carry on without it
+      }
+    }
+    return (keep != null) ? table.filter(keyCol, keep) : table;
+  }
+
+  /**
+   * Returns the table stored in the given snapshot file, keeping only rows
+   * whose key passes the predicate (if non-null), or null if it is not a
+   * snapshot of the given CSV file with the given schema. The checksum of the
+   * CSV is only computed if its modification time differs from the one in the
+   * snapshot; if the checksum matches, the time in the snapshot is updated so
+   * that the next load need not compute it again.
+   */
+  private static CsvTable read(File snapFile, File csvFile, long csvModified,
+      String schema, Object[] colTypes, int keyCol, IntPredicate keep)
+      throws IOException {
+    ByteBuffer snap;
+    try (RandomAccessFile file = new RandomAccessFile(snapFile, "r");
+         FileChannel channel = file.getChannel()) {
+      snap = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    if (snap.getLong() != MAGIC || snap.getLong() != csvFile.length())
+      return null;
+    long snapModified = snap.getLong();
+    long snapCrc = snap.getLong();
+    if (!readString(snap).equals(schema))
+      return null;
+
+    if (snapModified != csvModified) {
+      ByteBuffer csv = MappedCsvParser.map(csvFile.getPath());
+      if (csv.limit() != csvFile.length() || checksum(csv) != snapCrc)
+        return null;
+      try (RandomAccessFile file = new RandomAccessFile(snapFile, "rw")) {
+        file.seek(MODIFIED_OFFSET);
+        file.writeLong(csvModified);
+      } catch (IOException ex) {
+        // the snapshot is still good, so just check the CSV again next time
+      }
+    }
+
+    int numRows = snap.getInt();
+
+    // Find where each column starts.
+    int[] starts = new int[colTypes.length];
+    for (int i = 0; i < colTypes.length; i++) {
+      starts[i] = snap.position();
+      if (colTypes[i] == null)
+        continue;
+      Class<?> type = CsvTable.elementType(colTypes[i]);
+      if (colTypes[i] instanceof CsvDictionary) {
+        int numValues = snap.getInt();
+        for (int j = 0; j < numValues; j++)
+          snap.position(snap.position() + 4 + snap.getInt(snap.position()));
+        snap.position(snap.position() + 4 * numRows);
+      } else if (type == double.class) {
+        snap.position(snap.position() + 8 * numRows);
+      } else if (type != String.class) {
+        snap.position(snap.position() + 4 * numRows);
+      } else {
+        for (int j = 0; j < numRows; j++)
+          snap.position(snap.position() + 4 + snap.getInt(snap.position()));
+      }
+    }
+
+    // Decide which rows to keep (null meaning all of them).
+    int[] rows = null;
+    int numKept = numRows;
+    if (keep != null) {
+      rows = new int[numRows];
+      numKept = 0;
+      for (int j = 0; j < numRows; j++) {
+        if (keep.test(snap.getInt(starts[keyCol] + 4 * j)))
+          rows[numKept++] = j;
+      }
+      if (numKept == numRows)
+        rows = null;
+    }
+
+    int[][] recodings = recodeDictionaries(snap, colTypes, starts, numRows);
+
+    Object[] columns = new Object[colTypes.length];
+    for (int i = 0; i < columns.length; i++) {
+      if (colTypes[i] == null)
+        continue;
+      snap.position(starts[i]);
+      Class<?> type = CsvTable.elementType(colTypes[i]);
+      if (recodings[i] != null) {
+        int[] values = new int[numKept];
+        for (int j = 0; j < numKept; j++) {
+          int row = (rows == null) ? j : rows[j];
+          values[j] = recodings[i][snap.getInt(starts[i] + 4 * row)];
+        }
+        columns[i] = values;
+      } else if (type == int.class) {
+        int[] values = new int[numKept];
+        if (rows == null) {
+          snap.asIntBuffer().get(values);
+        } else {
+          for (int j = 0; j < numKept; j++)
+            values[j] = snap.getInt(starts[i] + 4 * rows[j]);
+        }
+        columns[i] = values;
+      } else if (type == float.class) {
+        float[] values = new float[numKept];
+        if (rows == null) {
+          snap.asFloatBuffer().get(values);
+        } else {
+          for (int j = 0; j < numKept; j++)
+            values[j] = snap.getFloat(starts[i] + 4 * rows[j]);
+        }
+        columns[i] = values;
+      } else if (type == double.class) {
+        double[] values = new double[numKept];
+        if (rows == null) {
+          snap.asDoubleBuffer().get(values);
+        } else {
+          for (int j = 0; j < numKept; j++)
+            values[j] = snap.getDouble(starts[i] + 8 * rows[j]);
+        }
+        columns[i] = values;
+      } else {
+        String[] values = new String[numKept];
+        for (int j = 0, k = 0; k < numKept; j++) {
+          if (rows == null || rows[k] == j) {
+            values[k++] = readString(snap);
+          } else {
+            snap.position(snap.position() + 4 + snap.getInt(snap.position()));
+          }
+        }
+        columns[i] = values;
+      }
+    }
+    return new CsvTable(colTypes, columns);
+  }
+
+  /**
+   * Gives codes in the caller's dictionaries to the strings stored for each
+   * dictionary column and returns, for each such column, an array mapping
+   * stored indexes to codes. (The result is null for other columns.) Strings
+   * are encoded in the order in which they first appear, row by row, as they
+   * are when parsing. This also moves the start of each dictionary column
+   * past its strings to the start of its indexes.
+   */
+  private static int[][] recodeDictionaries(ByteBuffer snap,
+      Object[] colTypes, int[] starts, int numRows) {
+    int[][] recodings = new int[colTypes.length][];
+    String[][] values = new String[colTypes.length][];
+    int numMissing = 0;
+    for (int i = 0; i < colTypes.length; i++) {
+      if (!(colTypes[i] instanceof CsvDictionary))
+        continue;
+
+      snap.position(starts[i]);
+      values[i] = new String[snap.getInt()];
+      for (int j = 0; j < values[i].length; j++)
+        values[i][j] = readString(snap);
+      starts[i] = snap.position();
+
+      recodings[i] = new int[values[i].length];
+      Arrays.fill(recodings[i], -1);
+      numMissing += values[i].length;
+    }
+
+    for (int j = 0; j < numRows && numMissing > 0; j++) {
+      for (int i = 0; i < colTypes.length; i++) {
+        if (recodings[i] == null)
+          continue;
+        int index = snap.getInt(starts[i] + 4 * j);
+        if (recodings[i][index] < 0) {
+          recodings[i][index] =
+              ((CsvDictionary) colTypes[i]).encode(values[i][index]);
+          numMissing--;
+        }
+      }
+    }
+    return recodings;
+  }
+
+  /**
+   * Writes the given table to the given snapshot file. The file is written
+   * under a temporary name first and then renamed, so a reader will never see
+   * a partly-written snapshot.
+   */
+  private static void write(CsvTable table, File snapFile, long csvLength,
+      long csvModified, long csvCrc, String schema) throws IOException {
+    // Find the strings and indexes to store for each dictionary column.
+    String[][] dictValues = new String[table.getColumnCount()][];
+    int[][] dictIndexes = new int[table.getColumnCount()][];
+    for (int i = 0; i < table.getColumnCount(); i++) {
+      if (table.getColumnType(i) instanceof CsvDictionary) {
+        CsvDictionary local = new CsvDictionary();
+        dictIndexes[i] = new int[table.size()];
+        for (int j = 0; j < table.size(); j++)
+          dictIndexes[i][j] = local.encode(table.getString(j, i));
+        dictValues[i] = local.toArray();
+      }
+    }
+
+    long size = 8 + 8 + 8 + 8 + 4 + utf8Length(schema) + 4;
+    for (int i = 0; i < table.getColumnCount(); i++) {
+      Object column = table.getColumn(i);
+      if (dictValues[i] != null) {
+        size += 4 + 4L * table.size();
+        for (String value : dictValues[i])
+          size += 4 + utf8Length(value);
+      } else if (column == null) {
+        // skipped columns are not stored
+      } else if (column instanceof int[] || column instanceof float[]) {
+        size += 4L * table.size();
+      } else if (column instanceof double[]) {
+        size += 8L * table.size();
+      } else {
+        for (String value : (String[]) column)
+          size += 4 + utf8Length(value);
+      }
+    }
+
+    File tempFile = File.createTempFile(
+        snapFile.getName(), ".tmp", snapFile.getAbsoluteFile().getParentFile());
+    try {
+      try (RandomAccessFile file = new RandomAccessFile(tempFile, "rw");
+           FileChannel channel = file.getChannel()) {
+        ByteBuffer snap =
+            channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        snap.putLong(MAGIC);
+        snap.putLong(csvLength);
+        assert snap.position() == MODIFIED_OFFSET;
+        snap.putLong(csvModified);
+        snap.putLong(csvCrc);
+        writeString(snap, schema);
+        snap.putInt(table.size());
+        for (int i = 0; i < table.getColumnCount(); i++) {
+          Object column = table.getColumn(i);
+          if (dictValues[i] != null) {
+            snap.putInt(dictValues[i].length);
+            for (String value : dictValues[i])
+              writeString(snap, value);
+            snap.asIntBuffer().put(dictIndexes[i]);
+            snap.position(snap.position() + 4 * table.size());
+          } else if (column instanceof int[]) {
+            snap.asIntBuffer().put((int[]) column);
+            snap.position(snap.position() + 4 * table.size());
+          } else if (column instanceof float[]) {
+            snap.asFloatBuffer().put((float[]) column);
+            snap.position(snap.position() + 4 * table.size());
+          } else if (column instanceof double[]) {
+            snap.asDoubleBuffer().put((double[]) column);
+            snap.position(snap.position() + 8 * table.size());
+          } else if (column != null) {
+            for (String value : (String[]) column)
+              writeString(snap, value);
+          }
+        }
+        assert !snap.hasRemaining();
+      }
+      Files.move(tempFile.toPath(), snapFile.toPath(),
+          StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      tempFile.delete();  // (does nothing if the move succeeded)
+    }
+  }
+
+  /**
+   * Returns a description of the columns types that will differ whenever the
+   * values stored for the columns would differ, or null if some column type
+   * cannot be described that way.
+   */
+  private static String describeSchema(boolean hasHeader, Object[] colTypes) {
+    StringBuilder buf = new StringBuilder(hasHeader ? "header" : "no header");
+    for (Object colType : colTypes) {
+      buf.append(';');
+      if (colType == null) {
+        buf.append("skip");
+      } else if (colType instanceof Class<?>) {
+        buf.append(((Class<?>) colType).getSimpleName());
+      } else if (colType instanceof SimpleDateFormat) {
+        SimpleDateFormat format = (SimpleDateFormat) colType;
+        buf.append("date(").append(format.toPattern()).append(' ')
+            .append(format.getTimeZone().getID()).append(')');
+      } else if (colType instanceof DateFormat) {
+        return null;  // (its toString only identifies the object)
+      } else if (colType instanceof EpochDayParser) {
+        buf.append("date(").append(colType).append(' ')
+            .append(((EpochDayParser) colType).getFormat().getLocale())
+            .append(')');
+      } else if (colType instanceof CsvDictionary) {
+        buf.append("dict");
+      } else {
+        throw new AssertionError(
+            "Unsupported column type: " + colType.getClass().getName());
+      }
+    }
+    return buf.toString();
+  }
+
+  /** Returns the CRC-32 checksum of the remaining bytes in the buffer. */
+  private static long checksum(ByteBuffer buf) {
+    CRC32 crc = new CRC32();
+    crc.update(buf.duplicate());
+    return crc.getValue();
+  }
+
+  /** Returns the number of bytes in the UTF-8 encoding of the string. */
+  private static int utf8Length(String value) {
+    return value.getBytes(StandardCharsets.UTF_8).length;
+  }
+
+  /** Writes the length of the string's UTF-8 encoding and then the bytes. */
+  private static void writeString(ByteBuffer buf, String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    buf.putInt(bytes.length);
+    buf.put(bytes);
+  }
+
+  /** Reads a string written by {@code writeString}. */
+  private static String readString(ByteBuffer buf) {
+    byte[] bytes = new byte[buf.getInt()];
+    buf.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,233 @@
+package cse417;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Reads the rows of a CSV file that is being appended to, parsing each row
+ * only once. Each call to {@code poll} returns the rows that have been
+ * completed since the last call. A line is complete once its terminator has
+ * been written, so a row that is still being written is left for a later
+ * call.
+ * <p>
+ * The position reached is recorded in a {@code Checkpoint}, which can be
+ * saved to a file and passed back in on a later run to resume from the same
+ * place without re-reading the rows before it.
+ */
+public class CsvTailer implements Closeable {
+
+  /** Number of bytes before the offset that are checked on resuming. */
+  private static final int CHECK_LENGTH = 256;
+
+  /**
+   * Records how far into a file the rows have been read. This is the offset
+   * of the first byte not yet parsed, which is always the start of a line,
+   * the number of that line, and a checksum of the bytes just before it that
+   * is used to detect a file that was replaced rather than appended to.
+   */
+  public static final class Checkpoint {
+
+    /** Checkpoint of a file from which nothing has been read yet. */
+    public static final Checkpoint START = new Checkpoint(0, 1, 0);
+
+    private final long offset;
+    private final int lineNum;
+    private final long checksum;
+
+    Checkpoint(long offset, int lineNum, long checksum) {
+      this.offset = offset;
+      this.lineNum = lineNum;
+      this.checksum = checksum;
+    }
+
+    /** Returns the offset in bytes of the first line not yet read. */
+    public long getOffset() { return offset; }
+
+    /** Returns the number of the first line not yet read, counting from 1. */
+    public int getLineNumber() { return lineNum; }
+
+    /** Writes this checkpoint to the given file, replacing its contents. */
+    public void save(String fileName) throws IOException {
+      try (Writer out = Files.newBufferedWriter(
+          new File(fileName).toPath(), StandardCharsets.UTF_8)) {
+        out.write(toString());
+        out.write('\n');
+      }
+    }
+
+    /**
+     * Returns the checkpoint saved in the given file or {@code START} if the
+     * file does not exist.
+     */
+    public static Checkpoint load(String fileName) throws IOException {
+      File file = new File(fileName);
+      if (!file.exists())
+        return START;
+
+      String text = new String(
+          Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim();
+      String[] parts = text.split(" ");
+      try {
+        if (parts.length != 3)
+          throw new NumberFormatException();
+        return new Checkpoint(Long.parseLong(parts[0]),
+            Integer.parseInt(parts[1]), Long.parseLong(parts[2]));
+      } catch (NumberFormatException ex) {
+        throw new IOException("CSV: bad checkpoint in " + fileName + ": " +
+            text);
+      }
+    }
+
+    @Override public String toString() {
+      return offset + " " + lineNum + " " + checksum;
+    }
+  }
+
+  /** Channel for reading the file. */
+  private final FileChannel channel;
+
+  /** Whether the first line of the file is a header to be skipped. */
+  private final boolean hasHeader;
+
+  /** Column types to check in each row (or null), as for CsvParser. */
+  private final Object[] colTypes;
+
+  /** Position reached so far. */
+  private Checkpoint checkpoint;
+
+  /**
+   * Creates a reader of the given file starting from the given checkpoint.
+   * @param hasHeader Whether the first line of the file is a header, which
+   *   should be ignored.
+   * @param colTypes If non-null, the allowed values in each column, exactly as
+   *   for {@code CsvParser}.
+   * @throws IOException if the file does not match the checkpoint
+   */
+  public CsvTailer(String fileName, boolean hasHeader, Object[] colTypes,
+      Checkpoint checkpoint) throws IOException {
+    this.channel = new RandomAccessFile(fileName, "r").getChannel();
+    this.hasHeader = hasHeader;
+    this.colTypes = EpochDayParser.wrapFormatters(colTypes);
+    this.checkpoint = checkpoint;
+
+    try {
+      if (channel.size() < checkpoint.offset ||
+          checksumBefore(checkpoint.offset) != checkpoint.checksum) {
+        throw new IOException(
+            "CSV: file does not match checkpoint: " + fileName);
+      }
+    } catch (IOException ex) {
+      channel.close();
+      throw ex;
+    }
+  }
+
+  /** As above but starting from the beginning of the file. */
+  public CsvTailer(String fileName, boolean hasHeader, Object[] colTypes)
+      throws IOException {
+    this(fileName, hasHeader, colTypes, Checkpoint.START);
+  }
+
+  /** Returns the position reached by the rows returned so far. */
+  public Checkpoint getCheckpoint() { return checkpoint; }
+
+  /**
+   * Returns the rows completed since the last call (or since the checkpoint),
+   * which may be none.
+   * @throws IOException if the file has been truncated
+   * @throws RuntimeException if a new row is not valid CSV or does not match
+   *   the column types, as in {@code CsvParser}
+   */
+  public List<String[]> poll() throws IOException {
+    long size = channel.size();
+    if (size < checkpoint.offset)
+      throw new IOException("CSV: file was truncated");
+    if (size - checkpoint.offset > Integer.MAX_VALUE)
+      throw new IOException("CSV: too much new data to read at once");
+
+    ByteBuffer data = ByteBuffer.allocate((int) (size - checkpoint.offset));
+    while (data.hasRemaining()) {
+      if (channel.read(data, checkpoint.offset + data.position()) < 0)
+        break;
+    }
+    data.flip();
+    data.limit(completeLength(data));
+
+    List<String[]> rows = new ArrayList<String[]>();
+    if (!data.hasRemaining())
+      return rows;
+
+    boolean skipHeader = hasHeader && (checkpoint.offset == 0);
+    MappedCsvParser parser = new MappedCsvParser(
+        data, skipHeader, colTypes, checkpoint.lineNum);
+    while (parser.hasNext())
+      rows.add(parser.next().toStringArray());
+
+    long offset = checkpoint.offset + data.limit();
+    int lineNum = checkpoint.lineNum + rows.size() + (skipHeader ? 1 : 0);
+    checkpoint = new Checkpoint(offset, lineNum, checksumBefore(offset));
+    return rows;
+  }
+
+  /**
+   * Returns the next rows to be completed, checking for new ones every given
+   * number of milliseconds until there is at least one.
+   */
+  public List<String[]> await(long pollMillis)
+      throws IOException, InterruptedException {
+    List<String[]> rows = poll();
+    while (rows.isEmpty()) {
+      Thread.sleep(pollMillis);
+      rows = poll();
+    }
+    return rows;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * Returns the length of the longest prefix of the data that consists of
+   * complete lines. A final '\r' does not count as complete since it could be
+   * the first half of a "\r\n".
+   */
+  private static int completeLength(ByteBuffer data) {
+    for (int i = data.limit() - 1; i >= 0; i--) {
+      byte b = data.get(i);
+      if (b == '\n' || (b == '\r' && i < data.limit() - 1))
+        return i + 1;
+    }
+    return 0;
+  }
+
+  /** Returns a checksum of the bytes just before the given offset. */
+  private long checksumBefore(long offset) throws IOException {
+    if (offset == 0)
+      return 0;
+
+    int length = (int) Math.min(offset, CHECK_LENGTH);
+    ByteBuffer buf = ByteBuffer.allocate(length);
+    while (buf.hasRemaining()) {
+      if (channel.read(buf, offset - length + buf.position()) < 0)
+        break;
+    }
+    buf.flip();
+    CRC32 crc = new CRC32();
+    crc.update(buf);
+    return crc.getValue();
+  }
+}
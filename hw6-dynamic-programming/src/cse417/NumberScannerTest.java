@@ -0,0 +1,102 @@
+package cse417;
+
+import java.util.*;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class NumberScannerTest {
+
+  /** Text to try as both integers and floats. */
+  private static final String[] TEXTS = new String[] {
+      "", "0", "-0", "+0", "-", "+", "7", "+7", "-12", "0012", "2147483647",
+      "2147483648", "-2147483648", "-2147483649", "99999999999", "1,000",
+      " 1", "1 ", "\u0661\u0662", "3.14", ".25", "1.", ".", "-.5", "+.5e1",
+      "1e3", "1E-3", "1e", "1e+", "e3", "1.5f", "2D", "1ff", "1.5x", "1..2",
+      "16777215", "16777216", "16777217", "0.1", "123456.789", "-2.5E-3",
+      "NaN", "-NaN", "nan", "Infinity", "-Infinity", "Infinityf", "Inf",
+      "0x1p3", "0x1.8P-1f", "0x1", "0x", " \t2.5\n", "1e999", "1e-999",
+      "0e99999999999", "0.00000000001", "12345678901234567890",
+      "1.00000000000000000000000000000001", "9007199254740993",
+      "4.9e-324", "1.7976931348623157e308", "3.4028235e38", "1.4e-45"
+  };
+
+  @Test public void testInts() {
+    NumberScanner scanner = new NumberScanner();
+    for (String text : TEXTS) {
+      Integer expected;
+      try { expected = Integer.parseInt(text); }
+      catch (NumberFormatException ex) { expected = null; }
+
+      assertEquals(text, expected != null, scanner.scanInt(text));
+      if (expected != null)
+        assertEquals(text, (int) expected, scanner.getInt());
+    }
+  }
+
+  @Test public void testFloats() {
+    NumberScanner scanner = new NumberScanner();
+    for (String text : TEXTS) {
+      Float expected;
+      try { expected = Float.parseFloat(text); }
+      catch (NumberFormatException ex) { expected = null; }
+
+      assertEquals(text, expected != null, scanner.scanFloat(text));
+      if (expected != null) {
+        assertEquals(text, Float.floatToIntBits(expected),
+            Float.floatToIntBits(scanner.getFloat()));
+      }
+    }
+  }
+
+  @Test public void testDoubles() {
+    NumberScanner scanner = new NumberScanner();
+    for (String text : TEXTS) {
+      Double expected;
+      try { expected = Double.parseDouble(text); }
+      catch (NumberFormatException ex) { expected = null; }
+
+      assertEquals(text, expected != null, scanner.scanDouble(text));
+      if (expected != null) {
+        assertEquals(text, Double.doubleToLongBits(expected),
+            Double.doubleToLongBits(scanner.getDouble()));
+      }
+    }
+  }
+
+  @Test public void testRandomDecimals() {
+    NumberScanner scanner = new NumberScanner();
+    Random rand = new Random(417);
+    for (int i = 0; i < 100000; i++) {
+      StringBuilder text = new StringBuilder();
+      if (rand.nextBoolean())
+        text.append('-');
+      text.append(rand.nextInt(100000));
+      if (rand.nextBoolean()) {
+        text.append('.');
+        for (int j = rand.nextInt(12); j > 0; j--)
+          text.append(rand.nextInt(10));
+      }
+      if (rand.nextInt(4) == 0)
+        text.append('e').append(rand.nextInt(60) - 30);
+
+      String t = text.toString();
+      assertTrue(t, scanner.scanFloat(t));
+      assertEquals(t, Float.floatToIntBits(Float.parseFloat(t)),
+          Float.floatToIntBits(scanner.getFloat()));
+      assertTrue(t, scanner.scanDouble(t));
+      assertEquals(t, Double.doubleToLongBits(Double.parseDouble(t)),
+          Double.doubleToLongBits(scanner.getDouble()));
+    }
+  }
+
+  @Test public void testRange() {
+    NumberScanner scanner = new NumberScanner();
+    assertTrue(scanner.scanInt("ab123cd", 2, 5));
+    assertEquals(123, scanner.getInt());
+    assertFalse(scanner.scanInt("ab123cd", 2, 6));
+    assertTrue(scanner.scanDouble("x-1.5,", 1, 5));
+    assertEquals(-1.5, scanner.getDouble(), 0);
+  }
+}
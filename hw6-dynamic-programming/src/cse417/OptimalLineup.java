@@ -34,17 +34,18 @@ public class OptimalLineup {
 
     // Parse the list of players from the file given in args[0]
     List<Player> players = new ArrayList<Player>();
-    CsvParser parser = new CsvParser(args[0], false, new Object[] {
+    CsvDictionary teams = new CsvDictionary();  // teams and opponents
+    CsvTable table = CsvSnapshot.load(args[0], false, new Object[] {
           // name, position, team, opponent
-          String.class, String.class, String.class, String.class,
+          String.class, new CsvDictionary(), teams, teams,
           // points, price, floor, ceiling, stddev
           Float.class, Integer.class, Float.class, Float.class, Float.class
         });
-    while (parser.hasNext()) {
-      String[] row = parser.next();
-      players.add(new Player(row[0], Position.valueOf(row[1]), row[2], row[3],
-          Integer.parseInt(row[5]), Float.parseFloat(row[4]),
-          Float.parseFloat(row[8])));
+    for (int i = 0; i < table.size(); i++) {
+      players.add(new Player(table.getString(i, 0),
+          Position.valueOf(table.getString(i, 1)), table.getString(i, 2),
+          table.getString(i, 3), table.getInt(i, 5), table.getFloat(i, 4),
+          table.getFloat(i, 8)));
     }
 
     List<Player> roster;
@@ -7,8 +7,11 @@ import org.junit.runners.Suite.SuiteClasses;
 /** Suite that includes all the tests for this homework assignment. */
 @RunWith(Suite.class)
 @SuiteClasses({
-    ArgParserTest.class, CsvParserTest.class, GraphUtilsTest.class,
-    TableRounderTest.class })
+    ArgParserTest.class, CsvDictionaryTest.class, CsvParserTest.class,
+    GraphUtilsTest.class, CsvSnapshotTest.class, CsvTableTest.class,
+    CsvTailerTest.class, EpochDayParserTest.class, MappedCsvParserTest.class,
+    NumberScannerTest.class, ParallelCsvParserTest.class,
+    ReadAheadReaderTest.class, TableRounderTest.class })
 public final class AllTests {
   // nothing needed here
 }
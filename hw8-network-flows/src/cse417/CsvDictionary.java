@@ -0,0 +1,150 @@
+package cse417;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns small integer codes to strings: the first distinct string seen gets
+ * code 0, the next gets 1, and so on. Passing one of these as the type of a
+ * column tells the loaders in {@code CsvTable} to store the code of each
+ * value rather than a string, which is much more compact for a column that
+ * repeats a few values (like team names) many times. The same dictionary can
+ * be used for several columns, or files, that hold the same kind of value, so
+ * that equal strings get equal codes in all of them.
+ * <p>
+ * Codes are looked up directly from the bytes of a mapped file, so no string
+ * is created for a value that has been seen before. This is not thread safe.
+ * (The parallel loaders build a separate dictionary for each piece of the
+ * file and only add to this one from the calling thread.)
+ */
+public final class CsvDictionary {
+
+  /** Strings with each code, in order. */
+  private final List<String> values = new ArrayList<String>();
+
+  /** Code of each string added so far. */
+  private final Map<String, Integer> codes = new HashMap<String, Integer>();
+
+  /**
+   * UTF-8 encoding of the string with each code, or null if that code is not
+   * in the byte table below.
+   */
+  private byte[][] encodings = new byte[16][];
+
+  /**
+   * Open-addressing hash table, indexed by a hash of the UTF-8 bytes, holding
+   * one more than the code of each string (so that 0 means empty). Its length
+   * is a power of two and is kept at least twice the number of codes.
+   */
+  private int[] slots = new int[32];
+
+  /** Returns the number of distinct strings given codes so far. */
+  public int size() { return values.size(); }
+
+  /** Returns the string with the given code. */
+  public String get(int code) { return values.get(code); }
+
+  /** Returns the code of the given string or -1 if it has none yet. */
+  public int indexOf(String value) {
+    Integer code = codes.get(value);
+    return (code != null) ? code : -1;
+  }
+
+  /** Returns the code of the given string, giving it a new one if needed. */
+  public int encode(String value) {
+    Integer code = codes.get(value);
+    return (code != null) ? code : add(value);
+  }
+
+  /** Returns all the strings with codes, in order of their codes. */
+  public String[] toArray() { return values.toArray(new String[0]); }
+
+  @Override public String toString() { return "dict" + values; }
+
+  /**
+   * Returns the code of the string in the given column of the row, giving it
+   * a new one if needed.
+   */
+  int encode(MappedCsvParser.Row row, int col) {
+    if (row.isEscaped(col))
+      return encode(row.getString(col));  // bytes are not the string's
+
+    int length = row.length(col);
+    int hash = 0;
+    for (int i = 0; i < length; i++)
+      hash = 31 * hash + row.byteAt(col, i);
+
+    int mask = slots.length - 1;
+    for (int slot = mix(hash) & mask; slots[slot] != 0;
+         slot = (slot + 1) & mask) {
+      byte[] bytes = encodings[slots[slot] - 1];
+      if (bytes.length == length && equals(row, col, bytes))
+        return slots[slot] - 1;
+    }
+
+    // Not seen in these bytes, but the string may already have a code if some
+    // other bytes (e.g., malformed UTF-8) decoded to the same one.
+    return encode(row.getString(col));
+  }
+
+  /** Gives a code to the given string, which must not have one yet. */
+  private int add(String value) {
+    int code = values.size();
+    values.add(value);
+    codes.put(value, code);
+
+    if (code == encodings.length)
+      encodings = Arrays.copyOf(encodings, 2 * code);
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    if (new String(bytes, StandardCharsets.UTF_8).equals(value)) {
+      encodings[code] = bytes;  // (otherwise, only found by string)
+      if (2 * (code + 1) > slots.length)
+        rehash(2 * slots.length);
+      insert(code);
+    }
+    return code;
+  }
+
+  /** Replaces the hash table with an empty one of the given size. */
+  private void rehash(int size) {
+    slots = new int[size];
+    for (int code = 0; code < values.size() - 1; code++) {
+      if (encodings[code] != null)
+        insert(code);
+    }
+  }
+
+  /** Adds the given code to the hash table. */
+  private void insert(int code) {
+    int hash = 0;
+    for (byte b : encodings[code])
+      hash = 31 * hash + b;
+
+    int mask = slots.length - 1;
+    int slot = mix(hash) & mask;
+    while (slots[slot] != 0)
+      slot = (slot + 1) & mask;
+    slots[slot] = code + 1;
+  }
+
+  /** Spreads the bits of the hash so that the low bits can be used. */
+  private static int mix(int hash) {
+    hash *= 0x9E3779B9;
+    return hash ^ (hash >>> 16);
+  }
+
+  /** Determines whether the given column of the row has exactly the bytes. */
+  private static boolean equals(
+      MappedCsvParser.Row row, int col, byte[] bytes) {
+    for (int i = 0; i < bytes.length; i++) {
+      if (row.byteAt(col, i) != bytes[i])
+        return false;
+    }
+    return true;
+  }
+}
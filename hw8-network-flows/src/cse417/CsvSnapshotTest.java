@@ -0,0 +1,240 @@
+package cse417;
+
+import java.io.*;
+import java.text.*;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class CsvSnapshotTest {
+
+  /** Format for the dates used in the test files. */
+  private static final DateTimeFormatter DATE_FORMAT =
+      DateTimeFormatter.ofPattern("dd-MMM-yy", Locale.US);
+
+  /** Column types used for most of the tests. */
+  private static final Object[] COL_TYPES = new Object[] {
+      String.class, Integer.class, Float.class, Double.class, DATE_FORMAT };
+
+  /** Content used for most of the tests. */
+  private static final String CONTENT = "Name,Int,Float,Double,Date\n" +
+      "abc,2,3.14,2.5,01-Jan-20\n" +
+      "\"d\"\"\u00e9f\",-3,.25,-1e3,05-Dec-17\n" +
+      ",0,0,0,02-Jan-20\n";
+
+  @Test public void testWritesAndReadsSnapshot() throws IOException {
+    File file = writeTempFile(CONTENT);
+    File snapFile = new File(file.getPath() + CsvSnapshot.SUFFIX);
+    assertFalse(snapFile.exists());
+
+    CsvTable parsed = CsvSnapshot.load(file.getPath(), true, COL_TYPES);
+    assertTrue(snapFile.exists());
+    checkContent(parsed);
+
+    long modified = snapFile.lastModified();
+    CsvTable loaded = CsvSnapshot.load(file.getPath(), true, COL_TYPES);
+    assertEquals(modified, snapFile.lastModified());
+    checkContent(loaded);
+  }
+
+  @Test public void testStaleSnapshot() throws IOException {
+    File file = writeTempFile(CONTENT);
+    CsvSnapshot.load(file.getPath(), true, COL_TYPES);
+
+    // Same length but different contents: the checksum must catch this.
+    long modified = file.lastModified();
+    writeFile(file, CONTENT.replace("abc", "xyz"));
+    file.setLastModified(modified + 2000);
+    CsvTable table = CsvSnapshot.load(file.getPath(), true, COL_TYPES);
+    assertEquals("xyz", table.getString(0, 0));
+
+    writeFile(file, CONTENT + "g,4,1,1,03-Jan-20\n");
+    table = CsvSnapshot.load(file.getPath(), true, COL_TYPES);
+    assertEquals(4, table.size());
+    assertEquals(4, table.getInt(3, 1));
+  }
+
+  @Test public void testTouchedFile() throws IOException {
+    File file = writeTempFile(CONTENT);
+    CsvSnapshot.load(file.getPath(), true, COL_TYPES);
+
+    // A new time but the same contents: the snapshot is still used, and the
+    // time stored in it is updated.
+    long modified = file.lastModified() + 2000;
+    file.setLastModified(modified);
+    checkContent(CsvSnapshot.load(file.getPath(), true, COL_TYPES));
+
+    // With the same length and time, the CSV is not read at all (which is
+    // why this finds the old contents).
+    writeFile(file, CONTENT.replace("abc", "xyz"));
+    file.setLastModified(modified);
+    checkContent(CsvSnapshot.load(file.getPath(), true, COL_TYPES));
+  }
+
+  @Test public void testDateFormatNotSnapshotted() throws IOException {
+    DateFormat format = new DelegatingFormat("yyyy-MM-dd");
+    File file = writeTempFile("Date\n1970-01-01\n");
+    CsvTable table = CsvSnapshot.load(file.getPath(), true,
+        new Object[] { format });
+    assertArrayEquals(new int[] {0}, table.copyEpochDayColumn(0));
+    assertFalse(new File(file.getPath() + CsvSnapshot.SUFFIX).exists());
+  }
+
+  @Test public void testDifferentSchema() throws IOException {
+    File file = writeTempFile(CONTENT);
+    CsvSnapshot.load(file.getPath(), true, COL_TYPES);
+
+    Object[] colTypes = new Object[] {
+        String.class, Integer.class, Double.class, Float.class, String.class };
+    CsvTable table = CsvSnapshot.load(file.getPath(), true, colTypes);
+    assertEquals(3.14, table.getDouble(0, 2), 1e-6);
+    assertEquals(2.5f, table.getFloat(0, 3), 0f);
+    assertEquals("01-Jan-20", table.getString(0, 4));
+
+    table = CsvSnapshot.load(file.getPath(), false, new Object[] {
+        String.class, String.class, String.class, String.class, String.class });
+    assertEquals(4, table.size());
+    assertEquals("Name", table.getString(0, 0));
+  }
+
+  @Test public void testSkipAndFilter() throws IOException {
+    File file = writeTempFile(CONTENT);
+    Object[] colTypes = new Object[] {
+        String.class, Integer.class, null, Double.class, DATE_FORMAT };
+    for (int pass = 0; pass < 2; pass++) {  // parsed, then from the snapshot
+      CsvTable table = CsvSnapshot.load(file.getPath(), true, colTypes, 1,
+          n -> n >= 0);
+      assertEquals(2, table.size());
+      assertEquals("abc", table.getString(0, 0));
+      assertEquals("", table.getString(1, 0));
+      assertArrayEquals(new int[] {2, 0}, table.copyIntColumn(1));
+      assertNull(table.getColumn(2));
+      assertArrayEquals(new double[] {2.5, 0}, table.copyDoubleColumn(3), 0);
+      assertArrayEquals(new int[] {18262, 18263}, table.copyEpochDayColumn(4));
+    }
+
+    // The same snapshot serves any predicate (or none).
+    File snapFile = new File(file.getPath() + CsvSnapshot.SUFFIX);
+    long modified = snapFile.lastModified();
+    CsvTable table = CsvSnapshot.load(file.getPath(), true, colTypes, 4,
+        day -> day < 18000);
+    assertEquals(1, table.size());
+    assertEquals("d\"\u00e9f", table.getString(0, 0));
+    assertEquals(3, CsvSnapshot.load(file.getPath(), true, colTypes).size());
+    assertEquals(modified, snapFile.lastModified());
+
+    try {
+      CsvSnapshot.load(file.getPath(), true, colTypes, 3, n -> true);
+      fail();
+    } catch (IllegalArgumentException ex) { /* pass */ }
+  }
+
+  @Test public void testCorruptSnapshot() throws IOException {
+    File file = writeTempFile(CONTENT);
+    File snapFile = new File(file.getPath() + CsvSnapshot.SUFFIX);
+    snapFile.deleteOnExit();
+    writeFile(snapFile, "not a snapshot");
+    checkContent(CsvSnapshot.load(file.getPath(), true, COL_TYPES));
+    checkContent(CsvSnapshot.load(file.getPath(), true, COL_TYPES));
+  }
+
+  @Test public void testBadTypes() throws IOException {
+    File file = writeTempFile("a,1\nb,x\n");
+    try {
+      CsvSnapshot.load(file.getPath(), false,
+          new Object[] { String.class, Integer.class });
+      fail();
+    } catch (RuntimeException ex) {
+      assertTrue(ex.getMessage().startsWith(
+          "CSV: line 2: expecting an integer in column 2"));
+    }
+    assertFalse(new File(file.getPath() + CsvSnapshot.SUFFIX).exists());
+  }
+
+  @Test public void testDictionary() throws IOException {
+    File file = writeTempFile(
+        "Off,Def,Week\nb,a,1\nc,b,2\n\"a\"\"\",c,3\nb,\u00e9,4\n");
+    String[] expected = null;
+    for (int pass = 0; pass < 3; pass++) {  // parsed, then from the snapshot
+      CsvDictionary teams = new CsvDictionary();
+      teams.encode("x");  // already in use elsewhere
+      CsvTable table = CsvSnapshot.load(file.getPath(), true,
+          new Object[] { teams, teams, Integer.class }, 2, n -> n != 2);
+      assertEquals(3, table.size());
+      assertEquals("a\"", table.getString(1, 0));
+      assertEquals("\u00e9", table.getString(2, 1));
+      assertEquals(teams.indexOf("b"), table.getCode(0, 0));
+      assertEquals(teams.indexOf("c"), table.getCode(1, 1));
+
+      // Codes are given in order of appearance, including filtered rows.
+      if (expected == null)
+        expected = teams.toArray();
+      assertArrayEquals(expected, teams.toArray());
+    }
+    assertArrayEquals(new String[] {"x", "b", "a", "c", "a\"", "\u00e9"},
+        expected);
+
+    // A dictionary column is stored differently from a string column.
+    CsvTable table = CsvSnapshot.load(file.getPath(), true,
+        new Object[] { String.class, String.class, Integer.class });
+    assertEquals("a\"", table.getString(2, 0));
+  }
+
+  /** A DateFormat that is not a SimpleDateFormat, though it uses one. */
+  @SuppressWarnings("serial")
+  private static class DelegatingFormat extends DateFormat {
+    private final SimpleDateFormat format;
+
+    DelegatingFormat(String pattern) {
+      format = new SimpleDateFormat(pattern, Locale.US);
+      format.setTimeZone(TimeZone.getTimeZone("UTC"));
+      setCalendar(format.getCalendar());
+      setNumberFormat(format.getNumberFormat());
+    }
+
+    @Override public StringBuffer format(Date date, StringBuffer buf,
+        FieldPosition pos) {
+      return format.format(date, buf, pos);
+    }
+
+    @Override public Date parse(String text, ParsePosition pos) {
+      return format.parse(text, pos);
+    }
+  }
+
+  /** Checks that the table has the values in CONTENT. */
+  private static void checkContent(CsvTable table) {
+    assertEquals(3, table.size());
+    assertEquals(5, table.getColumnCount());
+    assertEquals("abc", table.getString(0, 0));
+    assertEquals("d\"\u00e9f", table.getString(1, 0));
+    assertEquals("", table.getString(2, 0));
+    assertArrayEquals(new int[] {2, -3, 0}, table.copyIntColumn(1));
+    assertEquals(3.14f, table.getFloat(0, 2), 0f);
+    assertEquals(.25f, table.getFloat(1, 2), 0f);
+    assertArrayEquals(new double[] {2.5, -1000, 0},
+        table.copyDoubleColumn(3), 0);
+    assertArrayEquals(new int[] {18262, 17505, 18263},
+        table.copyEpochDayColumn(4));
+  }
+
+  /** Returns a new temporary file with the given content. */
+  private static File writeTempFile(String content) throws IOException {
+    File file = File.createTempFile("csv", ".csv");
+    file.deleteOnExit();
+    new File(file.getPath() + CsvSnapshot.SUFFIX).deleteOnExit();
+    writeFile(file, content);
+    return file;
+  }
+
+  /** Replaces the contents of the given file with the given content. */
+  private static void writeFile(File file, String content) throws IOException {
+    try (Writer out = new OutputStreamWriter(
+        new FileOutputStream(file), "UTF-8")) {
+      out.write(content);
+    }
+  }
+}
@@ -0,0 +1,596 @@
+package cse417;
+
+import java.io.IOException;
+
+import java.lang.reflect.Array;
+
+import java.nio.ByteBuffer;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+
+import java.time.format.DateTimeParseException;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * Read-only table holding the contents of a CSV file by column. Each typed
+ * column is parsed exactly once, while loading, and stored in a primitive
+ * array: {@code int[]} for Integer.class, {@code float[]} for Float.class,
+ * {@code double[]} for Double.class, and {@code int[]} of epoch days (days
+ * since 1970-01-01) for a DateFormat, DateTimeFormatter, or EpochDayParser.
+ * String.class columns are stored as strings. A column whose type is a
+ * {@code CsvDictionary} is stored as an {@code int[]} of the codes that
+ * dictionary gives its strings. Rows and columns are both numbered starting
+ * from zero.
+ * <p>
+ * A column whose type is given as null is skipped: its cells are not parsed
+ * or checked, and nothing is stored for it. In addition, the loaders can be
+ * given a predicate on the value of one int-valued (integer or date) key
+ * column. Rows whose key fails the predicate are dropped before any of their
+ * other columns are parsed.
+ */
+public final class CsvTable {
+
+  /** Number of values in each chunk of a column while it is being loaded. */
+  private static final int CHUNK_SIZE = 4096;
+
+  /** Types of the columns, as passed to {@code load}. */
+  private final Object[] colTypes;
+
+  /**
+   * Values of each column: an int[], float[], double[], or String[], or null
+   * if the column was skipped.
+   */
+  private final Object[] columns;
+
+  /** Number of rows in the table. */
+  private final int numRows;
+
+  /**
+   * Creates a table with the given columns, each of which must be an array
+   * of the type used for its column type (see {@code elementType}).
+   */
+  CsvTable(Object[] colTypes, Object[] columns) {
+    this.colTypes = colTypes;
+    this.columns = columns;
+    int numRows = 0;
+    for (Object column : columns) {
+      if (column != null)
+        numRows = Array.getLength(column);
+    }
+    this.numRows = numRows;
+  }
+
+  /**
+   * Returns a table with the contents of the given CSV file.
+   * @param fileName Name of the CSV file to load.
+   * @param hasHeader Whether the CVS starts with a header row, which should be
+   *   ignored.
+   * @param colTypes Type of each column, which can be String.class,
+   *   Integer.class, Float.class, Double.class, DateFormat,
+   *   DateTimeFormatter, EpochDayParser, or CsvDictionary, or null to skip
+   *   the column.
+   *   Every row must have exactly this many columns.
+   */
+  public static CsvTable load(String fileName, boolean hasHeader,
+      Object[] colTypes) throws IOException {
+    return load(fileName, hasHeader, colTypes, -1, null);
+  }
+
+  /**
+   * As above, but only keeps the rows where the value in column
+   * {@code keyCol}, which must be an integer or date column, passes the given
+   * predicate. (If the predicate is null, all rows are kept.)
+   */
+  public static CsvTable load(String fileName, boolean hasHeader,
+      Object[] colTypes, int keyCol, IntPredicate keep) throws IOException {
+    colTypes = EpochDayParser.wrapFormatters(colTypes);
+
+    // Parse with no column types since the builders check those as they go.
+    MappedCsvParser parser = new MappedCsvParser(fileName, hasHeader, null);
+    return new CsvTable(colTypes, loadColumns(parser, colTypes, keyCol, keep));
+  }
+
+  /**
+   * As above, but the file is split into pieces that are loaded in parallel
+   * by {@code ParallelCsvParser}. The result is the same.
+   */
+  public static CsvTable loadParallel(String fileName, boolean hasHeader,
+      Object[] colTypes) throws IOException {
+    return loadParallel(fileName, hasHeader, colTypes, -1, null);
+  }
+
+  /** As above but only keeping rows whose key passes the predicate. */
+  public static CsvTable loadParallel(String fileName, boolean hasHeader,
+      Object[] colTypes, int keyCol, IntPredicate keep) throws IOException {
+    return loadParallel(MappedCsvParser.map(fileName), hasHeader, colTypes,
+        keyCol, keep, ParallelCsvParser.MIN_CHUNK_SIZE);
+  }
+
+  /** As above but for the given data split into chunks of the given size. */
+  static CsvTable loadParallel(ByteBuffer data, boolean hasHeader,
+      Object[] colTypes, int minChunkSize) {
+    return loadParallel(data, hasHeader, colTypes, -1, null, minChunkSize);
+  }
+
+  /** As above but only keeping rows whose key passes the predicate. */
+  static CsvTable loadParallel(ByteBuffer data, boolean hasHeader,
+      Object[] colTypes, final int keyCol, final IntPredicate keep,
+      int minChunkSize) {
+    final Object[] types = EpochDayParser.wrapFormatters(colTypes);
+    List<CsvTable> chunks = ParallelCsvParser.parseChunks(
+        data, hasHeader, minChunkSize,
+        parser -> {
+          Object[] chunkTypes = ParallelCsvParser.copyColTypes(types);
+          return new CsvTable(chunkTypes,
+              loadColumns(parser, chunkTypes, keyCol, keep));
+        },
+        null);
+
+    // Each piece has its own dictionaries. Add their strings to the real
+    // ones piece by piece, which gives the same codes as loading in order.
+    for (CsvTable chunk : chunks) {
+      Map<Object, int[]> recodings = new IdentityHashMap<Object, int[]>();
+      for (int i = 0; i < types.length; i++) {
+        if (!(types[i] instanceof CsvDictionary))
+          continue;
+
+        CsvDictionary dict = (CsvDictionary) types[i];
+        int[] recoding = recodings.computeIfAbsent(chunk.colTypes[i],
+            d -> recode((CsvDictionary) d, dict));
+        int[] codes = (int[]) chunk.columns[i];
+        for (int j = 0; j < codes.length; j++)
+          codes[j] = recoding[codes[j]];
+      }
+    }
+
+    // Concatenate the pieces of each column.
+    Object[] columns = new Object[types.length];
+    for (int i = 0; i < columns.length; i++) {
+      if (types[i] == null)
+        continue;
+
+      int length = 0;
+      for (CsvTable chunk : chunks)
+        length += Array.getLength(chunk.columns[i]);
+
+      columns[i] = Array.newInstance(elementType(types[i]), length);
+      int index = 0;
+      for (CsvTable chunk : chunks) {
+        int n = Array.getLength(chunk.columns[i]);
+        System.arraycopy(chunk.columns[i], 0, columns[i], index, n);
+        index += n;
+      }
+    }
+    return new CsvTable(types, columns);
+  }
+
+  /**
+   * Returns an array mapping each code in the first dictionary to the code
+   * of the same string in the second, adding strings to the latter as needed.
+   */
+  private static int[] recode(CsvDictionary from, CsvDictionary to) {
+    int[] recoding = new int[from.size()];
+    for (int code = 0; code < recoding.length; code++)
+      recoding[code] = to.encode(from.get(code));
+    return recoding;
+  }
+
+  /**
+   * Returns the columns of all the remaining rows from the given parser,
+   * which should not be checking column types itself, whose value in column
+   * {@code keyCol} passes the given predicate (if it is non-null).
+   */
+  private static Object[] loadColumns(MappedCsvParser parser,
+      Object[] colTypes, int keyCol, IntPredicate keep) {
+    ColumnBuilder[] builders = new ColumnBuilder[colTypes.length];
+    for (int i = 0; i < colTypes.length; i++) {
+      if (colTypes[i] != null)
+        builders[i] = newBuilder(colTypes[i]);
+    }
+
+    IntColumnBuilder keyBuilder = null;
+    if (keep != null) {
+      checkKeyColumn(colTypes, keyCol);
+      keyBuilder = (IntColumnBuilder) builders[keyCol];
+    }
+
+    while (parser.hasNext()) {
+      MappedCsvParser.Row row = parser.next();
+      if (row.size() != colTypes.length) {
+        throw new RuntimeException(String.format(
+            "CSV: line %d: expected %d columns: %s", row.getLineNumber(),
+            colTypes.length, row.getLine()));
+      }
+
+      if (keyBuilder != null) {
+        int key = keyBuilder.parse(row, keyCol);
+        if (!keep.test(key))
+          continue;  // without parsing any of the other columns
+        keyBuilder.addValue(key);
+      }
+      for (int i = 0; i < builders.length; i++) {
+        if (builders[i] != null && builders[i] != keyBuilder)
+          builders[i].add(row, i);
+      }
+    }
+
+    Object[] columns = new Object[colTypes.length];
+    for (int i = 0; i < builders.length; i++) {
+      if (builders[i] != null)
+        columns[i] = builders[i].build();
+    }
+    return columns;
+  }
+
+  /**
+   * Returns a table with just the rows of this one whose value in column
+   * {@code keyCol}, which must be an integer or date column, passes the given
+   * predicate.
+   */
+  CsvTable filter(int keyCol, IntPredicate keep) {
+    checkKeyColumn(colTypes, keyCol);
+    int[] keys = (int[]) columns[keyCol];
+    int[] kept = new int[numRows];
+    int numKept = 0;
+    for (int row = 0; row < numRows; row++) {
+      if (keep.test(keys[row]))
+        kept[numKept++] = row;
+    }
+    if (numKept == numRows)
+      return this;
+
+    Object[] filtered = new Object[columns.length];
+    for (int i = 0; i < columns.length; i++)
+      filtered[i] = selectRows(columns[i], kept, numKept);
+    return new CsvTable(colTypes, filtered);
+  }
+
+  /**
+   * Returns an array of the same type as the given column (or null if it is
+   * null) holding its values at the first {@code count} indexes in rows.
+   */
+  private static Object selectRows(Object column, int[] rows, int count) {
+    if (column instanceof int[]) {
+      int[] values = (int[]) column, selected = new int[count];
+      for (int i = 0; i < count; i++)
+        selected[i] = values[rows[i]];
+      return selected;
+    } else if (column instanceof float[]) {
+      float[] values = (float[]) column, selected = new float[count];
+      for (int i = 0; i < count; i++)
+        selected[i] = values[rows[i]];
+      return selected;
+    } else if (column instanceof double[]) {
+      double[] values = (double[]) column, selected = new double[count];
+      for (int i = 0; i < count; i++)
+        selected[i] = values[rows[i]];
+      return selected;
+    } else if (column instanceof String[]) {
+      String[] values = (String[]) column, selected = new String[count];
+      for (int i = 0; i < count; i++)
+        selected[i] = values[rows[i]];
+      return selected;
+    } else {
+      assert column == null;
+      return null;
+    }
+  }
+
+  /** Returns the number of rows in the table. */
+  public int size() { return numRows; }
+
+  /** Returns the number of columns in the table. */
+  public int getColumnCount() { return columns.length; }
+
+  /** Returns the type of the given column. */
+  Object getColumnType(int col) { return colTypes[col]; }
+
+  /** Returns the array holding the given column. (Do not modify it.) */
+  Object getColumn(int col) { return columns[col]; }
+
+  /** Returns the value in the given row of an Integer.class column. */
+  public int getInt(int row, int col) {
+    assert colTypes[col] == Integer.class;
+    return ((int[]) columns[col])[row];
+  }
+
+  /** Returns the value in the given row of a Float.class column. */
+  public float getFloat(int row, int col) {
+    assert colTypes[col] == Float.class;
+    return ((float[]) columns[col])[row];
+  }
+
+  /** Returns the value in the given row of a Double.class column. */
+  public double getDouble(int row, int col) {
+    assert colTypes[col] == Double.class;
+    return ((double[]) columns[col])[row];
+  }
+
+  /** Returns the epoch day in the given row of a date column. */
+  public int getEpochDay(int row, int col) {
+    assert isDate(colTypes[col]);
+    return ((int[]) columns[col])[row];
+  }
+
+  /**
+   * Returns the value in the given row of a String.class column or the
+   * string with the code stored in a CsvDictionary column.
+   */
+  public String getString(int row, int col) {
+    if (colTypes[col] instanceof CsvDictionary)
+      return getDictionary(col).get(getCode(row, col));
+
+    assert colTypes[col] == String.class;
+    return ((String[]) columns[col])[row];
+  }
+
+  /** Returns the code in the given row of a CsvDictionary column. */
+  public int getCode(int row, int col) {
+    assert colTypes[col] instanceof CsvDictionary;
+    return ((int[]) columns[col])[row];
+  }
+
+  /** Returns the dictionary giving the strings of a CsvDictionary column. */
+  public CsvDictionary getDictionary(int col) {
+    return (CsvDictionary) colTypes[col];
+  }
+
+  /** Returns a copy of all the values in an Integer.class column. */
+  public int[] copyIntColumn(int col) {
+    assert colTypes[col] == Integer.class;
+    return ((int[]) columns[col]).clone();
+  }
+
+  /** Returns a copy of all the values in a Float.class column. */
+  public float[] copyFloatColumn(int col) {
+    assert colTypes[col] == Float.class;
+    return ((float[]) columns[col]).clone();
+  }
+
+  /** Returns a copy of all the values in a Double.class column. */
+  public double[] copyDoubleColumn(int col) {
+    assert colTypes[col] == Double.class;
+    return ((double[]) columns[col]).clone();
+  }
+
+  /** Returns a copy of all the epoch days in a date column. */
+  public int[] copyEpochDayColumn(int col) {
+    assert isDate(colTypes[col]);
+    return ((int[]) columns[col]).clone();
+  }
+
+  /** Returns a copy of all the codes in a CsvDictionary column. */
+  public int[] copyCodeColumn(int col) {
+    assert colTypes[col] instanceof CsvDictionary;
+    return ((int[]) columns[col]).clone();
+  }
+
+  /**
+   * Throws an exception unless the given column can be used as a key, i.e.,
+   * it is an integer or date column.
+   */
+  static void checkKeyColumn(Object[] colTypes, int keyCol) {
+    if (colTypes[keyCol] != Integer.class && !isDate(colTypes[keyCol])) {
+      throw new IllegalArgumentException(
+          "CSV: key column must hold integers or dates: " + (keyCol+1));
+    }
+  }
+
+  /** Determines whether the given column type is one for dates. */
+  static boolean isDate(Object colType) {
+    return colType instanceof DateFormat || colType instanceof EpochDayParser;
+  }
+
+  /**
+   * Returns the type of the array used to store a column of this type. (Not
+   * for skipped columns, which have no array.)
+   */
+  static Class<?> elementType(Object colType) {
+    if (colType == Float.class) {
+      return float.class;
+    } else if (colType == Double.class) {
+      return double.class;
+    } else if (colType == String.class) {
+      return String.class;
+    } else {
+      return int.class;  // integers, dates, and codes
+    }
+  }
+
+  /** Returns a builder for a column of the given type. */
+  private static ColumnBuilder newBuilder(Object colType) {
+    if (colType == String.class) {
+      return new StringColumnBuilder();
+    } else if (colType == Integer.class) {
+      return new IntColumnBuilder();
+    } else if (colType == Float.class) {
+      return new FloatColumnBuilder();
+    } else if (colType == Double.class) {
+      return new DoubleColumnBuilder();
+    } else if (colType instanceof DateFormat) {
+      return new DateColumnBuilder((DateFormat) colType);
+    } else if (colType instanceof EpochDayParser) {
+      return new EpochDayColumnBuilder((EpochDayParser) colType);
+    } else if (colType instanceof CsvDictionary) {
+      return new CodeColumnBuilder((CsvDictionary) colType);
+    } else {
+      throw new AssertionError(
+          "Unsupported column type: " + colType.getClass().getName());
+    }
+  }
+
+  /**
+   * Collects the values of one column. Values are stored in fixed-size chunks
+   * so that growing the column never copies what has been loaded already.
+   */
+  private static abstract class ColumnBuilder {
+
+    /** Number of values added so far. */
+    protected int size;
+
+    /** Parses and stores the value in the given column of the row. */
+    abstract void add(MappedCsvParser.Row row, int col);
+
+    /** Returns an array holding exactly the values added. */
+    abstract Object build();
+  }
+
+  /** Builder for any column stored as ints: integers, dates, and codes. */
+  private static class IntColumnBuilder extends ColumnBuilder {
+    private final List<int[]> chunks = new ArrayList<int[]>();
+
+    /** Returns the value in the given column of the row. */
+    int parse(MappedCsvParser.Row row, int col) {
+      try { return row.getInt(col); }
+      catch (NumberFormatException ex) {
+        throw new RuntimeException(String.format(
+            "CSV: line %d: expecting an integer in column %d: %s",
+            row.getLineNumber(), col+1, row.getLine()));
+      }
+    }
+
+    /** Stores the given (already parsed) value. */
+    final void addValue(int value) { addInt(chunks, size++, value); }
+
+    @Override final void add(MappedCsvParser.Row row, int col) {
+      addValue(parse(row, col));
+    }
+
+    @Override final Object build() { return buildInts(chunks, size); }
+  }
+
+  /** Builder for DateFormat columns, which are stored as epoch days. */
+  private static final class DateColumnBuilder extends IntColumnBuilder {
+    private final DateFormat format;
+
+    DateColumnBuilder(DateFormat format) { this.format = format; }
+
+    @Override int parse(MappedCsvParser.Row row, int col) {
+      try {
+        return (int) format.parse(row.getString(col)).toInstant()
+            .atZone(format.getTimeZone().toZoneId()).toLocalDate()
+            .toEpochDay();
+      } catch (ParseException ex) {
+        throw new RuntimeException(String.format(
+            "CSV: line %d: expecting a date (%s) in column %d: %s",
+            row.getLineNumber(), format, col+1, row.getLine()));
+      }
+    }
+  }
+
+  /** Builder for EpochDayParser columns. */
+  private static final class EpochDayColumnBuilder extends IntColumnBuilder {
+    private final EpochDayParser parser;
+
+    EpochDayColumnBuilder(EpochDayParser parser) { this.parser = parser; }
+
+    @Override int parse(MappedCsvParser.Row row, int col) {
+      try { return parser.parse(row.getString(col)); }
+      catch (DateTimeParseException ex) {
+        throw new RuntimeException(String.format(
+            "CSV: line %d: expecting a date (%s) in column %d: %s",
+            row.getLineNumber(), parser, col+1, row.getLine()));
+      }
+    }
+  }
+
+  /** Builder for CsvDictionary columns, which are stored as codes. */
+  private static final class CodeColumnBuilder extends IntColumnBuilder {
+    private final CsvDictionary dict;
+
+    CodeColumnBuilder(CsvDictionary dict) { this.dict = dict; }
+
+    @Override int parse(MappedCsvParser.Row row, int col) {
+      return dict.encode(row, col);
+    }
+  }
+
+  /** Builder for Float.class columns. */
+  private static final class FloatColumnBuilder extends ColumnBuilder {
+    private final List<float[]> chunks = new ArrayList<float[]>();
+
+    @Override void add(MappedCsvParser.Row row, int col) {
+      if (!row.scanFloat(col)) {
+        throw new RuntimeException(String.format(
+            "CSV: line %d: expecting a float in column %d: %s",
+            row.getLineNumber(), col+1, row.getLine()));
+      }
+      float value = row.getScanner().getFloat();
+      if (size % CHUNK_SIZE == 0)
+        chunks.add(new float[CHUNK_SIZE]);
+      chunks.get(size / CHUNK_SIZE)[size % CHUNK_SIZE] = value;
+      size++;
+    }
+
+    @Override Object build() {
+      float[] values = new float[size];
+      for (int i = 0; i < chunks.size(); i++) {
+        System.arraycopy(chunks.get(i), 0, values, i * CHUNK_SIZE,
+            Math.min(CHUNK_SIZE, size - i * CHUNK_SIZE));
+      }
+      return values;
+    }
+  }
+
+  /** Builder for Double.class columns. */
+  private static final class DoubleColumnBuilder extends ColumnBuilder {
+    private final List<double[]> chunks = new ArrayList<double[]>();
+
+    @Override void add(MappedCsvParser.Row row, int col) {
+      if (!row.scanDouble(col)) {
+        throw new RuntimeException(String.format(
+            "CSV: line %d: expecting a float in column %d: %s",
+            row.getLineNumber(), col+1, row.getLine()));
+      }
+      double value = row.getScanner().getDouble();
+      if (size % CHUNK_SIZE == 0)
+        chunks.add(new double[CHUNK_SIZE]);
+      chunks.get(size / CHUNK_SIZE)[size % CHUNK_SIZE] = value;
+      size++;
+    }
+
+    @Override Object build() {
+      double[] values = new double[size];
+      for (int i = 0; i < chunks.size(); i++) {
+        System.arraycopy(chunks.get(i), 0, values, i * CHUNK_SIZE,
+            Math.min(CHUNK_SIZE, size - i * CHUNK_SIZE));
+      }
+      return values;
+    }
+  }
+
+  /** Builder for String.class columns. */
+  private static final class StringColumnBuilder extends ColumnBuilder {
+    private final List<String> values = new ArrayList<String>();
+
+    @Override void add(MappedCsvParser.Row row, int col) {
+      values.add(row.getString(col));
+      size++;
+    }
+
+    @Override Object build() { return values.toArray(new String[size]); }
+  }
+
+  /** Stores the value at the given index of a chunked int column. */
+  private static void addInt(List<int[]> chunks, int index, int value) {
+    if (index % CHUNK_SIZE == 0)
+      chunks.add(new int[CHUNK_SIZE]);
+    chunks.get(index / CHUNK_SIZE)[index % CHUNK_SIZE] = value;
+  }
+
+  /** Returns the first size values in the chunks as one array. */
+  private static int[] buildInts(List<int[]> chunks, int size) {
+    int[] values = new int[size];
+    for (int i = 0; i < chunks.size(); i++) {
+      System.arraycopy(chunks.get(i), 0, values, i * CHUNK_SIZE,
+          Math.min(CHUNK_SIZE, size - i * CHUNK_SIZE));
+    }
+    return values;
+  }
+}
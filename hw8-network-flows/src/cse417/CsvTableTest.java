@@ -0,0 +1,194 @@
+package cse417;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.*;
+import java.util.*;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class CsvTableTest {
+
+  /** Format for the dates used in the data files. */
+  private static final DateFormat DATE_FORMAT =
+      new SimpleDateFormat("dd-MMM-yy");
+
+  @Test public void testEmpty() {
+    CsvTable table = load("A,B", true, new Object[] {
+        String.class, Integer.class });
+    assertEquals(0, table.size());
+    assertEquals(2, table.getColumnCount());
+  }
+
+  @Test public void testWithTypes() {
+    CsvTable table = load(
+        "abc,2,3.14,2.5,01-Jan-70\ndef,-3,\".25\",-1e3,05-Dec-87",
+        false, new Object[] { String.class, Integer.class, Float.class,
+            Double.class, DATE_FORMAT });
+    assertEquals(2, table.size());
+    assertEquals("abc", table.getString(0, 0));
+    assertEquals("def", table.getString(1, 0));
+    assertEquals(2, table.getInt(0, 1));
+    assertEquals(-3, table.getInt(1, 1));
+    assertEquals(3.14f, table.getFloat(0, 2), 0f);
+    assertEquals(.25f, table.getFloat(1, 2), 0f);
+    assertEquals(2.5, table.getDouble(0, 3), 0);
+    assertEquals(-1000, table.getDouble(1, 3), 0);
+    assertEquals(0, table.getEpochDay(0, 4));
+    assertEquals(6547, table.getEpochDay(1, 4));
+
+    assertArrayEquals(new int[] {2, -3}, table.copyIntColumn(1));
+    assertArrayEquals(new double[] {2.5, -1000}, table.copyDoubleColumn(3), 0);
+  }
+
+  @Test public void testManyChunks() {
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 10000; i++)
+      content.append(i).append(',').append(i / 4.0).append('\n');
+    CsvTable table = load(content.toString(), false,
+        new Object[] { Integer.class, Double.class });
+    assertEquals(10000, table.size());
+    for (int i = 0; i < 10000; i++) {
+      assertEquals(i, table.getInt(i, 0));
+      assertEquals(i / 4.0, table.getDouble(i, 1), 0);
+    }
+  }
+
+  @Test public void testBadTypes() {
+    try { load("3.14", false, new Object[] { Integer.class }); fail(); }
+    catch (RuntimeException ex) { /* pass */ }
+
+    try { load("abc", false, new Object[] { Double.class }); fail(); }
+    catch (RuntimeException ex) { /* pass */ }
+
+    try { load("1,2", false, new Object[] { Integer.class }); fail(); }
+    catch (RuntimeException ex) { /* pass */ }
+
+    try {
+      load("01-Fredcember-78", false, new Object[] { DATE_FORMAT });
+      fail();
+    } catch (RuntimeException ex) { /* pass */ }
+  }
+
+  @Test public void testSkipAndFilter() throws IOException {
+    StringBuilder content = new StringBuilder("Name,Week,Junk,Val\n");
+    for (int i = 0; i < 1000; i++) {
+      content.append("n").append(i).append(',').append(i % 17).append(',')
+          .append(i % 5 == 0 ? "\"not, a number\"" : "x").append(',')
+          .append(i / 4.0).append('\n');
+    }
+    Object[] colTypes = new Object[] {
+        String.class, Integer.class, null, Double.class };
+    File file = writeTempFile(content.toString());
+
+    CsvTable all = CsvTable.load(file.getPath(), true, colTypes);
+    assertEquals(1000, all.size());
+    assertEquals(4, all.getColumnCount());
+    assertNull(all.getColumn(2));
+
+    ByteBuffer data = ByteBuffer.wrap(
+        content.toString().getBytes(StandardCharsets.UTF_8));
+    for (boolean parallel : new boolean[] { false, true }) {
+      CsvTable table = parallel ?
+          CsvTable.loadParallel(data, true, colTypes, 1,
+              week -> 3 <= week && week <= 5, 100) :
+          CsvTable.load(file.getPath(), true, colTypes, 1,
+              week -> 3 <= week && week <= 5);
+      int row = 0;
+      for (int i = 0; i < 1000; i++) {
+        if (i % 17 < 3 || i % 17 > 5)
+          continue;
+        assertEquals("n" + i, table.getString(row, 0));
+        assertEquals(i % 17, table.getInt(row, 1));
+        assertEquals(i / 4.0, table.getDouble(row, 3), 0);
+        row++;
+      }
+      assertEquals(row, table.size());
+    }
+
+    // Bad values in rows that are filtered out are never parsed.
+    try {
+      CsvTable.load(writeTempFile("1,2\n2,x\n3,4").getPath(), false,
+          new Object[] { Integer.class, Integer.class }, 0, k -> true);
+      fail();
+    } catch (RuntimeException ex) { /* pass */ }
+    CsvTable table = CsvTable.load(writeTempFile("1,2\n2,x\n3,4").getPath(),
+        false, new Object[] { Integer.class, Integer.class }, 0, k -> k != 2);
+    assertArrayEquals(new int[] {2, 4}, table.copyIntColumn(1));
+
+    try {
+      CsvTable.load(file.getPath(), true, colTypes, 2, k -> true);
+      fail();
+    } catch (IllegalArgumentException ex) { /* pass: column is skipped */ }
+  }
+
+  @Test public void testDictionary() throws IOException {
+    StringBuilder content = new StringBuilder("Off,Def,Week\n");
+    for (int i = 0; i < 1000; i++) {
+      content.append("t").append(i * 7 % 23).append(",t").append(i % 31)
+          .append(',').append(i % 17).append('\n');
+    }
+    File file = writeTempFile(content.toString());
+    ByteBuffer data = ByteBuffer.wrap(
+        content.toString().getBytes(StandardCharsets.UTF_8));
+
+    CsvDictionary expected = null;
+    for (boolean parallel : new boolean[] { false, true }) {
+      CsvDictionary teams = new CsvDictionary();
+      Object[] colTypes = new Object[] { teams, teams, Integer.class };
+      CsvTable table = parallel ?
+          CsvTable.loadParallel(data, true, colTypes, 2,
+              week -> week != 5, 100) :
+          CsvTable.load(file.getPath(), true, colTypes, 2,
+              week -> week != 5);
+      assertSame(teams, table.getDictionary(0));
+      assertEquals(31, teams.size());
+
+      int row = 0;
+      for (int i = 0; i < 1000; i++) {
+        if (i % 17 == 5)
+          continue;
+        assertEquals("t" + (i * 7 % 23), table.getString(row, 0));
+        assertEquals(teams.indexOf("t" + (i % 31)), table.getCode(row, 1));
+        row++;
+      }
+      assertEquals(row, table.size());
+
+      // Codes are given in order of appearance, however the file is split.
+      if (expected == null)
+        expected = teams;
+      assertArrayEquals(expected.toArray(), teams.toArray());
+    }
+
+    try {
+      CsvTable.load(file.getPath(), true, new Object[] {
+          new CsvDictionary(), Integer.class, Integer.class }, 0, k -> true);
+      fail();
+    } catch (IllegalArgumentException ex) { /* pass: not an int column */ }
+  }
+
+  /** Returns the table produced by loading the given content as a CSV. */
+  private static CsvTable load(String content, boolean hasHeader,
+      Object[] colTypes) {
+    try {
+      return CsvTable.load(writeTempFile(content).getPath(), hasHeader,
+          colTypes);
+    } catch (IOException ex) {
+      throw new RuntimeException(ex);  // should not happen here
+    }
+  }
+
+  /** Returns a new temporary file with the given content. */
+  private static File writeTempFile(String content) throws IOException {
+    File file = File.createTempFile("csv", ".csv");
+    file.deleteOnExit();
+    try (Writer out = new OutputStreamWriter(
+        new FileOutputStream(file), "UTF-8")) {
+      out.write(content);
+    }
+    return file;
+  }
+}
@@ -0,0 +1,82 @@
+package cse417;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Parses dates into epoch days (days since 1970-01-01) using a
+ * {@code DateTimeFormatter}. Recently parsed strings are remembered in a
+ * small cache, since date columns tend to repeat the same few values many
+ * times in a row. Unlike {@code SimpleDateFormat}, this is thread safe.
+ * <p>
+ * Either a {@code DateTimeFormatter} or one of these can be used as the type
+ * of a date column in the CSV parsers.
+ */
+public final class EpochDayParser {
+
+  /** Number of entries in the cache. This must be a power of two. */
+  private static final int CACHE_SIZE = 256;
+
+  /** Records the result of parsing one string. */
+  private static final class Entry {
+    final String text;
+    final int epochDay;
+
+    Entry(String text, int epochDay) {
+      this.text = text;
+      this.epochDay = epochDay;
+    }
+  }
+
+  /** Format of the dates to be parsed. */
+  private final DateTimeFormatter format;
+
+  /**
+   * Cache of recently parsed strings, indexed by their hash code. Entries are
+   * immutable, so other threads will see either null or a complete entry
+   * (possibly an older one) in each slot, both of which are fine.
+   */
+  private final Entry[] cache = new Entry[CACHE_SIZE];
+
+  /** Creates a parser of dates in the given format. */
+  public EpochDayParser(DateTimeFormatter format) {
+    this.format = format;
+  }
+
+  /** Returns the format of the dates parsed. */
+  public DateTimeFormatter getFormat() { return format; }
+
+  /**
+   * Returns the epoch day of the date in the given text.
+   * @throws DateTimeParseException if the text is not a date in the format
+   */
+  public int parse(String text) {
+    int slot = text.hashCode() & (CACHE_SIZE - 1);
+    Entry entry = cache[slot];
+    if (entry != null && entry.text.equals(text))
+      return entry.epochDay;
+
+    int epochDay = (int) LocalDate.parse(text, format).toEpochDay();
+    cache[slot] = new Entry(text, epochDay);
+    return epochDay;
+  }
+
+  @Override public String toString() { return format.toString(); }
+
+  /**
+   * Returns a copy of the given column types with each DateTimeFormatter
+   * replaced by an EpochDayParser for that format (or null if given null).
+   */
+  static Object[] wrapFormatters(Object[] colTypes) {
+    if (colTypes == null)
+      return null;
+
+    Object[] copy = colTypes.clone();
+    for (int i = 0; i < copy.length; i++) {
+      if (copy[i] instanceof DateTimeFormatter)
+        copy[i] = new EpochDayParser((DateTimeFormatter) copy[i]);
+    }
+    return copy;
+  }
+}
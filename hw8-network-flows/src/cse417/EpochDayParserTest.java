@@ -0,0 +1,66 @@
+package cse417;
+
+import java.io.*;
+import java.time.*;
+import java.time.format.*;
+import java.util.*;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class EpochDayParserTest {
+
+  /** Format for the dates used in the tests. */
+  private static final DateTimeFormatter DATE_FORMAT =
+      DateTimeFormatter.ofPattern("yyyy-MM-dd", Locale.US);
+
+  @Test public void testParse() {
+    EpochDayParser parser = new EpochDayParser(DATE_FORMAT);
+    assertEquals(0, parser.parse("1970-01-01"));
+    assertEquals(6547, parser.parse("1987-12-05"));
+    assertEquals(-1, parser.parse("1969-12-31"));
+    assertEquals(0, parser.parse("1970-01-01"));  // now from the cache
+  }
+
+  @Test public void testManyDates() {
+    EpochDayParser parser = new EpochDayParser(DATE_FORMAT);
+    for (int round = 0; round < 2; round++) {
+      for (int day = 0; day < 2000; day += 3) {
+        String text = LocalDate.ofEpochDay(day).format(DATE_FORMAT);
+        assertEquals(day, parser.parse(text));
+      }
+    }
+  }
+
+  @Test public void testBadDates() {
+    EpochDayParser parser = new EpochDayParser(DATE_FORMAT);
+    for (String text : new String[] { "", "1970-13-01", "01-Jan-70" }) {
+      try { parser.parse(text); fail(); }
+      catch (DateTimeParseException ex) { /* pass */ }
+    }
+  }
+
+  @Test public void testCsvColumns() throws IOException {
+    String content = "1970-01-02,a\n1987-12-05,b\n";
+    CsvParser parser = new CsvParser(new StringReader(content), false,
+        new Object[] { DATE_FORMAT, String.class });
+    assertArrayEquals(new String[] {"1970-01-02", "a"}, parser.next());
+    assertArrayEquals(new String[] {"1987-12-05", "b"}, parser.next());
+
+    try {
+      new CsvParser(new StringReader("1970-1-2"), false,
+          new Object[] { DATE_FORMAT }).next();
+      fail();
+    } catch (RuntimeException ex) { /* pass */ }
+
+    File file = File.createTempFile("csv", ".csv");
+    file.deleteOnExit();
+    try (Writer out = new FileWriter(file)) {
+      out.write(content);
+    }
+    CsvTable table = CsvTable.load(file.getPath(), false,
+        new Object[] { DATE_FORMAT, String.class });
+    assertArrayEquals(new int[] {1, 6547}, table.copyEpochDayColumn(0));
+  }
+}
@@ -0,0 +1,282 @@
+package cse417;
+
+/**
+ * Checks and converts numbers in text without throwing exceptions. Each
+ * {@code scan} method reports whether the text is a valid number by its
+ * return value and, if it is, leaves the number in this object to be read by
+ * the matching getter, so that the text need only be examined once.
+ * <p>
+ * The accepted text is exactly that accepted by {@code Integer.parseInt},
+ * {@code Float.parseFloat}, and {@code Double.parseDouble}, and the values
+ * are the same as those methods return. Plain decimals are converted here
+ * when that can be done with exact arithmetic. Otherwise, the (already
+ * checked) text is handed to the JDK to do the rounding.
+ */
+public final class NumberScanner {
+
+  /** Largest number of significant digits that always fit in a long. */
+  private static final int MAX_DIGITS = 18;
+
+  /** Powers of ten that are exactly representable as floats. */
+  private static final float[] FLOAT_POWERS_OF_TEN = {
+      1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+    };
+
+  /** Powers of ten that are exactly representable as doubles. */
+  private static final double[] DOUBLE_POWERS_OF_TEN = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+      1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+  // Results of the last successful scan.
+  private int intValue;
+  private float floatValue;
+  private double doubleValue;
+
+  // Parts of the last decimal scanned by scanDecimal. The value is
+  // (-1)^negative * mantissa * 10^exponent, exactly if exact is true.
+  private boolean negative;
+  private long mantissa;
+  private int exponent;
+  private boolean exact;
+
+  /** Returns the value found by the last successful call to scanInt. */
+  public int getInt() { return intValue; }
+
+  /** Returns the value found by the last successful call to scanFloat. */
+  public float getFloat() { return floatValue; }
+
+  /** Returns the value found by the last successful call to scanDouble. */
+  public double getDouble() { return doubleValue; }
+
+  /** As below but for all of the given text. */
+  public boolean scanInt(CharSequence text) {
+    return scanInt(text, 0, text.length());
+  }
+
+  /**
+   * Determines whether text[start..end-1] is an integer, as accepted by
+   * {@code Integer.parseInt}, and if so, records its value for getInt.
+   */
+  public boolean scanInt(CharSequence text, int start, int end) {
+    if (start >= end)
+      return false;
+
+    int index = start;
+    boolean negative = false;
+    char first = text.charAt(index);
+    if (first == '-' || first == '+') {
+      negative = (first == '-');
+      if (++index == end)
+        return false;
+    }
+
+    // Accumulate negatively, as Integer.parseInt does, so that MIN_VALUE can
+    // be represented without overflow.
+    int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+    int minBeforeShift = limit / 10;
+    int result = 0;
+    while (index < end) {
+      char c = text.charAt(index++);
+      int digit = (c <= '9') ? c - '0' : Character.digit(c, 10);
+      if (digit < 0 || 9 < digit || result < minBeforeShift)
+        return false;
+      result *= 10;
+      if (result < limit + digit)
+        return false;
+      result -= digit;
+    }
+    intValue = negative ? result : -result;
+    return true;
+  }
+
+  /** As below but for all of the given text. */
+  public boolean scanFloat(CharSequence text) {
+    return scanFloat(text, 0, text.length());
+  }
+
+  /**
+   * Determines whether text[start..end-1] is a number, as accepted by
+   * {@code Float.parseFloat}, and if so, records its value for getFloat.
+   */
+  public boolean scanFloat(CharSequence text, int start, int end) {
+    int kind = scanDecimal(text, start, end);
+    if (kind == INVALID) {
+      return false;
+    } else if (kind == NAN) {
+      floatValue = Float.NaN;
+    } else if (kind == INFINITY) {
+      floatValue =
+          negative ? Float.NEGATIVE_INFINITY : Float.POSITIVE_INFINITY;
+    } else if (kind == DECIMAL && exact && mantissa < (1 << 24) &&
+               -FLOAT_POWERS_OF_TEN.length < exponent &&
+               exponent < FLOAT_POWERS_OF_TEN.length) {
+      // Both operands are exact, so the one rounding is the correct one.
+      float value = (exponent < 0) ?
+          (float) mantissa / FLOAT_POWERS_OF_TEN[-exponent] :
+          (float) mantissa * FLOAT_POWERS_OF_TEN[exponent];
+      floatValue = negative ? -value : value;
+    } else {
+      try {
+        floatValue =
+            Float.parseFloat(text.subSequence(start, end).toString());
+      } catch (NumberFormatException ex) {
+        return false;  // (only possible for hexadecimal)
+      }
+    }
+    return true;
+  }
+
+  /** As below but for all of the given text. */
+  public boolean scanDouble(CharSequence text) {
+    return scanDouble(text, 0, text.length());
+  }
+
+  /**
+   * Determines whether text[start..end-1] is a number, as accepted by
+   * {@code Double.parseDouble}, and if so, records its value for getDouble.
+   */
+  public boolean scanDouble(CharSequence text, int start, int end) {
+    int kind = scanDecimal(text, start, end);
+    if (kind == INVALID) {
+      return false;
+    } else if (kind == NAN) {
+      doubleValue = Double.NaN;
+    } else if (kind == INFINITY) {
+      doubleValue =
+          negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+    } else if (kind == DECIMAL && exact && mantissa < (1L << 53) &&
+               -DOUBLE_POWERS_OF_TEN.length < exponent &&
+               exponent < DOUBLE_POWERS_OF_TEN.length) {
+      // Both operands are exact, so the one rounding is the correct one.
+      double value = (exponent < 0) ?
+          (double) mantissa / DOUBLE_POWERS_OF_TEN[-exponent] :
+          (double) mantissa * DOUBLE_POWERS_OF_TEN[exponent];
+      doubleValue = negative ? -value : value;
+    } else {
+      try {
+        doubleValue =
+            Double.parseDouble(text.subSequence(start, end).toString());
+      } catch (NumberFormatException ex) {
+        return false;  // (only possible for hexadecimal)
+      }
+    }
+    return true;
+  }
+
+  // Kinds of text recognized by scanDecimal.
+  private static final int INVALID = 0;
+  private static final int DECIMAL = 1;
+  private static final int NAN = 2;
+  private static final int INFINITY = 3;
+  private static final int HEX = 4;
+
+  /**
+   * Scans text[start..end-1] as a floating point number in the syntax of
+   * {@code Double.parseDouble} and returns which kind of number it is. For a
+   * DECIMAL, this fills in the fields describing its value. A HEX number is
+   * only recognized by its prefix; the caller must check the rest.
+   */
+  private int scanDecimal(CharSequence text, int start, int end) {
+    // Ignore leading and trailing whitespace, as String.trim would.
+    while (start < end && text.charAt(start) <= ' ')
+      start++;
+    while (start < end && text.charAt(end - 1) <= ' ')
+      end--;
+
+    int index = start;
+    negative = false;
+    if (index < end &&
+        (text.charAt(index) == '-' || text.charAt(index) == '+'))
+      negative = (text.charAt(index++) == '-');
+    if (index == end)
+      return INVALID;
+
+    char c = text.charAt(index);
+    if (c == 'N')
+      return matches(text, index, end, "NaN") ? NAN : INVALID;
+    if (c == 'I')
+      return matches(text, index, end, "Infinity") ? INFINITY : INVALID;
+    if (c == '0' && index + 1 < end &&
+        (text.charAt(index + 1) == 'x' || text.charAt(index + 1) == 'X'))
+      return HEX;
+
+    mantissa = 0;
+    exponent = 0;
+    exact = true;
+    int numDigits = 0;     // all digits seen
+    int numSignificant = 0;  // digits stored in the mantissa
+    boolean seenPoint = false;
+    for (; index < end; index++) {
+      c = text.charAt(index);
+      if ('0' <= c && c <= '9') {
+        numDigits++;
+        if (mantissa == 0 && c == '0') {
+          if (seenPoint)
+            exponent--;  // leading zero after the point
+        } else if (numSignificant < MAX_DIGITS) {
+          mantissa = 10 * mantissa + (c - '0');
+          numSignificant++;
+          if (seenPoint)
+            exponent--;
+        } else {
+          if (c != '0')
+            exact = false;  // (only the rounding step can use this digit)
+          if (!seenPoint)
+            exponent++;
+        }
+      } else if (c == '.' && !seenPoint) {
+        seenPoint = true;
+      } else {
+        break;
+      }
+    }
+    if (numDigits == 0)
+      return INVALID;
+
+    if (index < end &&
+        (text.charAt(index) == 'e' || text.charAt(index) == 'E')) {
+      index++;
+      boolean negativeExponent = false;
+      if (index < end &&
+          (text.charAt(index) == '-' || text.charAt(index) == '+'))
+        negativeExponent = (text.charAt(index++) == '-');
+      if (index == end)
+        return INVALID;
+
+      int value = 0;
+      int expStart = index;
+      for (; index < end; index++) {
+        c = text.charAt(index);
+        if (c < '0' || '9' < c)
+          break;
+        if (value < 100000)
+          value = 10 * value + (c - '0');
+        else
+          exact = false;  // far out of range either way
+      }
+      if (index == expStart)
+        return INVALID;
+      exponent += negativeExponent ? -value : value;
+    }
+
+    if (index < end) {
+      c = text.charAt(index++);
+      if (c != 'f' && c != 'F' && c != 'd' && c != 'D')
+        return INVALID;
+    }
+    return (index == end) ? DECIMAL : INVALID;
+  }
+
+  /** Determines whether text[start..end-1] is exactly the given word. */
+  private static boolean matches(
+      CharSequence text, int start, int end, String word) {
+    if (end - start != word.length())
+      return false;
+    for (int i = 0; i < word.length(); i++) {
+      if (text.charAt(start + i) != word.charAt(i))
+        return false;
+    }
+    return true;
+  }
+}
@@ -0,0 +1,80 @@
+package cse417;
+
+import java.util.Random;
+
+/**
+ * Program that measures how many CSV cells per second can be checked and
+ * converted to numbers using {@code NumberScanner} versus the JDK parsers,
+ * which report bad values by throwing. Cells are tried in three mixes: clean
+ * integers, clean decimals, and decimals where one cell in three is bad.
+ */
+public class NumberScannerBenchmark {
+
+  /** Number of times each measurement is repeated. (The best is kept.) */
+  private static final int TRIALS = 7;
+
+  /** Entry point for a program to run the benchmark. */
+  public static void main(String[] args) {
+    ArgParser argParser = new ArgParser("NumberScannerBenchmark");
+    argParser.addOption("cells", Integer.class);
+    args = argParser.parseArgs(args, 0, 0);
+    int numCells = argParser.hasOption("cells") ?
+        argParser.getIntegerOption("cells") : 1000000;
+
+    Random rand = new Random(417);
+    String[] ints = new String[numCells];
+    String[] decimals = new String[numCells];
+    String[] dirty = new String[numCells];
+    for (int i = 0; i < numCells; i++) {
+      ints[i] = Integer.toString(rand.nextInt(2000000) - 1000000);
+      decimals[i] = String.format("%.2f", 200 * rand.nextDouble() - 100);
+      dirty[i] = (i % 3 == 0) ? "n/a" : decimals[i];
+    }
+
+    System.out.println("                      JDK    scanner   (M cells/s)");
+    report("clean integers", ints, true);
+    report("clean decimals", decimals, false);
+    report("1/3 bad decimals", dirty, false);
+  }
+
+  /** Prints the rates for checking the given cells with both methods. */
+  private static void report(String name, String[] cells, boolean isInt) {
+    double jdk = 0, scanner = 0;
+    for (int i = 0; i < TRIALS; i++) {
+      jdk = Math.max(jdk, rate(cells, isInt, false));
+      scanner = Math.max(scanner, rate(cells, isInt, true));
+    }
+    System.out.printf("%-18s %8.1f %8.1f   (%.1fx)%n",
+        name, jdk / 1e6, scanner / 1e6, scanner / jdk);
+  }
+
+  /**
+   * Returns the number of cells per second checked and converted either by
+   * the scanner or by the JDK (catching exceptions as CsvParser used to).
+   */
+  private static double rate(String[] cells, boolean isInt,
+      boolean useScanner) {
+    NumberScanner scanner = new NumberScanner();
+    long start = System.nanoTime();
+    double sum = 0;
+    int numBad = 0;
+    for (String cell : cells) {
+      if (useScanner) {
+        if (isInt ? scanner.scanInt(cell) : scanner.scanFloat(cell))
+          sum += isInt ? scanner.getInt() : scanner.getFloat();
+        else
+          numBad++;
+      } else {
+        try {
+          sum += isInt ? Integer.parseInt(cell) : Float.parseFloat(cell);
+        } catch (NumberFormatException ex) {
+          numBad++;
+        }
+      }
+    }
+    long elapsed = System.nanoTime() - start;
+    if (sum == 0.5 && numBad < 0)
+      System.out.println();  // (keeps the results from being optimized away)
+    return cells.length / (elapsed / 1e9);
+  }
+}
@@ -0,0 +1,110 @@
+package cse417;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.*;
+import java.util.*;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class ParallelCsvParserTest {
+
+  /** Format for the dates used in the data files. */
+  private static final DateFormat DATE_FORMAT =
+      new SimpleDateFormat("dd-MMM-yy");
+
+  @Test public void testSameAsCsvParser() {
+    String[] contents = new String[] {
+        "", "a", "a\nb\nc", "a,b,c\nd,e,f\ng,h,i\n", "a,b,c\r\nd,e,f\r\n",
+        "a,b\rc,d\r\re,f", "\n\na\n", "\"a,\"\"b\"\"\",\"c\",d\n\"e\"\n"
+    };
+    for (String content : contents) {
+      for (boolean hasHeader : new boolean[] { false, true }) {
+        List<String[]> expected = parseRowsSequential(content, hasHeader, null);
+        for (int size = 1; size <= content.length() + 1; size++) {
+          List<String[]> actual = parseRows(content, hasHeader, null, size);
+          assertEquals(expected.size(), actual.size());
+          for (int i = 0; i < expected.size(); i++)
+            assertArrayEquals(expected.get(i), actual.get(i));
+        }
+      }
+    }
+  }
+
+  @Test public void testWithTypes() {
+    StringBuilder content = new StringBuilder("Name,Num,Val,Date\n");
+    for (int i = 0; i < 500; i++)
+      content.append("n" + i + "," + i + "," + (i / 8.) + ",01-Jan-78\n");
+    Object[] colTypes = new Object[] {
+        String.class, Integer.class, Float.class, DATE_FORMAT };
+    List<String[]> expected =
+        parseRowsSequential(content.toString(), true, colTypes);
+    List<String[]> actual = parseRows(content.toString(), true, colTypes, 64);
+    assertEquals(500, actual.size());
+    for (int i = 0; i < expected.size(); i++)
+      assertArrayEquals(expected.get(i), actual.get(i));
+  }
+
+  @Test public void testSameErrors() {
+    String good = "a,1\nb,2\nc,3\n";
+    String[] contents = new String[] {
+        good + good + "d,x\n" + good + "e,y\n",
+        good + "\"d,4\n" + good,
+        good + good + good + "f\n",
+    };
+    Object[] colTypes = new Object[] { String.class, Integer.class };
+    for (String content : contents) {
+      String expected = null;
+      try { parseRowsSequential(content, true, colTypes); fail(); }
+      catch (RuntimeException ex) { expected = ex.getMessage(); }
+      assertTrue(expected.startsWith("CSV: line "));
+
+      for (int chunkSize = 1; chunkSize < content.length(); chunkSize += 3) {
+        try { parseRows(content, true, colTypes, chunkSize); fail(); }
+        catch (RuntimeException ex) { assertEquals(expected, ex.getMessage()); }
+      }
+    }
+  }
+
+  @Test public void testLoadTable() {
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 1000; i++)
+      content.append(i % 7 == 0 ? "\"x\"\"" + i + "\"" : "y").append(',')
+          .append(i).append(',').append(i / 4.0).append('\n');
+    ByteBuffer data =
+        ByteBuffer.wrap(content.toString().getBytes(StandardCharsets.UTF_8));
+    CsvTable table = CsvTable.loadParallel(data, false, new Object[] {
+        String.class, Integer.class, Double.class }, 100);
+    assertEquals(1000, table.size());
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(i % 7 == 0 ? "x\"" + i : "y", table.getString(i, 0));
+      assertEquals(i, table.getInt(i, 1));
+      assertEquals(i / 4.0, table.getDouble(i, 2), 0);
+    }
+  }
+
+  /** Returns the rows produced by parsing the content in parallel. */
+  private static List<String[]> parseRows(String content, boolean hasHeader,
+      Object[] colTypes, int chunkSize) {
+    ByteBuffer data = ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8));
+    return ParallelCsvParser.parseAll(data, hasHeader, colTypes, chunkSize);
+  }
+
+  /** Returns the rows produced by parsing the content with CsvParser. */
+  private static List<String[]> parseRowsSequential(
+        String content, boolean hasHeader, Object[] colTypes) {
+    List<String[]> rows = new ArrayList<String[]>();
+    try {
+      CsvParser parser =
+          new CsvParser(new StringReader(content), hasHeader, colTypes);
+      while (parser.hasNext())
+        rows.add(parser.next());
+    } catch (IOException ex) {
+      throw new RuntimeException(ex);  // should not happen here
+    }
+    return rows;
+  }
+}
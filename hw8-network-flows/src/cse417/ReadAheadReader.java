@@ -0,0 +1,193 @@
+package cse417;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reader that reads and decodes its input on a background thread, so that
+ * the time spent waiting for the disk (and decompressing, for a gzip file)
+ * overlaps with the time the caller spends on the text, rather than adding to
+ * it. The background thread fills a fixed ring of large buffers, which are
+ * handed to the caller as they are filled and then handed back to be reused.
+ * The background thread stops when it reaches the end of the input or when
+ * this reader is closed.
+ * <p>
+ * Input is decoded as UTF-8, as in {@code MappedCsvParser}.
+ */
+public final class ReadAheadReader extends Reader {
+
+  /** Default number of characters in each buffer. */
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  /** Default number of buffers in the ring. */
+  private static final int NUM_BUFFERS = 4;
+
+  /** Suffix of the names of files that are compressed with gzip. */
+  private static final String GZIP_SUFFIX = ".gz";
+
+  /** One buffer of the ring. */
+  private static final class Buffer {
+    final char[] chars;
+    int length;           // number of chars filled in
+    boolean last;         // whether this ends the input
+    IOException error;    // if non-null, why the input ended early
+
+    Buffer(int size) { chars = new char[size]; }
+  }
+
+  /** Buffers that have been filled but not yet read, in order. */
+  private final BlockingQueue<Buffer> filled;
+
+  /** Buffers that are ready to be filled again. */
+  private final BlockingQueue<Buffer> free;
+
+  /** Thread that fills the buffers. */
+  private final Thread producer;
+
+  /** Buffer currently being read (or null before the first). */
+  private Buffer current;
+
+  /** Index of the next char to read from current. */
+  private int pos;
+
+  /** Whether this reader has been closed. */
+  private boolean closed;
+
+  /**
+   * Returns a reader of the given file that reads ahead on another thread.
+   * If the name ends with ".gz", the file is decompressed as well.
+   */
+  public static ReadAheadReader open(String fileName) throws IOException {
+    InputStream in = new FileInputStream(fileName);
+    try {
+      if (fileName.endsWith(GZIP_SUFFIX))
+        in = new GZIPInputStream(in, BUFFER_SIZE);
+    } catch (IOException ex) {
+      in.close();  // not actually a gzip file
+      throw ex;
+    }
+    return new ReadAheadReader(in);
+  }
+
+  /** Creates a reader of the given input that reads ahead on another thread. */
+  public ReadAheadReader(InputStream in) {
+    this(in, BUFFER_SIZE, NUM_BUFFERS);
+  }
+
+  /** As above but with the given number of buffers of the given size. */
+  ReadAheadReader(InputStream in, int bufferSize, int numBuffers) {
+    assert bufferSize > 0 && numBuffers > 0;
+    this.filled = new ArrayBlockingQueue<Buffer>(numBuffers);
+    this.free = new ArrayBlockingQueue<Buffer>(numBuffers);
+    for (int i = 0; i < numBuffers; i++)
+      free.add(new Buffer(bufferSize));
+
+    this.producer = new Thread(() -> fill(in), "ReadAheadReader");
+    this.producer.setDaemon(true);
+    this.producer.start();
+  }
+
+  /**
+   * Fills free buffers from the given input and passes them on until the end
+   * of the input (or an error), then closes the input. This runs on the
+   * producer thread.
+   */
+  private void fill(InputStream in) {
+    try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+      boolean last = false;
+      while (!last) {
+        Buffer buffer = free.take();
+        buffer.length = 0;
+        try {
+          while (buffer.length < buffer.chars.length) {
+            int n = reader.read(buffer.chars, buffer.length,
+                buffer.chars.length - buffer.length);
+            if (n < 0) {
+              last = true;
+              break;
+            }
+            buffer.length += n;
+          }
+        } catch (IOException ex) {
+          buffer.error = ex;
+          last = true;
+        }
+        buffer.last = last;
+        filled.put(buffer);
+      }
+    } catch (IOException ex) {
+      // only from closing the input, after everything has been read
+    } catch (InterruptedException ex) {
+      // the reader was closed, so no one wants the rest
+    }
+  }
+
+  @Override
+  public int read(char[] cbuf, int off, int len) throws IOException {
+    checkOpen();
+    if (len == 0)
+      return 0;
+    while (current == null || pos == current.length) {
+      if (!nextBuffer())
+        return -1;
+    }
+    int n = Math.min(len, current.length - pos);
+    System.arraycopy(current.chars, pos, cbuf, off, n);
+    pos += n;
+    return n;
+  }
+
+  /**
+   * Moves on to the next filled buffer, returning the current one to be
+   * refilled. Returns false if the end of the input has been reached.
+   */
+  private boolean nextBuffer() throws IOException {
+    checkOpen();
+    if (current != null) {
+      if (current.error != null)
+        throw new IOException(current.error.getMessage(), current.error);
+      if (current.last)
+        return false;
+      free.add(current);  // (cannot fail: the ring has room for all)
+    }
+
+    try {
+      current = filled.take();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted waiting for input");
+    }
+    pos = 0;
+    return true;
+  }
+
+  /**
+   * Throws an exception if this reader has been closed, since the background
+   * thread will not fill any more buffers to wait for.
+   */
+  private void checkOpen() throws IOException {
+    if (closed)
+      throw new IOException("reader is closed");
+  }
+
+  /**
+   * Stops the background thread, which closes the underlying input. Any later
+   * read throws an {@code IOException}.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    current = null;
+    producer.interrupt();
+  }
+}
@@ -44,23 +44,22 @@ public class TableRounder {
         argParser.getIntegerOption("digits") : 0;
     final double scale = Math.pow(10, digits);
 
-    CsvParser csvParser = new CsvParser(args[0]);
+    // Read the table from the CSV (which is read ahead on another thread).
     String[] header = null;
-    if (argParser.hasOption("header")) {
-      assert csvParser.hasNext();
-      header = csvParser.next();
-    }
-
-    // Read the table from the CSV.
-    List<double[]> table = new ArrayList<double[]>();
-    while (csvParser.hasNext()) {
-      table.add(Arrays.asList(csvParser.next()).stream()
-          .mapToDouble(s -> scale * Double.parseDouble(s)).toArray());
-      if (table.size() > 2) {
-        assert table.get(table.size()-2).length ==
-               table.get(table.size()-1).length;
+    List<double[]> table;
+    try (CsvParser csvParser = CsvParser.openReadAhead(args[0], false, null)) {
+      if (argParser.hasOption("header")) {
+        assert csvParser.hasNext();
+        header = csvParser.next();
       }
+
+      table = csvParser.stream().parallel()
+          .map(row -> Arrays.stream(row)
+              .mapToDouble(s -> scale * Double.parseDouble(s)).toArray())
+          .collect(Collectors.toList());
     }
+    for (int i = 1; i < table.size(); i++)
+      assert table.get(i-1).length == table.get(i).length;
 
     roundTable(table);
 
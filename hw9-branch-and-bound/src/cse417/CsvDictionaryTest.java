@@ -0,0 +1,74 @@
+package cse417;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class CsvDictionaryTest {
+
+  @Test public void testStrings() {
+    CsvDictionary dict = new CsvDictionary();
+    assertEquals(0, dict.size());
+    assertEquals(-1, dict.indexOf("a"));
+
+    assertEquals(0, dict.encode("b"));
+    assertEquals(1, dict.encode("a"));
+    assertEquals(0, dict.encode("b"));
+    assertEquals(2, dict.encode(""));
+    assertEquals(3, dict.size());
+    assertEquals(1, dict.indexOf("a"));
+    assertEquals("b", dict.get(0));
+    assertArrayEquals(new String[] {"b", "a", ""}, dict.toArray());
+
+    for (int i = 0; i < 1000; i++)
+      assertEquals(3 + i, dict.encode("x" + i));
+    for (int i = 0; i < 1000; i++)
+      assertEquals(3 + i, dict.indexOf("x" + i));
+  }
+
+  @Test public void testRows() {
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 500; i++) {
+      content.append("t").append(i % 37).append(",,\"q\"\"").append(i % 3)
+          .append("\",\u00e9").append(i % 5).append('\n');
+    }
+    String[] values = new String[] {
+        "t1", "q\"1", "\u00e91", "", "t2", "q\"2", "\u00e92"
+    };
+
+    // Codes found from the bytes must match those given to strings.
+    CsvDictionary byRow = new CsvDictionary();
+    CsvDictionary byString = new CsvDictionary();
+    for (String value : values)
+      assertEquals(byString.encode(value), byRow.encode(value));
+    MappedCsvParser parser = new MappedCsvParser(
+        ByteBuffer.wrap(content.toString().getBytes(StandardCharsets.UTF_8)),
+        false, null, 1);
+    while (parser.hasNext()) {
+      MappedCsvParser.Row row = parser.next();
+      for (int col = 0; col < row.size(); col++) {
+        assertEquals(byString.encode(row.getString(col)),
+            byRow.encode(row, col));
+      }
+    }
+    assertEquals(37 + 3 + 5 + 1, byRow.size());
+    assertArrayEquals(byString.toArray(), byRow.toArray());
+  }
+
+  @Test public void testMalformed() {
+    // Different bad bytes decode to the same string, so share its code.
+    byte[] bytes = new byte[] { (byte) 0xFF, ',', (byte) 0xFE, '\n' };
+    MappedCsvParser parser =
+        new MappedCsvParser(ByteBuffer.wrap(bytes), false, null, 1);
+    MappedCsvParser.Row row = parser.next();
+    CsvDictionary dict = new CsvDictionary();
+    assertEquals(0, dict.encode(row, 0));
+    assertEquals(0, dict.encode(row, 1));
+    assertEquals(0, dict.encode("\ufffd"));
+    assertEquals(1, dict.size());
+  }
+}
@@ -3,6 +3,7 @@ package cse417;
 import java.io.*;
 import java.text.*;
 import java.util.*;
+import java.util.stream.*;
 
 import org.junit.Test;
 import static org.junit.Assert.*;
@@ -90,6 +91,175 @@ public class CsvParserTest {
     } catch (RuntimeException ex) { /* pass */ }
   }
 
+  @Test public void testErrorLineNumbers() {
+    try { parseRows("A,B\na,1\nb,x", true, new Object[] {
+        String.class, Integer.class }); fail(); }
+    catch (RuntimeException ex) {
+      assertEquals("CSV: line 3: expecting an integer in column 2: b,x",
+          ex.getMessage());
+    }
+
+    try { parseRows("a,b\n\"c,d", false, null); fail(); }
+    catch (RuntimeException ex) {
+      assertTrue(ex.getMessage().startsWith("CSV: line 2: "));
+    }
+  }
+
+  @Test public void testStream() throws IOException {
+    StringBuilder content = new StringBuilder("A,B,C\n");
+    for (int i = 0; i < 5000; i++)
+      content.append(i).append(",\"x").append(i).append("\",").append(i / 2.)
+          .append('\n');
+    Object[] colTypes = new Object[] {
+        Integer.class, String.class, Float.class };
+
+    List<String[]> expected = parseRows(content.toString(), true, colTypes);
+    for (boolean parallel : new boolean[] { false, true }) {
+      CsvParser parser =
+          new CsvParser(new StringReader(content.toString()), true, colTypes);
+      Stream<String[]> rows = parser.stream();
+      List<String[]> actual =
+          (parallel ? rows.parallel() : rows).collect(Collectors.toList());
+      assertEquals(expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); i++)
+        assertArrayEquals(expected.get(i), actual.get(i));
+    }
+
+    // Checks must still happen when the rows are processed in parallel.
+    content.append("5000,x,abc\n");
+    try {
+      new CsvParser(new StringReader(content.toString()), true, colTypes)
+          .stream().parallel().count();
+      fail();
+    } catch (RuntimeException ex) {
+      // (The exception may be wrapped if it was thrown on another thread.)
+      assertTrue(ex.getMessage().endsWith(
+          "CSV: line 5002: expecting a float in column 3: 5000,x,abc"));
+    }
+  }
+
+  @Test public void testReusedRows() throws IOException {
+    String[] contents = new String[] {
+        "", "a", "a\n", "\n\n", "a,b,c\r\nd,e,f\r\n", "a,b\rc,d\r\re,f\r",
+        "a,\"b\"\"c\",\"\"\nd,,\n", "\u00e9,\"\u00e8,\"\n"
+    };
+    for (String content : contents) {
+      for (boolean hasHeader : new boolean[] { false, true }) {
+        List<String[]> expected = parseRows(content, hasHeader, null);
+        CsvParser parser =
+            new CsvParser(new StringReader(content), hasHeader, null);
+        for (int i = 0; i < expected.size(); i++) {
+          assertTrue(parser.hasNext());
+          if (i % 3 == 1) {  // mix in calls to next
+            assertArrayEquals(expected.get(i), parser.next());
+          } else {
+            CsvParser.Row row = parser.nextRow();
+            assertEquals(i + (hasHeader ? 2 : 1), row.getLineNumber());
+            assertArrayEquals(expected.get(i), row.toStringArray());
+            for (int j = 0; j < row.size(); j++)
+              assertEquals(expected.get(i)[j], row.get(j).toString());
+          }
+        }
+        assertFalse(parser.hasNext());
+      }
+    }
+
+    // Lines longer than the read buffer must still come out whole.
+    StringBuilder longLine = new StringBuilder();
+    for (int i = 0; i < 5000; i++)
+      longLine.append(i).append(',');
+    longLine.append("end");
+    CsvParser parser = new CsvParser(
+        new StringReader(longLine + "\r\n" + longLine), false, null);
+    assertEquals(longLine.toString(), parser.nextRow().getLine());
+    CsvParser.Row row = parser.nextRow();
+    assertEquals(5001, row.size());
+    assertEquals(4999, row.getInt(4999));
+    assertFalse(parser.hasNext());
+  }
+
+  @Test public void testReusedRowNumbers() throws IOException {
+    String[] floats = new String[] {
+        "0", "-0", "3.14", ".25", "1.", "+7", "16777215", "16777217",
+        "0.1", "123456.789", "1e3", "-2.5E-3", "NaN", "-Infinity", "0x1p3",
+        " 2.5 ", "1f", "0.00000000001", "12345678901234567890"
+    };
+    StringBuilder content = new StringBuilder();
+    for (String f : floats)
+      content.append(f).append(',').append(f).append('\n');
+    CsvParser parser = new CsvParser(new StringReader(content.toString()),
+        false, new Object[] { Float.class, String.class });
+    for (String f : floats) {
+      CsvParser.Row row = parser.nextRow();
+      assertEquals(Float.floatToIntBits(Float.parseFloat(f)),
+          Float.floatToIntBits(row.getFloat(0)));
+      assertEquals(Double.doubleToLongBits(Double.parseDouble(f)),
+          Double.doubleToLongBits(row.getDouble(1)));
+    }
+
+    parser = new CsvParser(new StringReader("12,-3,+4,x,2147483648,"), false,
+        null);
+    CsvParser.Row row = parser.nextRow();
+    assertEquals(12, row.getInt(0));
+    assertEquals(-3, row.getInt(1));
+    assertEquals(4, row.getInt(2));
+    for (int col = 3; col < 5; col++) {
+      try { row.getInt(col); fail(); }
+      catch (NumberFormatException ex) { /* pass */ }
+    }
+    assertEquals(5, row.size());  // (a final ',' does not start a column)
+  }
+
+  @Test public void testReusedRowErrors() throws IOException {
+    Object[] colTypes = new Object[] {
+        String.class, Integer.class, Float.class, DATE_FORMAT };
+    String[] contents = new String[] {
+        "a,1,2.5,01-Jan-78\nb,x,2.5,01-Jan-78",
+        "a,1,2.5,01-Jan-78\nb,1,y,01-Jan-78",
+        "a,1,2.5,01-Jan-78\nb,1,2.5,01-Fredcember-78",
+        "a,1,2.5,01-Jan-78\nb,1,2.5",
+        "a,1,2.5,01-Jan-78\n\"b,1,2.5,01-Jan-78",
+        "a,1,2.5,01-Jan-78\n\"b\"c,1,2.5,01-Jan-78",
+    };
+    for (String content : contents) {
+      String expected = null;
+      try { parseRows(content, false, colTypes); fail(); }
+      catch (RuntimeException ex) { expected = ex.getMessage(); }
+
+      CsvParser parser =
+          new CsvParser(new StringReader(content), false, colTypes);
+      assertEquals("a", parser.nextRow().getString(0));
+      try { parser.nextRow(); fail(); }
+      catch (RuntimeException ex) { assertEquals(expected, ex.getMessage()); }
+    }
+  }
+
+  @Test public void testSkippedColumns() throws IOException {
+    String content = "a,\"b,\"\"c\",x,1\n\"d\",e,\"y\",2\n";
+    Object[] colTypes = new Object[] {
+        String.class, null, Float.class, Integer.class };
+    try { parseRows(content, false, colTypes); fail(); }
+    catch (RuntimeException ex) { /* pass: x is not a float */ }
+
+    colTypes[2] = null;
+    List<String[]> rows = parseRows(content, false, colTypes);
+    assertArrayEquals(new String[] {"a", null, null, "1"}, rows.get(0));
+    assertArrayEquals(new String[] {"d", null, null, "2"}, rows.get(1));
+
+    CsvParser parser =
+        new CsvParser(new StringReader(content), false, colTypes);
+    CsvParser.Row row = parser.nextRow();
+    assertEquals(4, row.size());
+    assertEquals("a", row.getString(0));
+    assertEquals("", row.getString(1));
+    assertEquals(1, row.getInt(3));
+    assertEquals("d", parser.nextRow().getString(0));
+
+    // Skipped columns must still be valid CSV.
+    try { parseRows("a,\"b\"c,1", false, colTypes); fail(); }
+    catch (RuntimeException ex) { /* pass */ }
+  }
+
   /** Returns the rows produced by parsing the given content as a CSV. */
   private List<String[]> parseRows(String content) {
     return parseRows(content, false, null);
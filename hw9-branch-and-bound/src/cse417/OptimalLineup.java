@@ -241,16 +241,16 @@ public class OptimalLineup {
 
     // Parse the list of players from the file given in args[0]
     List<Player> players = new ArrayList<Player>();
-    CsvParser parser = new CsvParser(args[0], true, new Object[] {
+    CsvTable table = CsvSnapshot.load(args[0], true, new Object[] {
           // name, team, position, points, price, play prob
-          String.class, String.class, String.class,
+          String.class, new CsvDictionary(), new CsvDictionary(),
           Float.class, Float.class, Float.class
         });
-    while (parser.hasNext()) {
-      String[] row = parser.next();
-      players.add(new Player(row[0], Position.valueOf(row[2]), row[1],
-          toTenths(Float.parseFloat(row[4])),
-          Float.parseFloat(row[3]), Float.parseFloat(row[5])));
+    for (int i = 0; i < table.size(); i++) {
+      players.add(new Player(table.getString(i, 0),
+          Position.valueOf(table.getString(i, 2)), table.getString(i, 1),
+          toTenths(table.getFloat(i, 4)),
+          table.getFloat(i, 3), table.getFloat(i, 5)));
     }
 
     Lineup optLineup = argParser.hasOption("enforce-per-team-limit")